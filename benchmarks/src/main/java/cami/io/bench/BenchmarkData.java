@@ -0,0 +1,137 @@
+package cami.io.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.LineageTable;
+import cami.io.Profile;
+
+/**
+ * Deterministic benchmark inputs written through the CamiIO writers.
+ * <p/>
+ * Taxa form a complete tree over the ranks of {@link Profile#RANK_NAMES} with {@link #BRANCHING} children
+ * per taxon. Taxids are numbered rank by rank, so the lineage of the i-th leaf is computed without lookups.
+ */
+final class BenchmarkData {
+    static final int BRANCHING = 4;
+    static final int RANKS = Profile.RANK_NAMES.length;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return the taxid of the ancestor of leaf {@code leaf} at rank {@code rank}
+     */
+    static int taxId(int leaves, int leaf, int rank) {
+        return 2 + rank * (leaves + 1) + leaf / leavesBelow(rank);
+    }
+
+    /**
+     * @return the number of leaves below each taxon of a rank
+     */
+    static int leavesBelow(int rank) {
+        int leaves = 1;
+        for (int r = rank + 1; r < RANKS; r++) {
+            leaves *= BRANCHING;
+        }
+        return leaves;
+    }
+
+    /**
+     * @return the lineage of a leaf down to {@code rank}
+     */
+    static int[] lineage(int leaves, int leaf, int rank) {
+        int[] lineage = new int[rank + 1];
+        for (int r = 0; r <= rank; r++) {
+            lineage[r] = taxId(leaves, leaf, r);
+        }
+        return lineage;
+    }
+
+    /**
+     * @return the taxonomy of {@code leaves} leaves as a lineage table
+     */
+    static LineageTable taxonomy(int leaves) {
+        LineageTable table = new LineageTable();
+        table.add(1, 1, "no rank", "root");
+        for (int leaf = 0; leaf < leaves; leaf++) {
+            int parent = 1;
+            for (int rank = 0; rank < RANKS; rank++) {
+                int taxId = taxId(leaves, leaf, rank);
+                if (!table.contains(taxId)) {
+                    table.add(taxId, parent, Profile.RANK_NAMES[rank], null);
+                }
+                parent = taxId;
+            }
+        }
+        return table;
+    }
+
+    static Map<String, String> header() {
+        Map<String, String> header = new HashMap<>();
+        header.put("version", "0.9");
+        header.put("sampleid", "benchmark");
+        header.put(Profile.RANKS_KEY, Profile.PRO_RANKS);
+        return header;
+    }
+
+    /**
+     * Write a binning file.
+     *
+     * @param rows             number of rows
+     * @param leaves           number of distinct taxa
+     * @param columnDefinition one of the {@code Binning.COLUMNDEF_*} layouts
+     * @return the temporary file, deleted on exit
+     */
+    static File binning(int rows, int leaves, String[] columnDefinition) throws Base.ParseException, IOException {
+        File file = File.createTempFile("cami-bench", ".binning");
+        file.deleteOnExit();
+        Binning.Writer writer = new Binning.Writer(file.getPath(), columnDefinition, true);
+        writer.replaceHeaderInfo(header());
+        writer.writeHeader();
+        boolean hasTaxId = columnDefinition != Binning.COLUMNDEF_BINID;
+        boolean hasBinId = columnDefinition != Binning.COLUMNDEF_TAXID;
+        StringBuilder sequenceId = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            sequenceId.setLength(0);
+            sequenceId.append("contig_").append(row);
+            int taxId = taxId(leaves, row % leaves, RANKS - 1);
+            if (hasTaxId && hasBinId) {
+                writer.writeBinningRow(sequenceId, taxId, "bin." + taxId);
+            } else if (hasTaxId) {
+                writer.writeBinningRow(sequenceId, taxId);
+            } else {
+                writer.writeBinningRow(sequenceId, "bin." + taxId);
+            }
+        }
+        writer.close();
+        return file;
+    }
+
+    /**
+     * Write a profile holding every taxon of the taxonomy, rank by rank.
+     *
+     * @param leaves number of strains
+     * @return the temporary file, deleted on exit
+     */
+    static File profile(int leaves) throws Base.ParseException, IOException {
+        File file = File.createTempFile("cami-bench", ".profile");
+        file.deleteOnExit();
+        Profile.Writer writer = new Profile.Writer(file.getPath(), true);
+        writer.replaceHeaderInfo(header());
+        writer.writeHeader();
+        for (int rank = 0; rank < RANKS; rank++) {
+            int step = leavesBelow(rank);
+            for (int leaf = 0; leaf < leaves; leaf += step) {
+                writer.writeProfileRow(taxId(leaves, leaf, rank), rank, lineage(leaves, leaf, rank),
+                        100.0 * Math.min(step, leaves - leaf) / leaves);
+            }
+        }
+        writer.close();
+        return file;
+    }
+}
@@ -0,0 +1,77 @@
+package cami.io.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cami.io.Base;
+import cami.io.Binning;
+
+/**
+ * Opening a reader on a file holding only a header, which measures header and column definition parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderBenchmark {
+
+    @Param({"0", "16", "256"})
+    public int customFields;
+
+    @Param({"2", "16"})
+    public int customColumns;
+
+    private File file;
+
+    @Setup
+    public void setup() throws Base.ParseException, IOException {
+        String[] columns = new String[Binning.COLUMNDEF_TAXID_AND_BINID.length + customColumns];
+        System.arraycopy(Binning.COLUMNDEF_TAXID_AND_BINID, 0, columns, 0, Binning.COLUMNDEF_TAXID_AND_BINID.length);
+        for (int i = Binning.COLUMNDEF_TAXID_AND_BINID.length; i < columns.length; i++) {
+            columns[i] = "_BENCH_COLUMN" + i;
+        }
+        Map<String, String> header = BenchmarkData.header();
+        for (int i = 0; i < customFields; i++) {
+            header.put("_bench_field" + i, "value" + i);
+        }
+        this.file = File.createTempFile("cami-bench", ".header");
+        Binning.Writer writer = new Binning.Writer(this.file.getPath(), columns, true);
+        writer.replaceHeaderInfo(header);
+        writer.writeHeader();
+        writer.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public Map<String, String> openReader() throws Base.ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(this.file.getPath(), true);
+        reader.close();
+        return reader.getHeaderInfo();
+    }
+
+    @Benchmark
+    public boolean isHeaderLine() {
+        return Base.isHeaderLine("@_BENCH_FIELD:value");
+    }
+}
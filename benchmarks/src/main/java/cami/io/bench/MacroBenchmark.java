@@ -0,0 +1,163 @@
+package cami.io.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.Profile;
+import cami.io.concat.ConcatProfilingIter;
+import cami.io.synth.SyntheticData;
+
+/**
+ * End-to-end throughput of every reader and validation mode on generated CAMI-scale files.
+ * <p/>
+ * Files are generated once with {@link SyntheticData}, then each mode reads its file completely while
+ * wall time, garbage collection time and peak memory are recorded. Peak RSS is read from
+ * {@code /proc/self/status} and reset between modes where the kernel allows it; elsewhere the peak heap
+ * usage is reported instead. Validation uses {@link StandInNeoDao} over the generated taxonomy.
+ * <p/>
+ * Usage: {@code MacroBenchmark [-rows n] [-taxa n] [-depth n] [-samples n] [-custom n] [-seed n] [-dir path]}
+ */
+public class MacroBenchmark {
+    private long rows = 10000000L;
+    private int taxa = 10000;
+    private int depth = Profile.RANK_NAMES.length;
+    private int samples = 100;
+    private int customColumns = 0;
+    private long seed = 1;
+    private File directory = new File(System.getProperty("java.io.tmpdir"));
+
+    public static void main(String[] args) throws Base.ParseException, IOException {
+        MacroBenchmark benchmark = new MacroBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-rows":
+                    benchmark.rows = Long.parseLong(args[i + 1]);
+                    break;
+                case "-taxa":
+                    benchmark.taxa = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-depth":
+                    benchmark.depth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-samples":
+                    benchmark.samples = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-custom":
+                    benchmark.customColumns = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-seed":
+                    benchmark.seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "-dir":
+                    benchmark.directory = new File(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        benchmark.run();
+    }
+
+    private void run() throws Base.ParseException, IOException {
+        SyntheticData data = new SyntheticData(this.seed);
+        data.setTaxa(this.taxa);
+        data.setLineageDepth(this.depth);
+        data.setCustomColumns(this.customColumns);
+        File binning = new File(this.directory, "synthetic.binning");
+        File profile = new File(this.directory, "synthetic.profile");
+        File concatenated = new File(this.directory, "synthetic-concat.profile");
+        File store = Files.createTempDirectory(this.directory.toPath(), "cami-store").toFile();
+
+        long start = System.nanoTime();
+        data.writeBinning(binning.getPath(), this.rows, Binning.COLUMNDEF_TAXID_AND_BINID);
+        data.writeProfile(profile.getPath(), 0);
+        data.writeConcatenatedProfile(concatenated.getPath(), this.samples);
+        System.out.printf(Locale.ROOT, "generated %d binning rows, %d samples in %.1f s%n", this.rows, this.samples,
+                (System.nanoTime() - start) / 1e9);
+
+        StandInNeoDao neoDao = new StandInNeoDao(store, data.getTaxonomy());
+        System.out.printf(Locale.ROOT, "%-18s %12s %10s %9s %12s %9s %11s %8s%n", "mode", "rows", "MB", "seconds",
+                "rows/s", "MB/s", "peak MB", "GC ms");
+        try {
+            measure("binning", binning, new Binning.Reader(binning.getPath(), true));
+            measure("binning-validate", binning, new Binning.ValidatingReader(binning.getPath(), neoDao, true));
+            measure("profile", profile, new Profile.Reader(profile.getPath(), true));
+            measure("profile-validate", profile, new Profile.ValidatingReader(profile.getPath(), neoDao, true));
+            measure("concat-validate", concatenated, new ConcatProfilingIter(concatenated.getPath(), neoDao, true));
+        } finally {
+            neoDao.shutdown();
+            binning.delete();
+            profile.delete();
+            concatenated.delete();
+            store.delete();
+        }
+    }
+
+    private void measure(String mode, File file, Base.Reader reader) throws Base.ParseException, IOException {
+        resetPeaks();
+        long gcBefore = gcMillis();
+        long start = System.nanoTime();
+        long count = 0;
+        try {
+            while (reader.readRow() != null) {
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double megabytes = file.length() / (double) (1 << 20);
+        System.out.printf(Locale.ROOT, "%-18s %12d %10.1f %9.2f %12.0f %9.1f %11.1f %8d%n", mode, count, megabytes,
+                seconds, count / seconds, megabytes / seconds, peakMegabytes(), gcMillis() - gcBefore);
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static void resetPeaks() {
+        // writing 5 to clear_refs resets VmHWM on Linux
+        try (FileWriter out = new FileWriter("/proc/self/clear_refs")) {
+            out.write("5");
+        } catch (IOException | SecurityException ignored) {
+            // fall back to the heap peak
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    private static double peakMegabytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // not Linux
+        }
+        long heap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heap += pool.getPeakUsage().getUsed();
+            }
+        }
+        return heap / (double) (1 << 20);
+    }
+}
@@ -0,0 +1,67 @@
+package cami.io.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cami.io.Base;
+
+/**
+ * Decoding of TAXID, TAXPATH and PERCENTAGE fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumericBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int depth;
+
+    private String taxId;
+    private String taxPath;
+    private String percentage;
+
+    @Setup
+    public void setup() {
+        int[] lineage = BenchmarkData.lineage(1 << 14, 12345, depth - 1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lineage.length; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append(lineage[i]);
+        }
+        this.taxPath = sb.toString();
+        this.taxId = Integer.toString(lineage[lineage.length - 1]);
+        this.percentage = "12.34567";
+    }
+
+    @Benchmark
+    public Integer toInt() {
+        return Base.toInt(this.taxId);
+    }
+
+    @Benchmark
+    public List<Integer> toIntList() {
+        return Base.toIntList(this.taxPath, "\\|");
+    }
+
+    @Benchmark
+    public double parsePercentage() {
+        return Double.parseDouble(this.percentage);
+    }
+}
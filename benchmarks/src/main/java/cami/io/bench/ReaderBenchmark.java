@@ -0,0 +1,87 @@
+package cami.io.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.Profile;
+
+/**
+ * Reading whole files through {@code Base.Reader.readRow}, one invocation per file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"TAXID", "BINID", "TAXID_AND_BINID"})
+    public String layout;
+
+    private File binning;
+    private File profile;
+
+    static String[] layout(String name) {
+        switch (name) {
+            case "TAXID":
+                return Binning.COLUMNDEF_TAXID;
+            case "BINID":
+                return Binning.COLUMNDEF_BINID;
+            default:
+                return Binning.COLUMNDEF_TAXID_AND_BINID;
+        }
+    }
+
+    @Setup
+    public void setup() throws Base.ParseException, IOException {
+        this.binning = BenchmarkData.binning(rows, Math.max(1, rows / 10), layout(layout));
+        this.profile = BenchmarkData.profile(Math.max(1, rows / 8));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.binning.delete();
+        this.profile.delete();
+    }
+
+    @Benchmark
+    public void readBinning(Blackhole blackhole) throws Base.ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(this.binning.getPath(), true);
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            blackhole.consume(row);
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    public void readProfile(Blackhole blackhole) throws Base.ParseException, IOException {
+        Profile.Reader reader = new Profile.Reader(this.profile.getPath(), true);
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            blackhole.consume(row);
+        }
+        reader.close();
+    }
+}
@@ -0,0 +1,40 @@
+package cami.io.bench;
+
+import java.io.File;
+
+import mzd.taxonomy.neo.NeoDao;
+
+import cami.io.LineageTable;
+import cami.io.Profile;
+
+/**
+ * NeoDao answering from an in-memory {@link LineageTable}, so validation can be measured without
+ * a populated neo4j store. The wrapped store directory is never queried.
+ */
+class StandInNeoDao extends NeoDao {
+    private final LineageTable taxonomy;
+    private final int[] lineage = new int[Profile.RANK_NAMES.length];
+
+    StandInNeoDao(File storeDirectory, LineageTable taxonomy) {
+        super(storeDirectory);
+        this.taxonomy = taxonomy;
+    }
+
+    @Override
+    public boolean taxonExists(Integer taxId) {
+        return taxId != null && this.taxonomy.contains(taxId);
+    }
+
+    @Override
+    public synchronized boolean sparsePathExists(Integer ancestor, Integer descendant) {
+        if (ancestor == null || descendant == null || this.taxonomy.getLineage(descendant, this.lineage) == -1) {
+            return false;
+        }
+        for (int taxId : this.lineage) {
+            if (taxId == ancestor && taxId != descendant) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,110 @@
+package cami.io.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.LineageTable;
+import cami.io.Profile;
+import cami.io.TaxonomyCache;
+
+/**
+ * Validating readers and writers against an in-memory taxonomy stand-in, which isolates the cost of
+ * parsing and TAXPATH checks from neo4j latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidationBenchmark {
+
+    @Param({"1024", "65536"})
+    public int leaves;
+
+    @Param({"100000"})
+    public int rows;
+
+    private File store;
+    private File binning;
+    private File profile;
+    private File output;
+    private StandInNeoDao neoDao;
+
+    @Setup
+    public void setup() throws Base.ParseException, IOException {
+        LineageTable taxonomy = BenchmarkData.taxonomy(leaves);
+        this.store = Files.createTempDirectory("cami-bench-store").toFile();
+        this.neoDao = new StandInNeoDao(this.store, taxonomy);
+        this.binning = BenchmarkData.binning(rows, leaves, Binning.COLUMNDEF_TAXID);
+        this.profile = BenchmarkData.profile(leaves);
+        this.output = File.createTempFile("cami-bench", ".out");
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.neoDao.shutdown();
+        this.binning.delete();
+        this.profile.delete();
+        this.output.delete();
+        this.store.delete();
+    }
+
+    @Benchmark
+    public void validateBinning(Blackhole blackhole) throws Base.ParseException, IOException {
+        Binning.ValidatingReader reader = new Binning.ValidatingReader(this.binning.getPath(), this.neoDao, true);
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            blackhole.consume(row);
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    public void validateProfile(Blackhole blackhole) throws Base.ParseException, IOException {
+        Profile.ValidatingReader reader = new Profile.ValidatingReader(this.profile.getPath(), this.neoDao, true);
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            blackhole.consume(row);
+        }
+        reader.close();
+    }
+
+    /**
+     * Validates while writing with a cold {@link TaxonomyCache}, so each distinct lookup reaches the stand-in.
+     */
+    @Benchmark
+    public long validateProfileWriter() throws Base.ParseException, IOException {
+        TaxonomyCache cache = new TaxonomyCache(this.neoDao);
+        Profile.ValidatingWriter writer = new Profile.ValidatingWriter(this.output.getPath(), true, cache);
+        writer.replaceHeaderInfo(BenchmarkData.header());
+        writer.writeHeader();
+        for (int rank = 0; rank < BenchmarkData.RANKS; rank++) {
+            int step = BenchmarkData.leavesBelow(rank);
+            for (int leaf = 0; leaf < leaves; leaf += step) {
+                writer.writeProfileRow(BenchmarkData.taxId(leaves, leaf, rank), rank,
+                        BenchmarkData.lineage(leaves, leaf, rank), 1.0);
+            }
+        }
+        writer.close();
+        return cache.getMisses();
+    }
+}
@@ -0,0 +1,95 @@
+package cami.io.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cami.io.Base;
+import cami.io.Binning;
+
+/**
+ * Writing binning files through {@code Base.Writer.writeRow} and through the typed row methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriterBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"TAXID", "TAXID_AND_BINID"})
+    public String layout;
+
+    private File file;
+    private String[] columns;
+
+    @Setup
+    public void setup() throws IOException {
+        this.file = File.createTempFile("cami-bench", ".out");
+        this.columns = ReaderBenchmark.layout(layout);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    private Binning.Writer open() throws IOException {
+        Binning.Writer writer = new Binning.Writer(this.file.getPath(), this.columns, true);
+        writer.replaceHeaderInfo(BenchmarkData.header());
+        return writer;
+    }
+
+    @Benchmark
+    public void writeRow() throws Base.ParseException, IOException {
+        Binning.Writer writer = open();
+        writer.writeHeader();
+        String[] row = new String[this.columns.length];
+        for (int i = 0; i < rows; i++) {
+            row[0] = "contig_" + i;
+            row[1] = Integer.toString(2 + i % 1000);
+            if (row.length > 2) {
+                row[2] = "bin." + (i % 1000);
+            }
+            writer.writeRow(row);
+        }
+        writer.close();
+    }
+
+    @Benchmark
+    public void writeTypedRow() throws Base.ParseException, IOException {
+        Binning.Writer writer = open();
+        writer.writeHeader();
+        StringBuilder sequenceId = new StringBuilder();
+        StringBuilder binId = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            sequenceId.setLength(0);
+            sequenceId.append("contig_").append(i);
+            if (this.columns.length > 2) {
+                binId.setLength(0);
+                binId.append("bin.").append(i % 1000);
+                writer.writeBinningRow(sequenceId, 2 + i % 1000, binId);
+            } else {
+                writer.writeBinningRow(sequenceId, 2 + i % 1000);
+            }
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,219 @@
+package cami.io.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import cami.io.metrics.Metrics;
+import cami.io.metrics.TraceListener;
+
+/**
+ * {@link TraceListener} which emits Java Flight Recorder events, so that a recording shows the phases of
+ * CamiIO next to garbage collection and I/O.
+ * <p/>
+ * Register with {@link Metrics#setDefaultTracer(TraceListener)} or start the JVM with
+ * {@code -Dcami.io.jfr=true}. While no recording is running, or the events are disabled in the recording
+ * settings, spans are dropped before an event is allocated. The events appear under the category "CamiIO":
+ * <ul>
+ * <li>{@code cami.io.Header} opening a file and reading its header</li>
+ * <li>{@code cami.io.RowBatch} a batch of {@link Metrics#TRACE_BATCH} rows returned by a reader</li>
+ * <li>{@code cami.io.TaxonomyLookup} a taxonomy query, with the cache hit flag</li>
+ * <li>{@code cami.io.ValidationFailure} a row which failed validation</li>
+ * <li>{@code cami.io.WriterFlush} writing buffered output</li>
+ * </ul>
+ * The JFR API is compiled against JDK 11, at run time a JDK 8 from update 262 on also provides it.
+ */
+public class FlightRecorderTracer implements TraceListener {
+    // the enabled state is kept up to date by the recorder, asking it costs no allocation
+    private final static EventType HEADER_TYPE = EventType.getEventType(HeaderEvent.class);
+    private final static EventType ROWS_TYPE = EventType.getEventType(RowBatchEvent.class);
+    private final static EventType LOOKUP_TYPE = EventType.getEventType(LookupEvent.class);
+    private final static EventType FAILURE_TYPE = EventType.getEventType(FailureEvent.class);
+    private final static EventType FLUSH_TYPE = EventType.getEventType(FlushEvent.class);
+
+    @Override
+    public Object begin(Span span) {
+        Event event;
+        switch (span) {
+            case HEADER:
+                if (!HEADER_TYPE.isEnabled()) {
+                    return null;
+                }
+                event = new HeaderEvent();
+                break;
+            case ROWS:
+                if (!ROWS_TYPE.isEnabled()) {
+                    return null;
+                }
+                event = new RowBatchEvent();
+                break;
+            case LOOKUP:
+                if (!LOOKUP_TYPE.isEnabled()) {
+                    return null;
+                }
+                event = new LookupEvent();
+                break;
+            default:
+                if (!FLUSH_TYPE.isEnabled()) {
+                    return null;
+                }
+                event = new FlushEvent();
+                break;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endHeader(Object span, String source, String sampleId, int firstLine, int lastLine) {
+        if (span instanceof HeaderEvent) {
+            HeaderEvent event = (HeaderEvent) span;
+            event.source = source;
+            event.sampleId = sampleId;
+            event.firstLine = firstLine;
+            event.lastLine = lastLine;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void endRows(Object span, String source, String sampleId, int firstLine, int lastLine, int rows) {
+        if (span instanceof RowBatchEvent) {
+            RowBatchEvent event = (RowBatchEvent) span;
+            event.source = source;
+            event.sampleId = sampleId;
+            event.firstLine = firstLine;
+            event.lastLine = lastLine;
+            event.rows = rows;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void endLookup(Object span, String source, int line, int ancestor, int taxId, boolean cacheHit,
+                          boolean exists) {
+        if (span instanceof LookupEvent) {
+            LookupEvent event = (LookupEvent) span;
+            event.source = source;
+            event.line = line;
+            event.ancestor = ancestor;
+            event.taxId = taxId;
+            event.cacheHit = cacheHit;
+            event.exists = exists;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void endFlush(Object span, String target, String sampleId, int bytes) {
+        if (span instanceof FlushEvent) {
+            FlushEvent event = (FlushEvent) span;
+            event.target = target;
+            event.sampleId = sampleId;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void validationFailure(String source, String sampleId, int line, String reason) {
+        if (!FAILURE_TYPE.isEnabled()) {
+            return;
+        }
+        FailureEvent event = new FailureEvent();
+        event.source = source;
+        event.sampleId = sampleId;
+        event.line = line;
+        event.reason = reason;
+        event.commit();
+    }
+
+    @Name("cami.io.Header")
+    @Label("Header")
+    @Description("Opening a file and reading its header")
+    @Category("CamiIO")
+    @StackTrace(false)
+    static class HeaderEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Sample Id")
+        String sampleId;
+        @Label("First Line")
+        int firstLine;
+        @Label("Last Line")
+        int lastLine;
+    }
+
+    @Name("cami.io.RowBatch")
+    @Label("Row Batch")
+    @Description("Rows read, parsed and validated by a reader")
+    @Category("CamiIO")
+    @StackTrace(false)
+    static class RowBatchEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Sample Id")
+        String sampleId;
+        @Label("First Line")
+        int firstLine;
+        @Label("Last Line")
+        int lastLine;
+        @Label("Rows")
+        int rows;
+    }
+
+    @Name("cami.io.TaxonomyLookup")
+    @Label("Taxonomy Lookup")
+    @Description("A query of the taxonomy for a taxon or, if an ancestor is given, a path")
+    @Category("CamiIO")
+    @StackTrace(false)
+    static class LookupEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Line")
+        int line;
+        @Label("Ancestor")
+        int ancestor;
+        @Label("Taxid")
+        int taxId;
+        @Label("Cache Hit")
+        boolean cacheHit;
+        @Label("Exists")
+        boolean exists;
+    }
+
+    @Name("cami.io.ValidationFailure")
+    @Label("Validation Failure")
+    @Description("A row which failed validation")
+    @Category("CamiIO")
+    static class FailureEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Sample Id")
+        String sampleId;
+        @Label("Line")
+        int line;
+        @Label("Reason")
+        String reason;
+    }
+
+    @Name("cami.io.WriterFlush")
+    @Label("Writer Flush")
+    @Description("Buffered output written to a file")
+    @Category("CamiIO")
+    @StackTrace(false)
+    static class FlushEvent extends Event {
+        @Label("Target")
+        String target;
+        @Label("Sample Id")
+        String sampleId;
+        @Label("Bytes")
+        @DataAmount
+        int bytes;
+    }
+}
@@ -1,21 +1,32 @@
 package cami.io;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cami.io.metrics.Metrics;
+import cami.io.metrics.MetricsListener;
+import cami.io.metrics.TraceListener;
+import mzd.taxonomy.neo.NeoDao;
+
 /**
  * CAMI Challenge IO
  * <p/>
@@ -38,7 +49,8 @@ public abstract class Base {
     public final static String DELIMITER = "\t";
     protected final static String HEADER_SEP = ":";
     protected final static String NEWLINE = "\n";
-    public static int percentageColumn = -1;
+    // custom header fields and columns, e.g. _MY_TEST
+    protected final static Pattern CUSTOM_FIELD = Pattern.compile("_[A-Za-z]*_[A-Za-z]+[A-Za-z0-9]*");
 
     // generic header keys
     protected final static String TASK_KEY = "task";
@@ -109,17 +121,49 @@ public abstract class Base {
      * The header is written manually with {@link #writeHeader()} Data rows are
      * written iteratively with {@link #writeRow(String[])} The file is not
      * automatically closed.
+     * <p/>
+     * Output is encoded directly into a reusable byte buffer which is flushed
+     * through a {@link java.nio.channels.FileChannel}. Concrete classes may offer
+     * typed row methods which use {@link #appendField(CharSequence)},
+     * {@link #appendField(int)} and {@link #appendField(double)} to avoid
+     * formatting values as intermediate strings.
+     * <p/>
+     * When a {@link MetricsListener} is set, each data row is timed as
+     * {@link MetricsListener.Stage#WRITE}.
      */
     public static abstract class Writer {
-        private BufferedWriter writer = null;
-        private Map<String, String> headerInfo = new HashMap<>();
+        // size of the reusable output buffer in bytes
+        protected final static int WRITE_BUFFER_SIZE = 1 << 20;
+        // fractional digits tried first when writing floating point fields, the precision of CAMI percentages
+        public final static int FRACTION_DIGITS = 5;
+        // fraction digits setting for the shortest form which reads back as the same value
+        public final static int SHORTEST = -1;
+        private final static double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+        // integers up to here are exact doubles
+        private final static long EXACT_LIMIT = 1L << 53;
+        private final static byte TAB = '\t';
+        private final static byte LF = '\n';
+
+        private FileChannel channel = null;
+        private final byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        private final byte[] digits = new byte[20];
+        private int position = 0;
+        private int fieldCount = 0;
+        // written in the order given
+        private Map<String, String> headerInfo = new LinkedHashMap<>();
         private String[] columnDefinition;
         private boolean headerWritten;
         private Logger logger = LoggerFactory.getLogger(getClass());
+        private MetricsListener metrics = Metrics.getDefaultListener();
+        private TraceListener tracer = Metrics.getDefaultTracer();
+        private final String fileName;
+        private long rowStart;
+        private int fractionDigits = SHORTEST;
 
         /**
          * Create a write for output. The underlying
-         * {@link java.io.BufferedWriter} is opened at instantiation.
+         * {@link java.nio.channels.FileChannel} is opened at instantiation.
          *
          * @param fileName         - the file to open
          * @param columnDefinition - defines the column definition for this file type
@@ -132,10 +176,11 @@ public abstract class Base {
             this.headerInfo.put(CONID_KEY, "");
             this.headerInfo.put(SAMPLEID_KEY, "");
             this.columnDefinition = columnDefinition;
+            this.fileName = fileName;
 
-            // File file = new File(fileName);
             if (create) {
-                this.writer = new BufferedWriter(new FileWriter(fileName, false));
+                this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
             }
             this.headerWritten = false;
         }
@@ -147,7 +192,8 @@ public abstract class Base {
          * @throws IOException
          */
         private void writeLine(String line) throws IOException {
-            this.writer.write(line + "\n");
+            appendChars(line);
+            appendByte(LF);
         }
 
         /**
@@ -190,6 +236,7 @@ public abstract class Base {
          */
         public void writeRow(String[] row) throws FieldException,
                 HeaderException, IOException {
+            this.rowStart = this.metrics == null ? 0L : System.nanoTime();
             if (!this.headerWritten) {
                 throw new HeaderException(
                         "header must be written prior to data rows");
@@ -200,17 +247,276 @@ public abstract class Base {
                         + " does not agree with columns:"
                         + Arrays.toString(this.columnDefinition));
             }
-            writeLine(join(row));
+            for (String field : row) {
+                appendField(field);
+            }
+            endRow();
+        }
+
+        /**
+         * Begin a typed data row. Typed row methods of concrete classes must call this
+         * prior to appending any fields and finish the row with {@link #endRow()}.
+         *
+         * @param fields the number of fields the caller is about to append
+         * @throws FieldException  wrong number of fields.
+         * @throws HeaderException header has not been written first.
+         */
+        protected void beginRow(int fields) throws FieldException, HeaderException {
+            this.rowStart = this.metrics == null ? 0L : System.nanoTime();
+            if (!this.headerWritten) {
+                throw new HeaderException(
+                        "header must be written prior to data rows");
+            }
+            if (fields != this.columnDefinition.length) {
+                throw new FieldException(String.format("number of fields: %d does not agree with columns: %s",
+                        fields, Arrays.toString(this.columnDefinition)));
+            }
+        }
+
+        /**
+         * Terminate the current row with a newline.
+         *
+         * @throws IOException error writing to file.
+         */
+        protected void endRow() throws IOException {
+            appendByte(LF);
+            this.fieldCount = 0;
+            if (this.metrics != null) {
+                this.metrics.record(MetricsListener.Stage.WRITE, System.nanoTime() - this.rowStart);
+            }
+        }
+
+        /**
+         * Append a text field to the current row, preceded by {@link #DELIMITER} if
+         * it is not the first field.
+         *
+         * @param value the field value
+         * @throws IOException error writing to file.
+         */
+        protected void appendField(CharSequence value) throws IOException {
+            delimit();
+            appendChars(value);
+        }
+
+        /**
+         * Append an integer field to the current row without creating an intermediate string.
+         *
+         * @param value the field value
+         * @throws IOException error writing to file.
+         */
+        protected void appendField(int value) throws IOException {
+            delimit();
+            appendInt(value);
+        }
+
+        /**
+         * Append a floating point field to the current row. Values are written in plain
+         * decimal notation with trailing zeros removed: by default in the shortest form
+         * which reads back as the same value, else rounded to the digits set by
+         * {@link #setFractionDigits(int)}. Values with up to {@link #FRACTION_DIGITS}
+         * fractional digits are written without creating an intermediate string.
+         * NaN and infinity fall back to {@link Double#toString(double)}.
+         *
+         * @param value the field value
+         * @throws IOException error writing to file.
+         */
+        protected void appendField(double value) throws IOException {
+            delimit();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                appendChars(Double.toString(value));
+                return;
+            }
+            int digits = this.fractionDigits == SHORTEST ? FRACTION_DIGITS : this.fractionDigits;
+            double unit = POWERS_OF_TEN[digits];
+            double scaled = Math.abs(value) * unit;
+            if (scaled < EXACT_LIMIT) {
+                long fixed = Math.round(scaled);
+                if (this.fractionDigits != SHORTEST || fixed / unit == Math.abs(value)) {
+                    appendFixed(value < 0 && fixed != 0, fixed, digits);
+                    return;
+                }
+            }
+            BigDecimal decimal = BigDecimal.valueOf(value);
+            if (this.fractionDigits != SHORTEST) {
+                decimal = decimal.setScale(digits, RoundingMode.HALF_UP);
+            }
+            appendChars(decimal.stripTrailingZeros().toPlainString());
+        }
+
+        /**
+         * @param fixed the absolute value scaled by {@code 10^digits}
+         */
+        private void appendFixed(boolean negative, long fixed, int digits) throws IOException {
+            if (negative) {
+                appendByte((byte) '-');
+            }
+            long unit = (long) POWERS_OF_TEN[digits];
+            appendLong(fixed / unit);
+            long fraction = fixed % unit;
+            if (fraction != 0) {
+                appendByte((byte) '.');
+                int width = digits;
+                while (fraction % 10 == 0) {
+                    fraction /= 10;
+                    width--;
+                }
+                for (long u = (long) POWERS_OF_TEN[width - 1]; u > fraction && u > 1; u /= 10) {
+                    appendByte((byte) '0');
+                }
+                appendLong(fraction);
+            }
+        }
+
+        /**
+         * Append a list of integers as a single field, joined by {@code separator}.
+         * Non-positive entries are treated as missing and written as empty values.
+         *
+         * @param values    the values to join
+         * @param separator the separator placed between values
+         * @throws IOException error writing to file.
+         */
+        protected void appendField(int[] values, char separator) throws IOException {
+            delimit();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    appendChar(separator);
+                }
+                if (values[i] > 0) {
+                    appendInt(values[i]);
+                }
+            }
+        }
+
+        /**
+         * Append a list of strings as a single field, joined by {@code separator}.
+         * Null entries are treated as missing and written as empty values.
+         *
+         * @param values    the values to join
+         * @param separator the separator placed between values
+         * @throws IOException error writing to file.
+         */
+        protected void appendField(CharSequence[] values, char separator) throws IOException {
+            delimit();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    appendChar(separator);
+                }
+                if (values[i] != null) {
+                    appendChars(values[i]);
+                }
+            }
+        }
+
+        private void delimit() throws IOException {
+            if (this.fieldCount++ > 0) {
+                appendByte(TAB);
+            }
+        }
+
+        private void appendInt(int value) throws IOException {
+            appendLong(value);
+        }
+
+        private void appendLong(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                appendChars(Long.toString(value));
+                return;
+            }
+            if (value < 0) {
+                appendByte((byte) '-');
+                value = -value;
+            }
+            int n = this.digits.length;
+            do {
+                this.digits[--n] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (n < this.digits.length) {
+                appendByte(this.digits[n++]);
+            }
+        }
+
+        private void appendChars(CharSequence value) throws IOException {
+            for (int i = 0, len = value.length(); i < len; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    appendByte((byte) c);
+                } else if (Character.isHighSurrogate(c) && i + 1 < len
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    appendCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+                } else {
+                    appendCodePoint(c);
+                }
+            }
+        }
+
+        private void appendChar(char c) throws IOException {
+            if (c < 0x80) {
+                appendByte((byte) c);
+            } else {
+                appendCodePoint(c);
+            }
+        }
+
+        /**
+         * UTF-8 encode a single code point into the buffer.
+         */
+        private void appendCodePoint(int cp) throws IOException {
+            if (cp < 0x800) {
+                appendByte((byte) (0xc0 | (cp >> 6)));
+            } else if (cp < 0x10000) {
+                appendByte((byte) (0xe0 | (cp >> 12)));
+                appendByte((byte) (0x80 | ((cp >> 6) & 0x3f)));
+            } else {
+                appendByte((byte) (0xf0 | (cp >> 18)));
+                appendByte((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                appendByte((byte) (0x80 | ((cp >> 6) & 0x3f)));
+            }
+            appendByte((byte) (0x80 | (cp & 0x3f)));
+        }
+
+        private void appendByte(byte b) throws IOException {
+            if (this.position == this.buffer.length) {
+                flushBuffer();
+            }
+            this.buffer[this.position++] = b;
+        }
+
+        private void flushBuffer() throws IOException {
+            Object span = this.tracer == null ? null : this.tracer.begin(TraceListener.Span.FLUSH);
+            this.byteBuffer.clear().limit(this.position);
+            while (this.byteBuffer.hasRemaining()) {
+                this.channel.write(this.byteBuffer);
+            }
+            if (this.tracer != null) {
+                this.tracer.endFlush(span, this.fileName, getSampleId(), this.position);
+            }
+            this.position = 0;
         }
 
         /**
-         * Close the underlying {@link java.io.BufferedWriter}.
+         * Write any buffered output to the underlying {@link java.nio.channels.FileChannel}.
+         *
+         * @throws IOException error writing to file.
+         */
+        public void flush() throws IOException {
+            if (this.channel != null) {
+                flushBuffer();
+            }
+        }
+
+        /**
+         * Flush and close the underlying {@link java.nio.channels.FileChannel}.
          *
          * @throws IOException
          */
         public void close() throws IOException {
-            if (this.writer != null) {
-                this.writer.close();
+            if (this.channel != null) {
+                try {
+                    flushBuffer();
+                } finally {
+                    this.channel.close();
+                }
             }
         }
 
@@ -234,10 +540,25 @@ public abstract class Base {
          * Get/Set methods
 		 */
 
+        protected String[] getColumnDefinition() {
+            return columnDefinition;
+        }
+
         protected Map<String, String> getHeaderInfo() {
             return headerInfo;
         }
 
+        /**
+         * Replace all header fields, for instance with those of a file which has been read.
+         * Unlike {@link #setHeaderInfo(String, String)} arbitrary fields are accepted.
+         *
+         * @param headerInfo the header fields to write
+         */
+        public void replaceHeaderInfo(Map<String, String> headerInfo) {
+            this.headerInfo.clear();
+            this.headerInfo.putAll(headerInfo);
+        }
+
         public String getTask() {
             return getHeaderInfo().get(TASK_KEY);
         }
@@ -270,6 +591,47 @@ public abstract class Base {
             getHeaderInfo().put(SAMPLEID_KEY, sampleId);
         }
 
+        public MetricsListener getMetricsListener() {
+            return this.metrics;
+        }
+
+        /**
+         * Replace the listener taken from {@link Metrics#getDefaultListener()} at creation.
+         *
+         * @param metrics the listener, null to disable metrics
+         */
+        public void setMetricsListener(MetricsListener metrics) {
+            this.metrics = metrics;
+        }
+
+        public TraceListener getTracer() {
+            return this.tracer;
+        }
+
+        /**
+         * Replace the tracer taken from {@link Metrics#getDefaultTracer()} at creation.
+         *
+         * @param tracer the tracer, null to disable tracing
+         */
+        public void setTracer(TraceListener tracer) {
+            this.tracer = tracer;
+        }
+
+        public int getFractionDigits() {
+            return this.fractionDigits;
+        }
+
+        /**
+         * @param fractionDigits the fractional digits floating point fields are rounded to, from 0 to 9, or
+         *                       {@link #SHORTEST} for the shortest form which reads back as the same value
+         */
+        public void setFractionDigits(int fractionDigits) {
+            if (fractionDigits != SHORTEST && (fractionDigits < 0 || fractionDigits >= POWERS_OF_TEN.length)) {
+                throw new IllegalArgumentException("invalid number of fraction digits " + fractionDigits);
+            }
+            this.fractionDigits = fractionDigits;
+        }
+
         public Logger getLogger() {
             return logger;
         }
@@ -284,17 +646,41 @@ public abstract class Base {
      * <p/>
      * The header is read immediately. Data rows are read iteratively with
      * {@link #readRow()} The file is not automatically closed.
+     * <p/>
+     * When a {@link MetricsListener} is set, reading, parsing and validation of rows are
+     * timed and progress is reported as the file is read.
+     * <p/>
+     * Input beyond the {@link ReaderLimits} of the reader raises a {@link LimitException}.
      */
     public static abstract class Reader {
         public boolean isTaxPathSnUsed = false;
         protected int lineNumber = 0;
-        protected BufferedReader reader = null;
+        protected LineReader reader = null;
         private Map<String, String> headerInfo = new HashMap<>();
+        // the header fields as written, in file order
+        private Map<String, String> originalHeaderInfo = new LinkedHashMap<>();
         protected List<String> columnDefinition = null;
-        private List<String> mandatoryFields = new ArrayList<>();
-        private Map<String, List<String>> supports = new HashMap<>();
+        private FormatSchema schema;
         protected Boolean checkHeader;
         private Logger logger = LoggerFactory.getLogger(getClass());
+        private MetricsListener metrics = Metrics.getDefaultListener();
+        private String source;
+        private long totalBytes;
+        private long startNanos;
+        private long rows = 0;
+        private long lookups = 0;
+        private boolean endReported = false;
+        private TraceListener tracer = Metrics.getDefaultTracer();
+        private Object headerSpan = null;
+        private Object batchSpan = null;
+        private int batchRows = 0;
+        private int batchFirstLine;
+        private int batchLastLine;
+        private long lineOffset = 0;
+        private long headerOffset = 0;
+        private int headerLineNumber = 1;
+        private ReaderLimits limits = ReaderLimits.getDefault();
+        private int samples = 1;
 
         /**
          * Create a Reader for CAMI tabular data with <b>**explicit column definitions**</b>.
@@ -351,13 +737,55 @@ public abstract class Base {
          */
         public Reader(String filename, String taskName, String[] versionSupport, String[] extraMandatoryFields,
                       Boolean checkHeader) throws ParseException, IOException {
-            this.supports.put(TASK_KEY, Arrays.asList(taskName));
-            this.supports.put(TAXONOMYID_KEY, Arrays.asList(taskName));
-            this.supports.put(VERSION_KEY, Arrays.asList(versionSupport));
-            this.supports.put(Profile.RANKS_KEY, Arrays.asList(Profile.PRO_RANKS));
-            this.mandatoryFields.addAll(Arrays.asList(extraMandatoryFields));
+            this(filename, new FormatSchema(taskName, versionSupport, extraMandatoryFields), checkHeader);
+        }
 
-            this.reader = new BufferedReader(new FileReader(filename));
+        /**
+         * Create a Reader for CAMI tabular data described by a {@link FormatSchema}.
+         * <p/>
+         * The column definition is read from the file header. Concrete classes pass their
+         * shared schema, so that no header rules are built per file.
+         *
+         * @param filename    the file to open
+         * @param schema      the format of the file
+         * @param checkHeader check header fields
+         * @throws ParseException error while reading the header
+         * @throws IOException    error reading from file
+         */
+        protected Reader(String filename, FormatSchema schema, Boolean checkHeader)
+                throws ParseException, IOException {
+            this.schema = schema;
+            if (this.tracer != null) {
+                this.headerSpan = this.tracer.begin(TraceListener.Span.HEADER);
+            }
+            start(LineReader.open(filename), checkHeader);
+        }
+
+        /**
+         * Create a Reader for CAMI tabular data from any {@link LineReader}, such as standard
+         * input, a decompressing stream, a channel or an in-memory buffer.
+         *
+         * @param input       the lines to read, closed by {@link #close()}
+         * @param schema      the format of the input
+         * @param checkHeader check header fields
+         * @throws ParseException error while reading the header
+         * @throws IOException    error reading from input
+         */
+        protected Reader(LineReader input, FormatSchema schema, Boolean checkHeader)
+                throws ParseException, IOException {
+            this.schema = schema;
+            if (this.tracer != null) {
+                this.headerSpan = this.tracer.begin(TraceListener.Span.HEADER);
+            }
+            start(input, checkHeader);
+        }
+
+        private void start(LineReader input, Boolean checkHeader) throws ParseException, IOException {
+            this.reader = input;
+            input.setMaxLineLength(this.limits.getMaxLineLength());
+            this.source = input.getName();
+            this.totalBytes = input.getSize();
+            this.startNanos = System.nanoTime();
             this.checkHeader = checkHeader;
             readHeader();
         }
@@ -367,10 +795,18 @@ public abstract class Base {
          * number.
          *
          * @return the trimmed line or null at EOF
-         * @throws IOException error reading from file
+         * @throws LimitException the line is too long
+         * @throws IOException    error reading from file
          */
-        protected String readLine() throws IOException {
-            String line = this.reader.readLine();
+        protected String readLine() throws ParseException, IOException {
+            this.lineOffset = this.reader.getPosition();
+            String line;
+            try {
+                line = this.reader.readLine();
+            } catch (LineReader.LineTooLongException e) {
+                throw new LimitException(String.format("line:%d is longer than %d bytes", this.lineNumber + 1,
+                        this.limits.getMaxLineLength()));
+            }
             if (line != null) {
                 this.lineNumber++;
             }
@@ -383,8 +819,8 @@ public abstract class Base {
          * @throws HeaderException missing field
          */
         protected void checkMandatorySet() throws HeaderException {
-            for (String mf : this.mandatoryFields) {
-                if (!this.headerInfo.containsKey(mf.toLowerCase())) {
+            for (String mf : this.schema.getMandatoryFields()) {
+                if (!this.headerInfo.containsKey(mf)) {
                     throw new HeaderException(String.format("mandatory header field %s was not found", mf));
                 }
             }
@@ -446,46 +882,39 @@ public abstract class Base {
 
             // store valid entry
             this.headerInfo.put(key.toLowerCase(), value);
+            this.originalHeaderInfo.put(tok[0], tok[1]);
 
-            // check against the those fields which have declared support
-            for (Map.Entry<String, List<String>> entry : this.supports.entrySet()) {
-//                logger.info("Entrykey: " + entry.getKey());
-//                logger.info("normal key: " + key);
-                if (key.equals(VERSION_KEY)) {
-                    List<String> versionValues = this.supports.get(VERSION_KEY);
-                    for (String version : versionValues) {
-                        if (!value.startsWith(version)) {
-                            throw new HeaderException(
-                                    String.format(
-                                            "reader does not support the file type definition. line:%d [%s]",
-                                            this.lineNumber, line));
-                        }
-                    }
-                } else if (key.equals(TAXONOMYID_KEY)) {
-                } else if (key.equals(RANKS_KEY)) {
-                    if (!Profile.PRO_RANKS.equals(value.trim())) {
-                        throw new HeaderException(
-                                String.format(
-                                        "Ranks field is incorrect on line:%d [%s]",
-                                        this.lineNumber, line) + " CAMI only supports " + Profile.PRO_RANKS);
-                    }
-                } else if (!mandatoryFields.contains(key.toLowerCase()) && !key.matches("_[A-Za-z]*_[A-Za-z]+[A-Za-z0-9]*")) {
+            // check against the fields declared by the schema
+            if (key.equals(VERSION_KEY)) {
+                if (!this.schema.supportsVersion(value)) {
                     throw new HeaderException(
                             String.format(
                                     "reader does not support the file type definition. line:%d [%s]",
-                                    this.lineNumber, line) + " Custom types MUST be prefixed " +
-                                    "by a case-insensitive string with an underscore before and after the string ");
+                                    this.lineNumber, line));
+                }
+            } else if (key.equals(RANKS_KEY)) {
+                if (!Profile.PRO_RANKS.equals(value.trim())) {
+                    throw new HeaderException(
+                            String.format(
+                                    "Ranks field is incorrect on line:%d [%s]",
+                                    this.lineNumber, line) + " CAMI only supports " + Profile.PRO_RANKS);
                 }
-//                else if (key.equals(entry.getKey())
-//                             && !entry.getValue().contains(value) && ) {
-//                    throw new HeaderException(
-//                            String.format(
-//                                    "reader does not support the file type definition. line:%d [%s]",
-//                                    this.lineNumber, line));
-//                }
+            } else if (!this.schema.isKnownField(key)) {
+                throw new HeaderException(
+                        String.format(
+                                "reader does not support the file type definition. line:%d [%s]",
+                                this.lineNumber, line) + " Custom types MUST be prefixed " +
+                                "by a case-insensitive string with an underscore before and after the string ");
             }
         }
 
+        /**
+         * @return the format this reader checks files against
+         */
+        public FormatSchema getSchema() {
+            return this.schema;
+        }
+
         /**
          * Read the entire header record.
          *
@@ -493,7 +922,18 @@ public abstract class Base {
          * @throws IOException    error reading from file
          */
         protected void readHeader() throws ParseException, IOException {
+            Object span = this.headerSpan;
+            this.headerSpan = null;
+            if (span == null && this.tracer != null) {
+                span = this.tracer.begin(TraceListener.Span.HEADER);
+            }
+            long start = startTimer();
+            int firstLine = this.lineNumber + 1;
             while (true) {
+                if (this.lineNumber - firstLine + 1 >= this.limits.getMaxHeaderLines()) {
+                    throw new LimitException(String.format("header starting at line:%d is longer than %d lines",
+                            firstLine, this.limits.getMaxHeaderLines()));
+                }
                 String line = readLine();
                 if (line == null) {
                     // should not have reached the end of the file here. This is
@@ -512,6 +952,11 @@ public abstract class Base {
                 else if (isColumnsDef(line)) {
                     //cut the @@
                     String[] cols = line.substring(2).split(DELIMITER);
+                    if (cols.length > this.limits.getMaxFields()) {
+                        throw new LimitException(String.format(
+                                "column definition at line:%d has more than %d columns",
+                                this.lineNumber, this.limits.getMaxFields()));
+                    }
 
                     // implicit column definition as found in header.
 
@@ -536,9 +981,13 @@ public abstract class Base {
                 }
             }
 
+            if (this.tracer != null) {
+                this.tracer.endHeader(span, this.source, getSampleId(), firstLine, this.lineNumber);
+            }
             if (checkHeader) {
                 checkMandatorySet();
             }
+            stopTimer(MetricsListener.Stage.HEADER, start);
         }
 
         /**
@@ -549,27 +998,326 @@ public abstract class Base {
          * @throws IOException    error while reading from file
          */
         public String[] readRow() throws ParseException, IOException {
-            String line = readLine();
-            if (line == null) {
-                return null;
-            }
-
-            getLogger().debug("read: [{}]", line);
-
-            if (isBlank(line) || isComment(line)) {
-                return readRow();
-            }
+            String line;
+            // skip lines containing no information
+            do {
+                long start = startTimer();
+                line = readLine();
+                stopTimer(MetricsListener.Stage.READ, start);
+                if (line == null) {
+                    reportEnd();
+                    return null;
+                }
+                getLogger().debug("read: [{}]", line);
+            } while (isBlank(line) || isComment(line));
 
-            String[] values = line.split(DELIMITER, -1);
+            long start = startTimer();
+            // one field more than defined is enough to tell a bad row
+            String[] values = line.split(DELIMITER, this.columnDefinition.size() + 1);
+            stopTimer(MetricsListener.Stage.PARSE, start);
             if (values.length != this.columnDefinition.size()) {
                 throw new FieldException(String.format(
                         "'incorrect number of fields for line:%d [%s]'",
                         this.lineNumber, line));
             }
 
+            countRow();
             return values;
         }
 
+        /**
+         * Start timing a stage.
+         *
+         * @return the start time, 0 if no {@link MetricsListener} is set
+         */
+        protected final long startTimer() {
+            return this.metrics == null ? 0L : System.nanoTime();
+        }
+
+        /**
+         * Report the time elapsed since {@link #startTimer()} to the {@link MetricsListener}, if any.
+         *
+         * @param stage the stage which has completed
+         * @param start the value returned by {@link #startTimer()}
+         */
+        protected final void stopTimer(MetricsListener.Stage stage, long start) {
+            if (this.metrics != null) {
+                this.metrics.record(stage, System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Count a data row returned to the caller, reporting progress every
+         * {@link Metrics#PROGRESS_INTERVAL} rows.
+         *
+         * @throws LimitException the file holds more rows than allowed
+         */
+        protected final void countRow() throws LimitException {
+            if (this.rows >= this.limits.getMaxRows()) {
+                throw new LimitException(String.format("more than %d rows at line:%d", this.limits.getMaxRows(),
+                        this.lineNumber));
+            }
+            if (++this.rows % Metrics.PROGRESS_INTERVAL == 0 && this.metrics != null) {
+                reportProgress();
+            }
+            if (this.tracer != null) {
+                if (this.batchRows == 0) {
+                    this.batchSpan = this.tracer.begin(TraceListener.Span.ROWS);
+                    this.batchFirstLine = this.lineNumber;
+                }
+                this.batchLastLine = this.lineNumber;
+                if (++this.batchRows == Metrics.TRACE_BATCH) {
+                    endBatch();
+                }
+            }
+        }
+
+        /**
+         * Close the traced batch of rows early, for instance before the header of the next
+         * sample is read.
+         */
+        protected final void endBatch() {
+            if (this.tracer != null && this.batchRows > 0) {
+                this.tracer.endRows(this.batchSpan, this.source, getSampleId(), this.batchFirstLine,
+                        this.batchLastLine, this.batchRows);
+                this.batchSpan = null;
+                this.batchRows = 0;
+            }
+        }
+
+        /**
+         * Mark the line last read as the first line of a new header, for instance the header of the next
+         * sample of a concatenated file, so that {@link #getCheckpoint()} resumes with it.
+         *
+         * @throws LimitException the file holds more samples than allowed
+         */
+        protected final void markHeader() throws LimitException {
+            if (++this.samples > this.limits.getMaxSamples()) {
+                throw new LimitException(String.format("more than %d samples at line:%d",
+                        this.limits.getMaxSamples(), this.lineNumber));
+            }
+            this.headerOffset = this.lineOffset;
+            this.headerLineNumber = this.lineNumber;
+        }
+
+        /**
+         * @return the position after the line last read
+         */
+        public Checkpoint getCheckpoint() {
+            long position = this.reader.getPosition();
+            // the bytes before the position have been read
+            int headLength = (int) Math.min(position, LineReader.HEAD_SIZE);
+            return new Checkpoint(position, this.lineNumber, this.rows, this.headerOffset, this.headerLineNumber,
+                    headLength, this.reader.getHeadChecksum(headLength));
+        }
+
+        /**
+         * Continue from a checkpoint taken by an earlier reader on the same input, skipping the bytes
+         * before it. The header in force at the checkpoint is read again, the rows before it are not.
+         * Must be called before any row is read.
+         * <p/>
+         * A checkpoint whose head checksum does not match the input, or which lies beyond the end of an input
+         * of known size, was taken on another input, for instance a file since replaced. It is refused and
+         * reading continues from the start.
+         *
+         * @param checkpoint the position to continue from
+         * @return true if resumed, false if the checkpoint was refused
+         * @throws ParseException the header at the checkpoint is invalid
+         * @throws IOException    the input ends before the checkpoint or error reading from input
+         */
+        public boolean resume(Checkpoint checkpoint) throws ParseException, IOException {
+            if (this.rows > 0) {
+                throw new IllegalStateException("rows have already been read");
+            }
+            this.reader.readHead(checkpoint.getHeadLength());
+            long size = this.reader.getSize();
+            if (this.reader.getHeadChecksum(checkpoint.getHeadLength()) != checkpoint.getHeadChecksum()
+                    || size >= 0 && size < checkpoint.getOffset()) {
+                getLogger().warn("checkpoint {} does not match {}, reading from the start", checkpoint, this.source);
+                return false;
+            }
+            if (checkpoint.getHeaderOffset() > 0) {
+                // the checkpoint lies in a later sample
+                this.reader.skip(checkpoint.getHeaderOffset() - this.reader.getPosition());
+                this.lineNumber = checkpoint.getHeaderLineNumber() - 1;
+                this.headerOffset = checkpoint.getHeaderOffset();
+                this.headerLineNumber = checkpoint.getHeaderLineNumber();
+                clearHeaderInfo();
+                readHeader();
+            }
+            if (checkpoint.getOffset() < this.reader.getPosition()) {
+                throw new IOException(String.format("checkpoint at byte %d lies within the header of %s",
+                        checkpoint.getOffset(), this.source));
+            }
+            this.reader.skip(checkpoint.getOffset() - this.reader.getPosition());
+            this.lineNumber = checkpoint.getLineNumber();
+            this.rows = checkpoint.getRows();
+            return true;
+        }
+
+        /**
+         * Report progress once the end of the file has been reached.
+         */
+        protected final void reportEnd() {
+            endBatch();
+            if (!this.endReported && this.metrics != null) {
+                this.endReported = true;
+                reportProgress();
+            }
+        }
+
+        private void reportProgress() {
+            long bytesRead = getBytesRead();
+            long eta = -1;
+            if (bytesRead > 0 && this.totalBytes > 0) {
+                double remaining = Math.max(0, this.totalBytes - bytesRead) / (double) bytesRead;
+                eta = (long) ((System.nanoTime() - this.startNanos) * remaining);
+            }
+            this.metrics.progress(this.source, bytesRead, this.totalBytes, this.rows, eta);
+            if (this.lookups > 0) {
+                this.metrics.lookups(this.source, this.lookups);
+            }
+        }
+
+        /**
+         * Tell the {@link TraceListener}, if any, that the current row has failed validation.
+         *
+         * @param reason a short description
+         */
+        protected final void traceFailure(String reason) {
+            if (this.tracer != null) {
+                this.tracer.validationFailure(this.source, getSampleId(), this.lineNumber, reason);
+            }
+        }
+
+        /**
+         * Query the taxonomy for a taxon, timed as {@link MetricsListener.Stage#TAXONOMY} and traced as
+         * {@link TraceListener.Span#LOOKUP}.
+         *
+         * @param neoDao the taxonomy
+         * @param taxId  the taxid to look up
+         * @return true if the taxon exists
+         */
+        protected final boolean taxonExists(NeoDao neoDao, int taxId) {
+            this.lookups++;
+            long start = startTimer();
+            if (this.tracer == null) {
+                boolean exists = neoDao.taxonExists(taxId);
+                stopTimer(MetricsListener.Stage.TAXONOMY, start);
+                return exists;
+            }
+            Object span = this.tracer.begin(TraceListener.Span.LOOKUP);
+            boolean exists = neoDao.taxonExists(taxId);
+            stopTimer(MetricsListener.Stage.TAXONOMY, start);
+            this.tracer.endLookup(span, this.source, this.lineNumber, -1, taxId, false, exists);
+            return exists;
+        }
+
+        /**
+         * Query the taxonomy for a path, timed as {@link MetricsListener.Stage#TAXONOMY} and traced as
+         * {@link TraceListener.Span#LOOKUP}.
+         *
+         * @param neoDao     the taxonomy
+         * @param ancestor   the upper taxid
+         * @param descendant the lower taxid
+         * @return true if {@code descendant} lies below {@code ancestor}
+         */
+        protected final boolean sparsePathExists(NeoDao neoDao, int ancestor, int descendant) {
+            this.lookups++;
+            long start = startTimer();
+            if (this.tracer == null) {
+                boolean exists = neoDao.sparsePathExists(ancestor, descendant);
+                stopTimer(MetricsListener.Stage.TAXONOMY, start);
+                return exists;
+            }
+            Object span = this.tracer.begin(TraceListener.Span.LOOKUP);
+            boolean exists = neoDao.sparsePathExists(ancestor, descendant);
+            stopTimer(MetricsListener.Stage.TAXONOMY, start);
+            this.tracer.endLookup(span, this.source, this.lineNumber, ancestor, descendant, false, exists);
+            return exists;
+        }
+
+        private String getSampleId() {
+            return this.headerInfo.get(SAMPLEID_KEY);
+        }
+
+        /**
+         * @return the number of bytes consumed by the lines read so far
+         */
+        public long getBytesRead() {
+            return this.reader.getPosition();
+        }
+
+        /**
+         * @return the number of data rows returned so far
+         */
+        public long getRowCount() {
+            return this.rows;
+        }
+
+        /**
+         * @return the number of taxonomy queries made so far
+         */
+        public long getLookupCount() {
+            return this.lookups;
+        }
+
+        /**
+         * @return the number of samples begun so far, counted from the header of the first
+         */
+        public int getSampleCount() {
+            return this.samples;
+        }
+
+        public ReaderLimits getLimits() {
+            return this.limits;
+        }
+
+        /**
+         * Change the limits taken from {@link ReaderLimits#getDefault()}. The header has already been
+         * read under the limits in force when the reader was created.
+         *
+         * @param limits the limits for the rows still to read
+         */
+        public void setLimits(ReaderLimits limits) {
+            this.limits = limits;
+            this.reader.setMaxLineLength(limits.getMaxLineLength());
+        }
+
+        /**
+         * @return the number of the line last read, counted from 1
+         */
+        public int getLineNumber() {
+            return this.lineNumber;
+        }
+
+        public MetricsListener getMetricsListener() {
+            return this.metrics;
+        }
+
+        /**
+         * Replace the listener taken from {@link Metrics#getDefaultListener()} at creation.
+         *
+         * @param metrics the listener, null to disable metrics
+         */
+        public void setMetricsListener(MetricsListener metrics) {
+            this.metrics = metrics;
+        }
+
+        public TraceListener getTracer() {
+            return this.tracer;
+        }
+
+        /**
+         * Replace the tracer taken from {@link Metrics#getDefaultTracer()} at creation.
+         *
+         * @param tracer the tracer, null to disable tracing
+         */
+        public void setTracer(TraceListener tracer) {
+            endBatch();
+            this.tracer = tracer;
+        }
+
         /**
          * Get a specific header field from {@link #headerInfo}.
          *
@@ -584,9 +1332,32 @@ public abstract class Base {
             return this.headerInfo.get(key);
         }
 
+        /**
+         * @return all header fields read so far, keys and values in lower case
+         */
+        public Map<String, String> getHeaderInfo() {
+            return Collections.unmodifiableMap(this.headerInfo);
+        }
+
+        /**
+         * @return all header fields read so far as written in the file, in file order, for copying the header
+         * of a file to another
+         */
+        public Map<String, String> getOriginalHeaderInfo() {
+            return Collections.unmodifiableMap(this.originalHeaderInfo);
+        }
+
+        /**
+         * @return the column definition of the file
+         */
+        public List<String> getColumnDefinition() {
+            return Collections.unmodifiableList(this.columnDefinition);
+        }
+
 
         public void clearHeaderInfo() {
             this.headerInfo.clear();
+            this.originalHeaderInfo.clear();
         }
 
         /**
@@ -612,7 +1383,7 @@ public abstract class Base {
         }
 
         /**
-         * Close the underlying {@link java.io.BufferedReader}
+         * Close the underlying {@link LineReader}
          *
          * @throws IOException error with close the file.
          */
@@ -650,6 +1421,17 @@ public abstract class Base {
         }
     }
 
+    /**
+     * Input exceeding a {@link ReaderLimits} bound
+     */
+    public static class LimitException extends ParseException {
+        private static final long serialVersionUID = 6407962340567130151L;
+
+        protected LimitException(String msg) {
+            super(msg);
+        }
+    }
+
     /**
      * Data field related exceptions
      */
@@ -1,11 +1,11 @@
 package cami.io;
 
+import cami.io.metrics.MetricsListener;
 import mzd.taxonomy.neo.NeoDao;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * Concrete implementation of the Taxonomic Binning format.
@@ -29,10 +29,21 @@ public class Binning extends Base {
     public final static String[] COLUMNDEF_BINID = {SEQUENCEID, BINID};
     public final static String[] COLUMNDEF_TAXID_AND_BINID = {SEQUENCEID, TAXID, BINID};
 
+    /**
+     * The binning format: columns begin with {@link #COLUMNDEF_TAXID} or {@link #COLUMNDEF_BINID}
+     * and may be followed by the other predefined columns or custom columns.
+     */
+    public final static FormatSchema SCHEMA = new FormatSchema(BIN_TASK, BIN_VERSION_SUPPORT,
+            BIN_MANDATORY_FIELDS, new String[][]{COLUMNDEF_TAXID, COLUMNDEF_BINID},
+            new String[]{SEQUENCEID, TAXID, BINID});
+
     /**
      * Writer for CAMI Binning format.
      */
     public static class Writer extends Base.Writer {
+        // the layout of the typed rows last written, checked against the columns once
+        private String[] layout = null;
+
         /**
          * Constructor writing binning information to file.
          *
@@ -66,6 +77,82 @@ public class Binning extends Base {
             this(fileName, new String[]{}, false);
         }
 
+        /**
+         * Write a {@link #COLUMNDEF_TAXID_AND_BINID} row without formatting the taxid as a string.
+         *
+         * @param seqId the sequence id
+         * @param taxId the assigned taxid
+         * @param binId the assigned bin id
+         * @throws FieldException  the columns of the writer are not {@link #COLUMNDEF_TAXID_AND_BINID}.
+         * @throws HeaderException header has not been written first.
+         * @throws IOException     error writing to file.
+         */
+        public void writeBinningRow(CharSequence seqId, int taxId, CharSequence binId)
+                throws FieldException, HeaderException, IOException {
+            checkLayout(COLUMNDEF_TAXID_AND_BINID);
+            beginRow(3);
+            appendField(seqId);
+            appendField(taxId);
+            appendField(binId);
+            endRow();
+        }
+
+        /**
+         * Write a {@link #COLUMNDEF_TAXID} row without formatting the taxid as a string.
+         *
+         * @param seqId the sequence id
+         * @param taxId the assigned taxid
+         * @throws FieldException  the columns of the writer are not {@link #COLUMNDEF_TAXID}.
+         * @throws HeaderException header has not been written first.
+         * @throws IOException     error writing to file.
+         */
+        public void writeBinningRow(CharSequence seqId, int taxId)
+                throws FieldException, HeaderException, IOException {
+            checkLayout(COLUMNDEF_TAXID);
+            beginRow(2);
+            appendField(seqId);
+            appendField(taxId);
+            endRow();
+        }
+
+        /**
+         * Write a {@link #COLUMNDEF_BINID} row.
+         *
+         * @param seqId the sequence id
+         * @param binId the assigned bin id
+         * @throws FieldException  the columns of the writer are not {@link #COLUMNDEF_BINID}.
+         * @throws HeaderException header has not been written first.
+         * @throws IOException     error writing to file.
+         */
+        public void writeBinningRow(CharSequence seqId, CharSequence binId)
+                throws FieldException, HeaderException, IOException {
+            checkLayout(COLUMNDEF_BINID);
+            beginRow(2);
+            appendField(seqId);
+            appendField(binId);
+            endRow();
+        }
+
+        /**
+         * Check that the columns of the writer are those of a typed row, so that for instance a TAXID is not
+         * written into a BINID column. Only the first row of a layout is compared.
+         */
+        private void checkLayout(String[] expected) throws FieldException {
+            if (this.layout == expected) {
+                return;
+            }
+            String[] columns = getColumnDefinition();
+            boolean matches = columns.length == expected.length;
+            for (int i = 0; matches && i < columns.length; i++) {
+                matches = columns[i].trim().equalsIgnoreCase(expected[i]);
+            }
+            if (!matches) {
+                throw new FieldException(String.format("row of columns %s does not fit the columns %s",
+                        Arrays.toString(expected), Arrays.toString(columns)));
+            }
+            this.layout = expected;
+        }
+
         public void setReferenceBased(boolean val) {
             getHeaderInfo().put(Binning.REFBASED_KEY, val ? "T" : "F");
         }
@@ -91,12 +178,133 @@ public class Binning extends Base {
         }
     }
 
+    /**
+     * Binning Writer which validates rows before they are written.
+     * <p/>
+     * The column definition is checked at instantiation with the rules of {@link ValidatingReader}
+     * and the TAXID column of every row is checked against the taxonomy. Lookups go through a
+     * {@link TaxonomyCache}, which should be shared between writers. Neither the header values nor
+     * the mandatory header fields are checked, so a file written without error may still fail
+     * validation on read.
+     */
+    public static class ValidatingWriter extends Writer {
+        private TaxonomyCache taxonomy;
+        // a local neoDao instance will be shutdown with close()
+        private boolean localNeoDao = false;
+        private int taxIDIndex;
+        private long rowNumber = 0;
+
+        public ValidatingWriter(String fileName, String[] columnDefinition, boolean create, TaxonomyCache taxonomy)
+                throws ParseException, IOException {
+            super(fileName, checkColumnDefinition(columnDefinition), create);
+            this.taxonomy = taxonomy;
+            this.taxIDIndex = Arrays.asList(columnDefinition).indexOf(TAXID);
+        }
+
+        public ValidatingWriter(String fileName, String[] columnDefinition, boolean create, NeoDao neoDao)
+                throws ParseException, IOException {
+            this(fileName, columnDefinition, create, new TaxonomyCache(neoDao));
+        }
+
+        public ValidatingWriter(String fileName, String[] columnDefinition, boolean create, String neoDBPath)
+                throws ParseException, IOException {
+            this(fileName, columnDefinition, create, new TaxonomyCache(new NeoDao(new File(neoDBPath))));
+            this.localNeoDao = true;
+        }
+
+        private static String[] checkColumnDefinition(String[] columnDefinition) throws HeaderException {
+            int invalid = SCHEMA.findInvalidColumn(Arrays.asList(columnDefinition));
+            if (invalid == 0) {
+                throw new HeaderException(String.format(
+                        "column definition must start with SEQUENCEID and TAXID or BINID %s",
+                        Arrays.toString(columnDefinition)));
+            } else if (invalid != -1) {
+                throw new HeaderException(String.format("invalid column %s. " +
+                        "Custom types MUST be prefixed by a case-insensitive " +
+                        "string with an underscore before and after the string", columnDefinition[invalid]));
+            }
+            return columnDefinition;
+        }
+
+        @Override
+        public void writeRow(String[] row) throws FieldException, HeaderException, IOException {
+            this.rowNumber++;
+            if (this.taxIDIndex != -1 && row.length > this.taxIDIndex) {
+                try {
+                    checkTaxId(toInt(row[this.taxIDIndex]));
+                } catch (NumberFormatException ex) {
+                    throw new FieldException(String.format("invalid TAXID [%s] in row:%d",
+                            row[this.taxIDIndex], this.rowNumber));
+                }
+            }
+            super.writeRow(row);
+        }
+
+        @Override
+        public void writeBinningRow(CharSequence seqId, int taxId, CharSequence binId)
+                throws FieldException, HeaderException, IOException {
+            this.rowNumber++;
+            checkTaxId(taxId);
+            super.writeBinningRow(seqId, taxId, binId);
+        }
+
+        @Override
+        public void writeBinningRow(CharSequence seqId, int taxId)
+                throws FieldException, HeaderException, IOException {
+            this.rowNumber++;
+            checkTaxId(taxId);
+            super.writeBinningRow(seqId, taxId);
+        }
+
+        @Override
+        public void writeBinningRow(CharSequence seqId, CharSequence binId)
+                throws FieldException, HeaderException, IOException {
+            this.rowNumber++;
+            super.writeBinningRow(seqId, binId);
+        }
+
+        private void checkTaxId(int taxId) throws FieldException {
+            if (!this.taxonomy.taxonExists(taxId)) {
+                throw new FieldException(String.format("invalid TAXID [%d] in row:%d", taxId, this.rowNumber));
+            }
+        }
+
+        /**
+         * Close the underlying file and shutdown any local NeoDao instance.
+         * This will not close an external NeoDao instance passed in at
+         * instantiation time.
+         */
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (isLocalNeoDao()) {
+                getTaxonomy().getNeoDao().shutdown();
+            }
+        }
+
+        public boolean isLocalNeoDao() {
+            return localNeoDao;
+        }
+
+        public TaxonomyCache getTaxonomy() {
+            return taxonomy;
+        }
+    }
+
     /**
      * Reader for CAMI Binning format
      */
     public static class Reader extends Base.Reader {
         public Reader(String fileName, Boolean checkHeader) throws ParseException, IOException {
-            super(fileName, BIN_TASK, BIN_VERSION_SUPPORT, BIN_MANDATORY_FIELDS, checkHeader);
+            super(fileName, SCHEMA, checkHeader);
+        }
+
+        /**
+         * @param input       the lines to read, see {@link LineReader#of(java.io.InputStream, String)}
+         * @param checkHeader check header fields
+         */
+        public Reader(LineReader input, Boolean checkHeader) throws ParseException, IOException {
+            super(input, SCHEMA, checkHeader);
         }
     }
 
@@ -104,17 +312,30 @@ public class Binning extends Base {
         private NeoDao neoDao;
         // a local neoDao instance will be shutdown with close()
         private boolean localNeoDao = false;
-        private static int taxIDIndex = -1;
+        // index of the TAXID column, -1 if there is none; set by readHeader() from the super constructor,
+        // so it must not have an initializer
+        private int taxIDIndex;
 
         public ValidatingReader(String fileName, NeoDao neoDao, Boolean checkHeader)
                 throws ParseException, IOException {
-            super(fileName, BIN_TASK, BIN_VERSION_SUPPORT, BIN_MANDATORY_FIELDS, checkHeader);
+            super(fileName, SCHEMA, checkHeader);
+            this.neoDao = neoDao;
+        }
+
+        /**
+         * @param input       the lines to read, see {@link LineReader#of(java.io.InputStream, String)}
+         * @param neoDao      the taxonomy, not shut down by {@link #close()}
+         * @param checkHeader check header fields
+         */
+        public ValidatingReader(LineReader input, NeoDao neoDao, Boolean checkHeader)
+                throws ParseException, IOException {
+            super(input, SCHEMA, checkHeader);
             this.neoDao = neoDao;
         }
 
         public ValidatingReader(String fileName, String neoDBPath, Boolean checkHeader)
                 throws ParseException, IOException {
-            super(fileName, BIN_TASK, BIN_VERSION_SUPPORT, BIN_MANDATORY_FIELDS, checkHeader);
+            super(fileName, SCHEMA, checkHeader);
             this.neoDao = new NeoDao(new File(neoDBPath));
             this.localNeoDao = true;
         }
@@ -129,7 +350,7 @@ public class Binning extends Base {
         protected void readHeader() throws ParseException, IOException {
             super.readHeader();
             //set index of BINID columns (if provided)
-            taxIDIndex = columnDefinition.indexOf("TAXID");
+            this.taxIDIndex = columnDefinition.indexOf("TAXID");
             equalsPattern();
         }
 
@@ -137,21 +358,15 @@ public class Binning extends Base {
             // check for the following allowed IDs
             // "SEQUENCEID", "TAXID"
             // "SEQUENCEID", "BINID"
-            List<String> firstTwoCol = columnDefinition.subList(0, 2);
-            if (!firstTwoCol.equals(Arrays.asList(COLUMNDEF_BINID)) &&
-                    !firstTwoCol.equals(Arrays.asList(COLUMNDEF_TAXID))) {
+            int invalid = getSchema().findInvalidColumn(columnDefinition);
+            if (invalid == 0) {
                 getLogger().warn("Invalid Header on line: {}  \n", lineNumber);
                 throw new HeaderException("");
-            }
-
-            for (String col : columnDefinition) {
-                if (!col.equals(BINID) && !col.equals(TAXID) && !col.equals(SEQUENCEID)
-                        && !col.matches("_[A-Za-z]*_[A-Za-z]+[A-Za-z0-9]*")) {
-                    getLogger().warn("Invalid Header on line:{} . " +
-                            "Custom types MUST be prefixed by a case-insensitive " +
-                            "string with an underscore before and after the string  ", lineNumber);
-                    throw new HeaderException("");
-                }
+            } else if (invalid != -1) {
+                getLogger().warn("Invalid Header on line:{} . " +
+                        "Custom types MUST be prefixed by a case-insensitive " +
+                        "string with an underscore before and after the string  ", lineNumber);
+                throw new HeaderException("");
             }
         }
 
@@ -159,17 +374,21 @@ public class Binning extends Base {
         public String[] readRow() throws ParseException, IOException {
             String[] values = super.readRow();
             if (values != null) {
-                if (taxIDIndex != -1) {
+                if (this.taxIDIndex != -1) {
+                    long start = startTimer();
                     try {
-                        int taxId = toInt(values[taxIDIndex]);
-                        if (!getNeoDao().taxonExists(taxId)) {
+                        int taxId = toInt(values[this.taxIDIndex]);
+                        if (!taxonExists(getNeoDao(), taxId)) {
                             getLogger().warn("Invalid TAXID [{}] on line:{}", taxId, lineNumber);
+                            traceFailure("unknown TAXID " + taxId);
                             throw new FieldException("");
                         }
                     } catch (NumberFormatException ex) {
                         getLogger().warn("Invalid TAXID on line:{}", lineNumber);
+                        traceFailure("malformed TAXID");
                         throw new FieldException("");
                     }
+                    stopTimer(MetricsListener.Stage.VALIDATE, start);
                 }
             }
             return values;
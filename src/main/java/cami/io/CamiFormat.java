@@ -0,0 +1,322 @@
+package cami.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import mzd.taxonomy.neo.NeoDao;
+
+import cami.io.concat.ConcatProfilingIter;
+
+/**
+ * The format of a CAMI file as found by a quick look at its header.
+ * <p/>
+ * {@link #probe(String)} reads at most {@link #PROBE_SIZE} bytes from the head of a file and, for larger
+ * files, as much again from its tail. Unlike {@link Base.Reader} nothing is checked, so files of any task
+ * can be routed before deciding how to read them. The task is told by the column definition, which begins
+ * with {@link Binning#SEQUENCEID} for binnings and {@code TAXID} for profiles. A file is taken to hold
+ * several samples if a header line follows data rows within the bytes read. As the headers of samples larger
+ * than {@link #PROBE_SIZE} may lie beyond both windows this is a hint only, which decides no reader.
+ */
+public class CamiFormat {
+    public final static int PROBE_SIZE = 1 << 14;
+
+    /**
+     * The tasks of the CAMI challenge.
+     */
+    public enum Task {
+        BINNING, PROFILING, UNKNOWN
+    }
+
+    private final String fileName;
+    private final Map<String, String> headerInfo;
+    private final List<String> columnDefinition;
+    private final boolean multiSample;
+
+    private CamiFormat(String fileName, Map<String, String> headerInfo, List<String> columnDefinition,
+                       boolean multiSample) {
+        this.fileName = fileName;
+        this.headerInfo = headerInfo;
+        this.columnDefinition = columnDefinition;
+        this.multiSample = multiSample;
+    }
+
+    /**
+     * Read the header of a file.
+     *
+     * @param fileName the file to probe
+     * @return the format found, with an empty column definition if none was found in the head of the file
+     * @throws IOException error reading from file
+     */
+    public static CamiFormat probe(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<String> lines = readLines(channel, 0, size);
+            CamiFormat format = parseHead(fileName, lines, size <= PROBE_SIZE);
+            boolean multiSample = format.multiSample;
+            if (!format.columnDefinition.isEmpty() && !multiSample && size > PROBE_SIZE) {
+                long start = Math.max(PROBE_SIZE, size - PROBE_SIZE);
+                lines = readLines(channel, start, size);
+                // the first line of the tail is partial
+                for (int i = 1; i < lines.size() && !multiSample; i++) {
+                    multiSample = Base.isHeaderLine(lines.get(i)) && !Base.isColumnsDef(lines.get(i));
+                }
+                format = new CamiFormat(fileName, format.headerInfo, format.columnDefinition, multiSample);
+            }
+            return format;
+        }
+    }
+
+    /**
+     * Read the header at the head of a stream, which is then reset to where it was, so that the stream can be
+     * read again by {@link #openReader(LineReader, NeoDao, boolean)}. Only the head is looked at, so a stream
+     * is taken for several samples only if a second header begins within {@link #PROBE_SIZE} bytes.
+     *
+     * @param in   the stream, supporting {@link InputStream#mark(int)}
+     * @param name the name of the stream
+     * @return the format found
+     * @throws IOException error reading from the stream
+     */
+    public static CamiFormat probe(InputStream in, String name) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("the stream of " + name + " cannot be reset");
+        }
+        byte[] head = new byte[PROBE_SIZE];
+        in.mark(PROBE_SIZE);
+        int length = 0;
+        try {
+            int n;
+            while (length < head.length && (n = in.read(head, length, head.length - length)) != -1) {
+                length += n;
+            }
+        } finally {
+            in.reset();
+        }
+        return parseHead(name, splitLines(head, length), length < PROBE_SIZE);
+    }
+
+    /**
+     * @param complete true if the lines hold the whole input, else the last line may have been cut short
+     */
+    private static CamiFormat parseHead(String fileName, List<String> lines, boolean complete) {
+        Map<String, String> headerInfo = new HashMap<>();
+        List<String> columnDefinition = Collections.emptyList();
+        boolean multiSample = false;
+        int count = complete ? lines.size() : lines.size() - 1;
+        boolean data = false;
+        for (int i = 0; i < count && !multiSample; i++) {
+            String line = lines.get(i);
+            if (Base.isBlank(line) || Base.isComment(line)) {
+                continue;
+            }
+            if (data) {
+                multiSample = Base.isHeaderLine(line);
+            } else if (Base.isColumnsDef(line)) {
+                columnDefinition = Collections.unmodifiableList(
+                        Arrays.asList(line.substring(Base.COLUMN_DEF.length()).split(Base.DELIMITER)));
+                data = true;
+            } else if (Base.isHeaderLine(line)) {
+                int sep = line.indexOf(Base.HEADER_SEP);
+                if (sep > 1) {
+                    headerInfo.put(line.substring(1, sep).trim().toLowerCase(Locale.ROOT),
+                            line.substring(sep + 1).trim());
+                }
+            }
+        }
+        return new CamiFormat(fileName, Collections.unmodifiableMap(headerInfo), columnDefinition, multiSample);
+    }
+
+    private static List<String> readLines(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(PROBE_SIZE, size - position));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return splitLines(buffer.array(), buffer.position());
+    }
+
+    private static List<String> splitLines(byte[] bytes, int length) {
+        String text = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        int from = 0;
+        for (int to; (to = text.indexOf('\n', from)) != -1; from = to + 1) {
+            lines.add(stripReturn(text.substring(from, to)));
+        }
+        if (from < text.length()) {
+            lines.add(stripReturn(text.substring(from)));
+        }
+        return lines;
+    }
+
+    private static String stripReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Open a reader for the format found.
+     *
+     * @param checkHeader check mandatory header fields
+     * @return a {@link Binning.Reader} or {@link Profile.Reader}
+     * @throws Base.ParseException the task is unknown, the file holds several samples which only
+     *                             {@link #openReader(NeoDao, boolean)} can read, or the header is invalid
+     * @throws IOException         error reading from file
+     */
+    public Base.Reader openReader(boolean checkHeader) throws Base.ParseException, IOException {
+        switch (getTask()) {
+            case BINNING:
+                return new Binning.Reader(this.fileName, checkHeader);
+            case PROFILING:
+                if (this.multiSample) {
+                    throw new Base.HeaderException(String.format(
+                            "%s holds several samples, which are read with validation only", this.fileName));
+                }
+                return new Profile.Reader(this.fileName, checkHeader);
+            default:
+                throw new Base.HeaderException(String.format("cannot tell the task of %s", this.fileName));
+        }
+    }
+
+    /**
+     * Open a validating reader for the format found. Profiles are always read by a {@link ConcatProfilingIter},
+     * which reads single samples as well, since the samples of a concatenated profile may lie beyond the
+     * windows probed.
+     *
+     * @param neoDao      the taxonomy to validate against, not shut down by the reader
+     * @param checkHeader check mandatory header fields
+     * @return a {@link Binning.ValidatingReader} or a {@link ConcatProfilingIter}
+     * @throws Base.ParseException the task is unknown or the header is invalid
+     * @throws IOException         error reading from file
+     */
+    public Base.Reader openReader(NeoDao neoDao, boolean checkHeader) throws Base.ParseException, IOException {
+        switch (getTask()) {
+            case BINNING:
+                return new Binning.ValidatingReader(this.fileName, neoDao, checkHeader);
+            case PROFILING:
+                return new ConcatProfilingIter(this.fileName, neoDao, checkHeader);
+            default:
+                throw new Base.HeaderException(String.format("cannot tell the task of %s", this.fileName));
+        }
+    }
+
+    /**
+     * Open a validating reader on a stream probed by {@link #probe(InputStream, String)}. As the tail of a
+     * stream cannot be looked at, profiles are always read by a {@link ConcatProfilingIter}, which reads
+     * single samples as well.
+     *
+     * @param input       the lines of the stream probed
+     * @param neoDao      the taxonomy to validate against, not shut down by the reader
+     * @param checkHeader check mandatory header fields
+     * @return a {@link Binning.ValidatingReader} or a {@link ConcatProfilingIter}
+     * @throws Base.ParseException the task is unknown or the header is invalid
+     * @throws IOException         error reading from the stream
+     */
+    public Base.Reader openReader(LineReader input, NeoDao neoDao, boolean checkHeader)
+            throws Base.ParseException, IOException {
+        switch (getTask()) {
+            case BINNING:
+                return new Binning.ValidatingReader(input, neoDao, checkHeader);
+            case PROFILING:
+                return new ConcatProfilingIter(input, neoDao, checkHeader);
+            default:
+                throw new Base.HeaderException(String.format("cannot tell the task of %s", this.fileName));
+        }
+    }
+
+    /**
+     * Probe a file and open a reader for it.
+     *
+     * @param fileName    the file to open
+     * @param checkHeader check mandatory header fields
+     * @return the reader, see {@link #openReader(boolean)}
+     * @throws Base.ParseException no reader can be opened
+     * @throws IOException         error reading from file
+     */
+    public static Base.Reader open(String fileName, boolean checkHeader) throws Base.ParseException, IOException {
+        return probe(fileName).openReader(checkHeader);
+    }
+
+    /**
+     * @return the task told by the column definition, or else by a header field ending in "task"
+     */
+    public Task getTask() {
+        if (!this.columnDefinition.isEmpty()) {
+            String first = this.columnDefinition.get(0).trim().toUpperCase(Locale.ROOT);
+            if (first.equals(Binning.SEQUENCEID)) {
+                return Task.BINNING;
+            } else if (first.equals(Profile.TAXID_COL_DEF)) {
+                return Task.PROFILING;
+            }
+        }
+        for (Map.Entry<String, String> entry : this.headerInfo.entrySet()) {
+            if (entry.getKey().endsWith(Base.TASK_KEY)) {
+                String task = entry.getValue().toLowerCase(Locale.ROOT);
+                if (task.startsWith("binning")) {
+                    return Task.BINNING;
+                } else if (task.startsWith("profiling")) {
+                    return Task.PROFILING;
+                }
+            }
+        }
+        return Task.UNKNOWN;
+    }
+
+    /**
+     * @return the file probed or the name of the stream
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the header fields of the first sample, keys in lower case and values as written
+     */
+    public Map<String, String> getHeaderInfo() {
+        return headerInfo;
+    }
+
+    /**
+     * @return the column definition, empty if not found within {@link #PROBE_SIZE} bytes
+     */
+    public List<String> getColumnDefinition() {
+        return columnDefinition;
+    }
+
+    /**
+     * @return the version declared, null if none
+     */
+    public String getVersion() {
+        return this.headerInfo.get(Base.VERSION_KEY);
+    }
+
+    /**
+     * @return the sample id of the first sample, null if none
+     */
+    public String getSampleId() {
+        return this.headerInfo.get(Base.SAMPLEID_KEY);
+    }
+
+    /**
+     * @return true if a second sample was seen in the bytes probed; false does not rule out further samples
+     */
+    public boolean isMultiSample() {
+        return multiSample;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s version:%s sample:%s%s", this.fileName, getTask(), getVersion(), getSampleId(),
+                this.multiSample ? " (multi-sample)" : "");
+    }
+}
@@ -0,0 +1,149 @@
+package cami.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Position of a {@link Base.Reader} between two lines, from which a new reader on the same input can resume
+ * with {@link Base.Reader#resume(Checkpoint)} without parsing the rows before it again.
+ * <p/>
+ * Besides the offset of the next line, a checkpoint records where the header of the current sample begins,
+ * so that a concatenated profile resumes with the header of the sample it stopped in. A checksum of the first
+ * bytes of the input, up to {@link LineReader#HEAD_SIZE}, tells whether a checkpoint belongs to the input it is
+ * resumed on; as only the bytes before the checkpoint are summed, a file which is still being appended to keeps
+ * matching its checkpoints.
+ */
+public final class Checkpoint {
+    private final static String OFFSET = "offset";
+    private final static String LINE = "line";
+    private final static String ROWS = "rows";
+    private final static String HEADER_OFFSET = "headerOffset";
+    private final static String HEADER_LINE = "headerLine";
+    private final static String HEAD_LENGTH = "headLength";
+    private final static String HEAD_CHECKSUM = "headChecksum";
+
+    private final long offset;
+    private final int lineNumber;
+    private final long rows;
+    private final long headerOffset;
+    private final int headerLineNumber;
+    private final int headLength;
+    private final long headChecksum;
+
+    /**
+     * @param offset           the byte offset of the next line
+     * @param lineNumber       the number of the line last read
+     * @param rows             the number of data rows read
+     * @param headerOffset     the byte offset of the first line of the current header
+     * @param headerLineNumber the number of the first line of the current header
+     * @param headLength       the number of bytes at the start of the input summed
+     * @param headChecksum     the CRC-32 of those bytes
+     */
+    public Checkpoint(long offset, int lineNumber, long rows, long headerOffset, int headerLineNumber,
+                      int headLength, long headChecksum) {
+        this.offset = offset;
+        this.lineNumber = lineNumber;
+        this.rows = rows;
+        this.headerOffset = headerOffset;
+        this.headerLineNumber = headerLineNumber;
+        this.headLength = headLength;
+        this.headChecksum = headChecksum;
+    }
+
+    /**
+     * Read a checkpoint written by {@link #save(String)}.
+     *
+     * @param fileName the checkpoint file
+     * @return the checkpoint, null if the file does not exist
+     * @throws IOException error reading the file or malformed checkpoint
+     */
+    public static Checkpoint load(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        try {
+            return new Checkpoint(Long.parseLong(properties.getProperty(OFFSET)),
+                    Integer.parseInt(properties.getProperty(LINE)), Long.parseLong(properties.getProperty(ROWS)),
+                    Long.parseLong(properties.getProperty(HEADER_OFFSET)),
+                    Integer.parseInt(properties.getProperty(HEADER_LINE)),
+                    Integer.parseInt(properties.getProperty(HEAD_LENGTH)),
+                    Long.parseLong(properties.getProperty(HEAD_CHECKSUM)));
+        } catch (NumberFormatException e) {
+            throw new IOException("malformed checkpoint " + fileName, e);
+        }
+    }
+
+    /**
+     * Write the checkpoint, replacing any previous one in a single step so that a crash leaves
+     * either the old or the new checkpoint.
+     *
+     * @param fileName the checkpoint file
+     * @throws IOException error writing the file
+     */
+    public void save(String fileName) throws IOException {
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Properties properties = new Properties();
+        properties.setProperty(OFFSET, Long.toString(this.offset));
+        properties.setProperty(LINE, Integer.toString(this.lineNumber));
+        properties.setProperty(ROWS, Long.toString(this.rows));
+        properties.setProperty(HEADER_OFFSET, Long.toString(this.headerOffset));
+        properties.setProperty(HEADER_LINE, Integer.toString(this.headerLineNumber));
+        properties.setProperty(HEAD_LENGTH, Integer.toString(this.headLength));
+        properties.setProperty(HEAD_CHECKSUM, Long.toString(this.headChecksum));
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getHeaderOffset() {
+        return headerOffset;
+    }
+
+    public int getHeaderLineNumber() {
+        return headerLineNumber;
+    }
+
+    public int getHeadLength() {
+        return headLength;
+    }
+
+    public long getHeadChecksum() {
+        return headChecksum;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("offset:%d line:%d rows:%d header:%d/%d head:%d/%08x", this.offset, this.lineNumber,
+                this.rows, this.headerOffset, this.headerLineNumber, this.headLength, this.headChecksum);
+    }
+}
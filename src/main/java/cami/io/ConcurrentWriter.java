@@ -0,0 +1,362 @@
+package cami.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.Base.FieldException;
+import cami.io.Base.ParseException;
+
+/**
+ * Multi-producer front end for a {@link Base.Writer}.
+ * <p/>
+ * Producer threads append rows to a private batch. Full batches are handed to a bounded
+ * queue which is drained by a single flushing thread, the only thread to touch the
+ * underlying writer. A full queue blocks producers, so memory use is bounded by
+ * {@code (queueCapacity + producers) * batchSize} rows.
+ * <p/>
+ * In ordered mode every row carries a sequence number (0, 1, 2, ...) and rows are written
+ * in sequence order regardless of which thread produced them. Producers running more than
+ * {@code window} rows ahead of the oldest unwritten row are blocked.
+ * <p/>
+ * The header of the wrapped writer must be written before rows are submitted. In ordered mode a
+ * producer which has no further rows must call {@link #flush()}, otherwise rows held in its batch
+ * can stall the others. Producers must have finished before {@link #close()} is called, which
+ * drains all remaining batches and closes the wrapped writer.
+ */
+public class ConcurrentWriter {
+    public final static int DEFAULT_BATCH_SIZE = 1024;
+    public final static int DEFAULT_QUEUE_CAPACITY = 64;
+    public final static int DEFAULT_WINDOW = 1 << 16;
+
+    // end of stream marker for the flushing thread
+    private final static Batch POISON = new Batch(0);
+
+    private final Base.Writer writer;
+    private final int batchSize;
+    private final BlockingQueue<Batch> queue;
+    private final Queue<Producer> producers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Producer> local = new ThreadLocal<>();
+    private final Thread flusher;
+    private volatile Throwable failure = null;
+    private volatile boolean closed = false;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    // ordered mode state, ring is only accessed by the flushing thread
+    private final boolean ordered;
+    private final String[][] ring;
+    private final ReentrantLock windowLock = new ReentrantLock();
+    private final Condition windowMoved = windowLock.newCondition();
+    private volatile long nextSequence = 0;
+
+    /**
+     * Unordered concurrent writer with default batch size and queue capacity.
+     *
+     * @param writer the writer to drain into, its header must already be written
+     */
+    public ConcurrentWriter(Base.Writer writer) {
+        this(writer, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY, false, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param writer        the writer to drain into, its header must already be written
+     * @param batchSize     rows collected per thread before handing them to the flushing thread
+     * @param queueCapacity number of batches which may wait for the flushing thread
+     * @param ordered       write rows in the order of their sequence numbers
+     * @param window        maximum distance of a sequence number from the oldest unwritten row (ordered mode)
+     */
+    public ConcurrentWriter(Base.Writer writer, int batchSize, int queueCapacity, boolean ordered, int window) {
+        if (batchSize < 1 || queueCapacity < 1 || window < 1) {
+            throw new IllegalArgumentException("batch size, queue capacity and window must be positive");
+        }
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.ordered = ordered;
+        this.ring = ordered ? new String[window][] : null;
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "cami-writer-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Submit a row in unordered mode. Rows are not checked until they are written, errors are
+     * reported on a subsequent call or on {@link #close()}.
+     *
+     * @param row the row to write
+     * @throws ParseException the flushing thread failed on an earlier row
+     * @throws IOException    the flushing thread failed or the writer is closed
+     */
+    public void writeRow(String[] row) throws ParseException, IOException {
+        if (this.ordered) {
+            throw new IllegalStateException("ordered writer requires a sequence number");
+        }
+        add(producer(), -1, row);
+    }
+
+    /**
+     * Submit a row in ordered mode. Each sequence number must be used exactly once.
+     *
+     * @param sequence position of the row in the output, starting at 0
+     * @param row      the row to write
+     * @throws ParseException the flushing thread failed on an earlier row
+     * @throws IOException    the flushing thread failed or the writer is closed
+     */
+    public void writeRow(long sequence, String[] row) throws ParseException, IOException {
+        if (!this.ordered) {
+            throw new IllegalStateException("unordered writer does not accept sequence numbers");
+        }
+        if (sequence < this.nextSequence) {
+            throw new FieldException(String.format("sequence %d has already been written", sequence));
+        }
+        Producer producer = producer();
+        if (sequence - this.nextSequence >= this.ring.length) {
+            // our own pending rows may be the ones the flusher is waiting on
+            submit(producer);
+            awaitWindow(sequence);
+        }
+        add(producer, sequence, row);
+    }
+
+    /**
+     * Hand the calling thread's pending rows to the flushing thread.
+     *
+     * @throws ParseException the flushing thread failed on an earlier row
+     * @throws IOException    the flushing thread failed or the writer is closed
+     */
+    public void flush() throws ParseException, IOException {
+        checkOpen();
+        Producer producer = this.local.get();
+        if (producer != null) {
+            submit(producer);
+        }
+    }
+
+    /**
+     * Drain all pending rows, stop the flushing thread and close the wrapped writer.
+     * All producers must have finished submitting rows.
+     *
+     * @throws ParseException a row could not be written or sequence numbers are missing
+     * @throws IOException    error writing to file
+     */
+    public void close() throws ParseException, IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            if (this.failure == null) {
+                for (Producer producer : this.producers) {
+                    submit(producer);
+                }
+            }
+            this.closed = true;
+            if (this.flusher.isAlive()) {
+                put(POISON);
+                this.flusher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing writer");
+        } finally {
+            this.closed = true;
+            this.writer.close();
+        }
+        checkFailure();
+        if (this.ordered) {
+            for (String[] row : this.ring) {
+                if (row != null) {
+                    throw new FieldException(String.format(
+                            "rows are missing at sequence %d, later rows were not written", this.nextSequence));
+                }
+            }
+        }
+    }
+
+    private Producer producer() throws IOException {
+        Producer producer = this.local.get();
+        if (producer == null) {
+            producer = new Producer(this.batchSize);
+            this.local.set(producer);
+            this.producers.add(producer);
+        }
+        return producer;
+    }
+
+    private void add(Producer producer, long sequence, String[] row) throws ParseException, IOException {
+        checkOpen();
+        Batch batch = producer.batch;
+        batch.rows[batch.size] = row;
+        batch.sequences[batch.size] = sequence;
+        if (++batch.size == this.batchSize) {
+            submit(producer);
+        }
+    }
+
+    private void submit(Producer producer) throws IOException {
+        if (producer.batch.size == 0) {
+            return;
+        }
+        Batch full = producer.batch;
+        producer.batch = new Batch(this.batchSize);
+        try {
+            put(full);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while submitting rows");
+        }
+    }
+
+    private void put(Batch batch) throws IOException, InterruptedException {
+        // poll so that a failed flusher cannot leave producers blocked on a full queue
+        while (!this.queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (this.failure != null || !this.flusher.isAlive()) {
+                throw new IOException("flushing thread is no longer running", this.failure);
+            }
+        }
+    }
+
+    private void awaitWindow(long sequence) throws IOException {
+        this.windowLock.lock();
+        try {
+            while (sequence - this.nextSequence >= this.ring.length && this.failure == null) {
+                this.windowMoved.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for earlier rows");
+        } finally {
+            this.windowLock.unlock();
+        }
+    }
+
+    private void checkFailure() throws ParseException, IOException {
+        Throwable t = this.failure;
+        if (t instanceof ParseException) {
+            throw (ParseException) t;
+        } else if (t != null) {
+            throw new IOException("flushing thread failed", t);
+        }
+    }
+
+    private void checkOpen() throws ParseException, IOException {
+        checkFailure();
+        if (this.closed) {
+            throw new IOException("writer has been closed");
+        }
+    }
+
+    /**
+     * Body of the flushing thread.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                Batch batch = this.queue.take();
+                if (batch == POISON) {
+                    break;
+                }
+                if (this.ordered) {
+                    drainOrdered(batch);
+                } else {
+                    for (int i = 0; i < batch.size; i++) {
+                        this.writer.writeRow(batch.rows[i]);
+                    }
+                }
+            }
+            this.writer.flush();
+        } catch (Throwable t) {
+            this.logger.warn("concurrent writer failed: {}", t.toString());
+            this.failure = t;
+        } finally {
+            signalWindow();
+        }
+    }
+
+    private void drainOrdered(Batch batch) throws ParseException, IOException {
+        for (int i = 0; i < batch.size; i++) {
+            long sequence = batch.sequences[i];
+            // producers check before adding, but a duplicate from another thread may be written meanwhile
+            if (sequence < this.nextSequence || sequence - this.nextSequence >= this.ring.length) {
+                throw new FieldException(String.format("sequence %d is outside the window [%d, %d)", sequence,
+                        this.nextSequence, this.nextSequence + this.ring.length));
+            }
+            int slot = (int) (sequence % this.ring.length);
+            if (this.ring[slot] != null) {
+                throw new FieldException(String.format("sequence %d was written twice", sequence));
+            }
+            this.ring[slot] = batch.rows[i];
+        }
+        long next = this.nextSequence;
+        int slot = (int) (next % this.ring.length);
+        boolean moved = false;
+        while (this.ring[slot] != null) {
+            this.writer.writeRow(this.ring[slot]);
+            this.ring[slot] = null;
+            slot = (int) (++next % this.ring.length);
+            moved = true;
+        }
+        if (moved) {
+            this.nextSequence = next;
+            signalWindow();
+        }
+    }
+
+    private void signalWindow() {
+        if (this.ordered) {
+            this.windowLock.lock();
+            try {
+                this.windowMoved.signalAll();
+            } finally {
+                this.windowLock.unlock();
+            }
+        }
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Rows collected by one producer thread.
+     */
+    private static class Batch {
+        private final String[][] rows;
+        private final long[] sequences;
+        private int size = 0;
+
+        private Batch(int capacity) {
+            this.rows = new String[capacity][];
+            this.sequences = new long[capacity];
+        }
+    }
+
+    /**
+     * Holder of the current batch of a producer thread, registered so that {@link #close()}
+     * can drain it.
+     */
+    private static class Producer {
+        private Batch batch;
+
+        private Producer(int batchSize) {
+            this.batch = new Batch(batchSize);
+        }
+    }
+}
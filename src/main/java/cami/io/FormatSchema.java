@@ -0,0 +1,182 @@
+package cami.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Declarative description of a CAMI file format, checked by {@link Base.Reader}.
+ * <p/>
+ * A schema names the task, the supported versions, the mandatory header fields and the allowed columns.
+ * The columns of a file must begin with one of the leading layouts, any further column must be one of the
+ * extra columns or a custom column. Custom header fields and columns follow {@link Base#CUSTOM_FIELD},
+ * which is matched by a hand-written scanner rather than a regular expression.
+ * <p/>
+ * Schemas are immutable and are built once per format, see {@link Binning#SCHEMA} and
+ * {@link Profile#SCHEMA}, so that opening a reader compiles nothing.
+ */
+public final class FormatSchema {
+    private final String task;
+    private final List<String> versions;
+    private final Set<String> mandatoryFields;
+    private final Set<String> knownFields;
+    private final List<List<String>> layouts;
+    private final Set<String> extraColumns;
+
+    /**
+     * @param task            the task name
+     * @param versions        the supported versions, a declared version must begin with one of them
+     * @param mandatoryFields the header fields which must be present, case-insensitive
+     * @param layouts         the allowed leading columns
+     * @param extraColumns    columns allowed after the leading columns besides custom columns
+     */
+    public FormatSchema(String task, String[] versions, String[] mandatoryFields, String[][] layouts,
+                        String[] extraColumns) {
+        this.task = task;
+        this.versions = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(versions)));
+        Set<String> mandatory = new HashSet<>();
+        for (String field : mandatoryFields) {
+            mandatory.add(field.toLowerCase(Locale.ROOT));
+        }
+        this.mandatoryFields = Collections.unmodifiableSet(mandatory);
+        Set<String> known = new HashSet<>(mandatory);
+        known.add(Base.VERSION_KEY);
+        known.add(Base.TAXONOMYID_KEY);
+        known.add(Base.RANKS_KEY);
+        this.knownFields = Collections.unmodifiableSet(known);
+        List<List<String>> leading = new ArrayList<>();
+        for (String[] layout : layouts) {
+            leading.add(Collections.unmodifiableList(new ArrayList<>(Arrays.asList(layout))));
+        }
+        // the longest layout matching a file wins
+        Collections.sort(leading, new Comparator<List<String>>() {
+            @Override
+            public int compare(List<String> a, List<String> b) {
+                return Integer.compare(b.size(), a.size());
+            }
+        });
+        this.layouts = Collections.unmodifiableList(leading);
+        this.extraColumns = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(extraColumns)));
+    }
+
+    /**
+     * A schema which checks header fields only, as used by the generic {@link Base.Reader} constructor.
+     *
+     * @param task            the task name
+     * @param versions        the supported versions
+     * @param mandatoryFields the header fields which must be present
+     */
+    public FormatSchema(String task, String[] versions, String[] mandatoryFields) {
+        this(task, versions, mandatoryFields, new String[0][], new String[0]);
+    }
+
+    /**
+     * Test whether a name follows {@link Base#CUSTOM_FIELD}: an underscore, optional letters, an underscore,
+     * a letter and then letters or digits.
+     *
+     * @param name the header field or column name
+     * @return true if a custom name
+     */
+    public static boolean isCustomField(String name) {
+        int length = name.length();
+        if (length < 3 || name.charAt(0) != '_') {
+            return false;
+        }
+        int i = 1;
+        while (i < length && isLetter(name.charAt(i))) {
+            i++;
+        }
+        if (i + 1 >= length || name.charAt(i) != '_' || !isLetter(name.charAt(i + 1))) {
+            return false;
+        }
+        for (i += 2; i < length; i++) {
+            char c = name.charAt(i);
+            if (!isLetter(c) && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /**
+     * @param version the declared version
+     * @return true if the version begins with a supported version
+     */
+    public boolean supportsVersion(String version) {
+        for (String supported : this.versions) {
+            if (version.startsWith(supported)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param key the header field in lower case
+     * @return true if the field is defined by the format or a custom field
+     */
+    public boolean isKnownField(String key) {
+        return this.knownFields.contains(key) || isCustomField(key);
+    }
+
+    /**
+     * @param columns the column definition of a file
+     * @return the length of the longest leading layout the columns begin with, 0 if none
+     */
+    public int matchLayout(List<String> columns) {
+        for (List<String> layout : this.layouts) {
+            if (columns.size() >= layout.size() && columns.subList(0, layout.size()).equals(layout)) {
+                return layout.size();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Check a column definition against the leading layouts, extra columns and custom column rule.
+     *
+     * @param columns the column definition of a file
+     * @return the index of the first offending column, 0 if no layout matches, -1 if valid
+     */
+    public int findInvalidColumn(List<String> columns) {
+        int leading = matchLayout(columns);
+        if (leading == 0) {
+            return 0;
+        }
+        for (int i = leading; i < columns.size(); i++) {
+            String column = columns.get(i);
+            if (!this.extraColumns.contains(column) && !isCustomField(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    public List<String> getVersions() {
+        return versions;
+    }
+
+    /**
+     * @return the mandatory header fields in lower case
+     */
+    public Set<String> getMandatoryFields() {
+        return mandatoryFields;
+    }
+
+    public List<List<String>> getLayouts() {
+        return layouts;
+    }
+}
@@ -0,0 +1,434 @@
+package cami.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Line source of {@link Base.Reader}, reading bytes from a file, stream, channel or buffer.
+ * <p/>
+ * Lines are split on the raw bytes, as {@link java.io.BufferedReader#readLine()} does on chars: a line
+ * ends at a line feed, a carriage return or both. Lines made of ASCII only are widened directly into
+ * chars without a {@link java.nio.charset.CharsetDecoder}; other lines are decoded as UTF-8. A heap
+ * {@link ByteBuffer} is read in place without copying.
+ * <p/>
+ * The number of bytes consumed by the lines returned so far is available from {@link #getPosition()}.
+ * <p/>
+ * A reader opened by {@link #follow(String, long)} tails a file which is still being written: at the end of
+ * the file it waits for more, polling with an exponential backoff, and never returns a line without its
+ * terminator. It ends once the file has not grown for the idle timeout, or when {@link #stop()} is called.
+ * <p/>
+ * Lines longer than {@link #setMaxLineLength(int)} raise a {@link LineTooLongException}, the buffer never
+ * grows much beyond twice that length.
+ * <p/>
+ * The first {@link #HEAD_SIZE} bytes are kept, so that {@link #getHeadChecksum(int)} tells whether a
+ * {@link Checkpoint} was taken on the same input.
+ */
+public class LineReader implements Closeable {
+    public final static int BUFFER_SIZE = 1 << 16;
+    private final static byte LF = '\n';
+    private final static byte CR = '\r';
+    public final static long MIN_POLL_MILLIS = 10;
+    public final static long MAX_POLL_MILLIS = 1000;
+    public final static int HEAD_SIZE = 1 << 12;
+
+    private final String name;
+    private final long size;
+    // null when all bytes are held by the buffer
+    private final InputStream in;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    private long position = 0;
+    private boolean skipLF = false;
+    private char[] chars = new char[256];
+    private int maxLineLength = Integer.MAX_VALUE;
+    private boolean follow = false;
+    private long idleMillis;
+    private volatile boolean stopped = false;
+    private final byte[] head;
+    private int headLength;
+
+    LineReader(InputStream in, String name, long size, int bufferSize) {
+        this.in = in;
+        this.name = name;
+        this.size = size;
+        this.buffer = new byte[bufferSize];
+        this.pos = 0;
+        this.limit = 0;
+        this.head = new byte[HEAD_SIZE];
+        this.headLength = 0;
+    }
+
+    private LineReader(byte[] array, int offset, int length, String name) {
+        this.in = null;
+        this.name = name;
+        this.size = length;
+        this.buffer = array;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.head = Arrays.copyOfRange(array, offset, offset + Math.min(length, HEAD_SIZE));
+        this.headLength = this.head.length;
+    }
+
+    /**
+     * @param fileName the file to read
+     * @return a line reader named by the file
+     * @throws IOException error opening the file
+     */
+    public static LineReader open(String fileName) throws IOException {
+        File file = new File(fileName);
+        return new LineReader(new FileInputStream(file), fileName, file.length(), BUFFER_SIZE);
+    }
+
+    /**
+     * Tail a file which is still being written.
+     *
+     * @param fileName   the file to follow
+     * @param idleMillis the time without growth after which the file is taken to be complete
+     * @return a line reader which waits for complete lines
+     * @throws IOException error opening the file
+     */
+    public static LineReader follow(String fileName, long idleMillis) throws IOException {
+        LineReader reader = new LineReader(new FileInputStream(fileName), fileName, -1, BUFFER_SIZE);
+        reader.follow = true;
+        reader.idleMillis = idleMillis;
+        return reader;
+    }
+
+    /**
+     * @param in   the stream to read, for instance standard input or a decompressing stream
+     * @param name the name reported in metrics and traces
+     * @return a line reader of unknown size
+     */
+    public static LineReader of(InputStream in, String name) {
+        return new LineReader(in, name, -1, BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel the channel to read from its current position
+     * @param name    the name reported in metrics and traces
+     * @return a line reader, of known size if the channel is seekable
+     * @throws IOException error querying the size of the channel
+     */
+    public static LineReader of(ReadableByteChannel channel, String name) throws IOException {
+        long size = -1;
+        if (channel instanceof SeekableByteChannel) {
+            SeekableByteChannel seekable = (SeekableByteChannel) channel;
+            size = seekable.size() - seekable.position();
+        }
+        return new LineReader(Channels.newInputStream(channel), name, size, BUFFER_SIZE);
+    }
+
+    /**
+     * Read the remaining bytes of a buffer. The position of the buffer is left unchanged and its content
+     * must not change while being read.
+     *
+     * @param buffer the bytes to read
+     * @param name   the name reported in metrics and traces
+     * @return a line reader
+     */
+    public static LineReader of(ByteBuffer buffer, String name) {
+        if (buffer.hasArray()) {
+            return new LineReader(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+                    name);
+        }
+        return new LineReader(new ByteBufferInputStream(buffer.duplicate()), name, buffer.remaining(),
+                BUFFER_SIZE);
+    }
+
+    /**
+     * Read the next line.
+     *
+     * @return the line without its terminator or null at the end of input
+     * @throws IOException error reading input
+     */
+    public String readLine() throws IOException {
+        if (!this.follow) {
+            return nextLine();
+        }
+        long idleSince = System.currentTimeMillis();
+        long poll = MIN_POLL_MILLIS;
+        while (true) {
+            String line = nextLine();
+            if (line != null || this.stopped) {
+                return line;
+            }
+            long now = System.currentTimeMillis();
+            if (now - idleSince >= this.idleMillis) {
+                return null;
+            }
+            try {
+                Thread.sleep(Math.min(poll, idleSince + this.idleMillis - now));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while following " + this.name);
+            }
+            poll = Math.min(poll * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * @return the next line, or null if no complete line is available when following
+     */
+    private String nextLine() throws IOException {
+        if (this.skipLF) {
+            if (this.pos == this.limit) {
+                fill();
+            }
+            if (this.pos < this.limit) {
+                if (this.buffer[this.pos] == LF) {
+                    this.pos++;
+                    this.position++;
+                }
+                this.skipLF = false;
+            } else if (this.follow) {
+                // the line feed of a CRLF may be yet to come
+                return null;
+            }
+        }
+        int scan = this.pos;
+        while (true) {
+            // a terminator must come within the longest line allowed
+            int end = (int) Math.min(this.limit, (long) this.pos + this.maxLineLength + 1);
+            for (int i = scan; i < end; i++) {
+                byte b = this.buffer[i];
+                if (b == LF || b == CR) {
+                    String line = decode(this.pos, i);
+                    this.position += i + 1 - this.pos;
+                    this.pos = i + 1;
+                    this.skipLF = b == CR;
+                    return line;
+                }
+            }
+            if (end - this.pos > this.maxLineLength) {
+                throw new LineTooLongException(String.format("line at byte %d of %s is longer than %d bytes",
+                        this.position, this.name, this.maxLineLength));
+            }
+            int searched = this.limit - this.pos;
+            if (fill() < 0) {
+                if (this.pos == this.limit || this.follow) {
+                    return null;
+                }
+                // the last line has no terminator
+                String line = decode(this.pos, this.limit);
+                this.position += this.limit - this.pos;
+                this.pos = this.limit;
+                return line;
+            }
+            scan = this.pos + searched;
+        }
+    }
+
+    /**
+     * Read more input behind the unread bytes, moving them to the front of the buffer and growing it if
+     * needed.
+     *
+     * @return the number of bytes read, -1 at the end of input
+     */
+    private int fill() throws IOException {
+        if (this.in == null) {
+            return -1;
+        }
+        if (this.pos > 0) {
+            System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+            this.limit -= this.pos;
+            this.pos = 0;
+        }
+        if (this.limit == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        }
+        int n;
+        do {
+            n = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        } while (n == 0);
+        if (n > 0) {
+            if (this.headLength < HEAD_SIZE) {
+                int copied = Math.min(n, HEAD_SIZE - this.headLength);
+                System.arraycopy(this.buffer, this.limit, this.head, this.headLength, copied);
+                this.headLength += copied;
+            }
+            this.limit += n;
+        }
+        return n;
+    }
+
+    /**
+     * Read ahead, without consuming any line, until the first bytes of the input have been read.
+     *
+     * @param length the number of bytes, at most {@link #HEAD_SIZE}
+     * @throws IOException error reading input
+     */
+    void readHead(int length) throws IOException {
+        while (this.headLength < Math.min(length, HEAD_SIZE) && fill() > 0) {
+            // read ahead
+        }
+    }
+
+    /**
+     * @param length the number of bytes from the start of the input, at most {@link #HEAD_SIZE}
+     * @return the CRC-32 of the bytes, -1 if fewer have been read
+     */
+    public long getHeadChecksum(int length) {
+        if (length < 0 || length > HEAD_SIZE) {
+            throw new IllegalArgumentException("head length must lie within 0 and " + HEAD_SIZE);
+        }
+        if (length > this.headLength) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(this.head, 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Skip bytes without decoding them, as when resuming from a {@link Checkpoint}.
+     *
+     * @param bytes the number of bytes to skip, ending at a line boundary
+     * @throws IOException the input ended before
+     */
+    public void skip(long bytes) throws IOException {
+        if (bytes <= 0) {
+            return;
+        }
+        long remaining = bytes;
+        int buffered = (int) Math.min(remaining, this.limit - this.pos);
+        this.pos += buffered;
+        remaining -= buffered;
+        // leave the last byte to be read, it tells whether a line feed may follow, and keep the head
+        while (remaining > 1 && this.in != null && this.headLength == HEAD_SIZE) {
+            long n = this.in.skip(remaining - 1);
+            if (n <= 0) {
+                break;
+            }
+            remaining -= n;
+        }
+        while (remaining > 0) {
+            if (this.pos == this.limit && fill() < 0) {
+                throw new EOFException(String.format("%s ends before byte %d", this.name, this.position + bytes));
+            }
+            int n = (int) Math.min(remaining, this.limit - this.pos);
+            this.pos += n;
+            remaining -= n;
+        }
+        this.skipLF = this.buffer[this.pos - 1] == CR;
+        this.position += bytes;
+    }
+
+    private String decode(int from, int to) {
+        int length = to - from;
+        if (this.chars.length < length) {
+            this.chars = new char[Math.max(length, this.chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = this.buffer[from + i];
+            if (b < 0) {
+                return new String(this.buffer, from, length, StandardCharsets.UTF_8);
+            }
+            this.chars[i] = (char) b;
+        }
+        return new String(this.chars, 0, length);
+    }
+
+    /**
+     * @return the name of the input, the file name for files
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the number of bytes of input, -1 if unknown
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * @param maxLineLength the longest line in bytes, terminator excluded, unlimited by default
+     */
+    public void setMaxLineLength(int maxLineLength) {
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * End following: the current or next {@link #readLine()} returns null once no complete line is left.
+     * May be called from any thread.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * @return true if following and {@link #stop()} has been called
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * @return the number of bytes consumed by the lines returned so far, terminators included
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+        }
+    }
+
+    /**
+     * A line is longer than allowed by {@link #setMaxLineLength(int)}.
+     */
+    public static class LineTooLongException extends IOException {
+        private static final long serialVersionUID = 4163405839563263812L;
+
+        public LineTooLongException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * Stream over a direct or read-only buffer, which has no accessible array.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package cami.io;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * In-memory taxonomy reduced to the ranks of {@link Profile#PRO_RANKS}.
+ * <p/>
+ * Parents and rank ordinals are held in primitive arrays indexed by taxid, so resolving the CAMI lineage of
+ * a taxon is a walk over a few array entries with no database round trips. Scientific names are kept for
+ * taxa at CAMI ranks only. A table can be loaded from the NCBI taxonomy dump ({@code nodes.dmp} and
+ * {@code names.dmp}) or populated with {@link #add(int, int, String, String)}.
+ */
+public class LineageTable {
+    public final static int NO_RANK = -1;
+    private final static String DMP_SEPARATOR = "\t|\t";
+    private final static String LINE_TERMINATOR = "\t|";
+
+    private int[] parents = new int[1 << 16];
+    private byte[] ranks = new byte[1 << 16];
+    private String[] names = new String[1 << 16];
+    private int maxTaxId = 0;
+
+    public LineageTable() {
+        Arrays.fill(this.parents, -1);
+        Arrays.fill(this.ranks, (byte) NO_RANK);
+    }
+
+    /**
+     * Load the NCBI taxonomy dump.
+     *
+     * @param nodesFile the {@code nodes.dmp} file
+     * @param namesFile the {@code names.dmp} file, or null to skip names
+     * @return the lineage table
+     * @throws IOException error reading or malformed dump
+     */
+    public static LineageTable fromTaxdump(String nodesFile, String namesFile) throws IOException {
+        LineageTable table = new LineageTable();
+        try (BufferedReader reader = open(nodesFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tok = split(line, 3);
+                if (tok != null) {
+                    try {
+                        table.add(Integer.parseInt(tok[0]), Integer.parseInt(tok[1]), tok[2], null);
+                    } catch (NumberFormatException e) {
+                        throw new IOException(String.format("malformed line in %s [%s]", nodesFile, line));
+                    }
+                }
+            }
+        }
+        if (namesFile != null) {
+            try (BufferedReader reader = open(namesFile)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] tok = split(line, 4);
+                    if (tok != null && "scientific name".equals(tok[3])) {
+                        try {
+                            int taxId = Integer.parseInt(tok[0]);
+                            if (table.getRank(taxId) != NO_RANK) {
+                                table.names[taxId] = tok[1];
+                            }
+                        } catch (NumberFormatException e) {
+                            throw new IOException(String.format("malformed line in %s [%s]", namesFile, line));
+                        }
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    private static BufferedReader open(String fileName) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8),
+                1 << 16);
+    }
+
+    /**
+     * Split the first {@code fields} fields of a dump line.
+     */
+    private static String[] split(String line, int fields) {
+        int length = line.endsWith(LINE_TERMINATOR) ? line.length() - LINE_TERMINATOR.length() : line.length();
+        String[] tok = new String[fields];
+        int start = 0;
+        for (int i = 0; i < fields; i++) {
+            int end = line.indexOf(DMP_SEPARATOR, start);
+            if (end == -1 || end > length) {
+                if (i != fields - 1 || start > length) {
+                    return null;
+                }
+                end = length;
+            }
+            tok[i] = line.substring(start, end);
+            start = end + DMP_SEPARATOR.length();
+        }
+        return tok;
+    }
+
+    private static byte rankOf(String rank) {
+        for (int i = 0; i < Profile.RANK_NAMES.length; i++) {
+            if (Profile.RANK_NAMES[i].equals(rank)) {
+                return (byte) i;
+            }
+        }
+        return NO_RANK;
+    }
+
+    /**
+     * Add or replace a taxon.
+     *
+     * @param taxId  the taxid
+     * @param parent the parent taxid, the root is its own parent
+     * @param rank   the rank name, ranks outside {@link Profile#PRO_RANKS} are kept as {@link #NO_RANK}
+     * @param name   the scientific name or null
+     */
+    public void add(int taxId, int parent, String rank, String name) {
+        if (taxId < 0) {
+            throw new IllegalArgumentException("negative taxid " + taxId);
+        }
+        if (taxId >= this.parents.length) {
+            int capacity = Math.max(taxId + 1, this.parents.length << 1);
+            int from = this.parents.length;
+            this.parents = Arrays.copyOf(this.parents, capacity);
+            this.ranks = Arrays.copyOf(this.ranks, capacity);
+            this.names = Arrays.copyOf(this.names, capacity);
+            Arrays.fill(this.parents, from, capacity, -1);
+            Arrays.fill(this.ranks, from, capacity, (byte) NO_RANK);
+        }
+        this.parents[taxId] = parent;
+        this.ranks[taxId] = rankOf(rank);
+        this.names[taxId] = name;
+        this.maxTaxId = Math.max(this.maxTaxId, taxId);
+    }
+
+    public boolean contains(int taxId) {
+        return taxId >= 0 && taxId <= this.maxTaxId && this.parents[taxId] != -1;
+    }
+
+    /**
+     * @return the rank ordinal of a taxon in {@link Profile#RANK_NAMES} or {@link #NO_RANK}
+     */
+    public int getRank(int taxId) {
+        return contains(taxId) ? this.ranks[taxId] : NO_RANK;
+    }
+
+    /**
+     * @return the scientific name of a taxon at a CAMI rank, or null
+     */
+    public String getName(int taxId) {
+        return contains(taxId) ? this.names[taxId] : null;
+    }
+
+    /**
+     * Resolve the CAMI lineage of a taxon.
+     *
+     * @param taxId   the taxon
+     * @param lineage receives the taxid at each rank ordinal, 0 for ranks without a taxon;
+     *                must hold {@link Profile#RANK_NAMES} entries
+     * @return the lowest rank ordinal of the lineage, or {@link #NO_RANK} if the taxon is unknown
+     * or has no ancestor at a CAMI rank
+     */
+    public int getLineage(int taxId, int[] lineage) {
+        Arrays.fill(lineage, 0, Profile.RANK_NAMES.length, 0);
+        if (!contains(taxId)) {
+            return NO_RANK;
+        }
+        int lowest = NO_RANK;
+        // bounded walk guards against cycles in malformed dumps
+        for (int depth = 0; depth < 256 && contains(taxId); depth++) {
+            int rank = this.ranks[taxId];
+            if (rank != NO_RANK && lineage[rank] == 0) {
+                lineage[rank] = taxId;
+                lowest = Math.max(lowest, rank);
+            }
+            int parent = this.parents[taxId];
+            if (parent == taxId) {
+                break;
+            }
+            taxId = parent;
+        }
+        return lowest;
+    }
+}
@@ -1,5 +1,6 @@
 package cami.io;
 
+import cami.io.metrics.MetricsListener;
 import mzd.taxonomy.neo.NeoDao;
 
 import java.io.File;
@@ -16,17 +17,31 @@ public class Profile extends Base {
     private final static String PRO_TASK = "profiling";
     private final static String PRO_VERSION_SUPPORT[] = {"0.9"};
     public final static String RANKS_KEY = "ranks";
-    private final static String RANKS_COL_DEF = "RANK";
-    private final static String TAXID_COL_DEF = "TAXID";
-    private final static String TAXPATH_COL_DEF = "TAXPATH";
+    public final static String RANKS_COL_DEF = "RANK";
+    public final static String TAXID_COL_DEF = "TAXID";
+    public final static String TAXPATH_COL_DEF = "TAXPATH";
     public final static String TAXPATH_SN_COL_DEF = "TAXPATHSN";
-    private final static String PERCENTAGE_COL_DEF = "PERCENTAGE";
+    public final static String PERCENTAGE_COL_DEF = "PERCENTAGE";
     private final static String PRO_COLUMN_DEFINITION[] = {TAXID_COL_DEF, RANKS_COL_DEF, TAXPATH_COL_DEF,
             PERCENTAGE_COL_DEF};
     private final static String PRO_COLUMN_DEFINITION_TAXPATH_SN[] = {TAXID_COL_DEF, RANKS_COL_DEF, TAXPATH_COL_DEF,
             TAXPATH_SN_COL_DEF, PERCENTAGE_COL_DEF};
     private final static String PRO_MANDATORY_FIELDS[] = {SAMPLEID_KEY, VERSION_KEY, RANKS_KEY,};
     public final static String PRO_RANKS = "superkingdom|phylum|class|order|family|genus|species|strain";
+    /**
+     * The ranks of {@link #PRO_RANKS} in order. The index of a rank is its ordinal.
+     */
+    public final static String[] RANK_NAMES = PRO_RANKS.split("\\|");
+    public final static String[] COLUMNDEF = PRO_COLUMN_DEFINITION.clone();
+    public final static String[] COLUMNDEF_TAXPATH_SN = PRO_COLUMN_DEFINITION_TAXPATH_SN.clone();
+
+    /**
+     * The profile format: columns begin with {@link #COLUMNDEF} or {@link #COLUMNDEF_TAXPATH_SN}
+     * and may be followed by custom columns.
+     */
+    public final static FormatSchema SCHEMA = new FormatSchema(PRO_TASK, PRO_VERSION_SUPPORT,
+            PRO_MANDATORY_FIELDS, new String[][]{PRO_COLUMN_DEFINITION, PRO_COLUMN_DEFINITION_TAXPATH_SN},
+            new String[0]);
 
     /**
      * Writer for CAMI Profile format.
@@ -40,10 +55,77 @@ public class Profile extends Base {
             setRanks(PRO_RANKS);
         }
 
+        /**
+         * Writer with an explicit column definition, such as one including TAXPATHSN
+         * or custom columns.
+         *
+         * @param fileName         - the file name for writing.
+         * @param columnDefinition - the explicit column definition.
+         * @param create           - create a new file.
+         * @throws IOException
+         */
+        public Writer(String fileName, String[] columnDefinition, boolean create) throws IOException {
+            super(fileName, columnDefinition, create);
+            setTask(PRO_TASK);
+            setVersion("1.0");
+            setRanks(PRO_RANKS);
+        }
+
         public Writer(String fileName) throws ParseException, IOException {
             super(fileName, PRO_COLUMN_DEFINITION, false);
         }
 
+        /**
+         * Write a profile row without formatting its values as strings.
+         *
+         * @param taxId       the taxid of the row
+         * @param rank        the ordinal of the rank in {@link #RANK_NAMES}
+         * @param lineage     the TAXPATH, non-positive entries are written as empty ranks
+         * @param percentage  the relative abundance
+         * @throws FieldException  rank ordinal out of range.
+         * @throws HeaderException header has not been written first.
+         * @throws IOException     error writing to file.
+         */
+        public void writeProfileRow(int taxId, int rank, int[] lineage, double percentage)
+                throws FieldException, HeaderException, IOException {
+            if (rank < 0 || rank >= RANK_NAMES.length) {
+                throw new FieldException(String.format("invalid rank ordinal %d", rank));
+            }
+            beginRow(PRO_COLUMN_DEFINITION.length);
+            appendField(taxId);
+            appendField(RANK_NAMES[rank]);
+            appendField(lineage, '|');
+            appendField(percentage);
+            endRow();
+        }
+
+        /**
+         * Write a profile row with TAXPATHSN. The writer must have been created with
+         * {@link #COLUMNDEF_TAXPATH_SN}.
+         *
+         * @param taxId        the taxid of the row
+         * @param rank         the ordinal of the rank in {@link #RANK_NAMES}
+         * @param lineage      the TAXPATH, non-positive entries are written as empty ranks
+         * @param lineageNames the TAXPATHSN, null entries are written as empty ranks
+         * @param percentage   the relative abundance
+         * @throws FieldException  rank ordinal out of range or wrong column definition.
+         * @throws HeaderException header has not been written first.
+         * @throws IOException     error writing to file.
+         */
+        public void writeProfileRow(int taxId, int rank, int[] lineage, String[] lineageNames, double percentage)
+                throws FieldException, HeaderException, IOException {
+            if (rank < 0 || rank >= RANK_NAMES.length) {
+                throw new FieldException(String.format("invalid rank ordinal %d", rank));
+            }
+            beginRow(PRO_COLUMN_DEFINITION_TAXPATH_SN.length);
+            appendField(taxId);
+            appendField(RANK_NAMES[rank]);
+            appendField(lineage, '|');
+            appendField(lineageNames, '|');
+            appendField(percentage);
+            endRow();
+        }
+
         public String getRanks() {
             return getHeaderInfo().get(RANKS_KEY);
         }
@@ -53,13 +135,127 @@ public class Profile extends Base {
         }
     }
 
+    /**
+     * Profile Writer which validates rows against the NCBI taxonomy before they are written.
+     * <p/>
+     * The TAXID of every row must exist, the RANK must be one of {@link #PRO_RANKS}, the TAXPATH
+     * must be a consistent lineage and the PERCENTAGE must be a number. Lookups go through a
+     * {@link TaxonomyCache}, which should be shared between writers. Only the rows are checked, and
+     * only in the four column layout of {@link #COLUMNDEF}: neither the header values nor
+     * the mandatory header fields are, so a file written without error may still fail validation on read.
+     */
+    public static class ValidatingWriter extends Writer {
+        private TaxonomyCache taxonomy;
+        // a local neoDao instance will be shutdown with close()
+        private boolean localNeoDao = false;
+        private long rowNumber = 0;
+
+        public ValidatingWriter(String fileName, boolean create, TaxonomyCache taxonomy) throws IOException {
+            super(fileName, create);
+            this.taxonomy = taxonomy;
+        }
+
+        public ValidatingWriter(String fileName, boolean create, NeoDao neoDao) throws IOException {
+            this(fileName, create, new TaxonomyCache(neoDao));
+        }
+
+        public ValidatingWriter(String fileName, boolean create, String neoDBPath) throws IOException {
+            this(fileName, create, new TaxonomyCache(new NeoDao(new File(neoDBPath))));
+            this.localNeoDao = true;
+        }
+
+        @Override
+        public void writeRow(String[] row) throws FieldException, HeaderException, IOException {
+            this.rowNumber++;
+            if (row.length == PRO_COLUMN_DEFINITION.length) {
+                try {
+                    checkTaxId(toInt(row[0]));
+                    Double.parseDouble(row[3]);
+                } catch (NumberFormatException ex) {
+                    throw new FieldException(String.format("invalid TAXID or PERCENTAGE in row:%d %s",
+                            this.rowNumber, Arrays.toString(row)));
+                }
+                if (!Arrays.asList(RANK_NAMES).contains(row[1])) {
+                    throw new FieldException(String.format("invalid rank [%s] in row:%d", row[1], this.rowNumber));
+                }
+                if (row[2].trim().isEmpty()) {
+                    throw new FieldException(String.format("empty TAXPATH in row:%d", this.rowNumber));
+                }
+                List<Integer> lineage = toIntList(row[2], "\\|");
+                int[] taxIds = new int[lineage.size()];
+                for (int i = 0; i < taxIds.length; i++) {
+                    taxIds[i] = lineage.get(i);
+                }
+                checkLineage(taxIds, row[2]);
+            }
+            super.writeRow(row);
+        }
+
+        @Override
+        public void writeProfileRow(int taxId, int rank, int[] lineage, double percentage)
+                throws FieldException, HeaderException, IOException {
+            this.rowNumber++;
+            checkTaxId(taxId);
+            if (lineage.length == 0) {
+                throw new FieldException(String.format("empty TAXPATH in row:%d", this.rowNumber));
+            }
+            checkLineage(lineage, null);
+            if (Double.isNaN(percentage) || Double.isInfinite(percentage)) {
+                throw new FieldException(String.format("invalid PERCENTAGE [%f] in row:%d", percentage, this.rowNumber));
+            }
+            super.writeProfileRow(taxId, rank, lineage, percentage);
+        }
+
+        private void checkTaxId(int taxId) throws FieldException {
+            if (!this.taxonomy.taxonExists(taxId)) {
+                throw new FieldException(String.format("invalid TAXID [%d] in row:%d", taxId, this.rowNumber));
+            }
+        }
+
+        private void checkLineage(int[] lineage, String taxpath) throws FieldException {
+            int bad = this.taxonomy.checkLineage(lineage, lineage.length);
+            if (bad != -1) {
+                throw new FieldException(String.format("invalid TAXPATH %s at TAXID [%d] in row:%d",
+                        taxpath != null ? taxpath : Arrays.toString(lineage), lineage[bad], this.rowNumber));
+            }
+        }
+
+        /**
+         * Close the underlying file and shutdown any local NeoDao instance.
+         * This will not close an external NeoDao instance passed in at
+         * instantiation time.
+         */
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (isLocalNeoDao()) {
+                getTaxonomy().getNeoDao().shutdown();
+            }
+        }
+
+        public boolean isLocalNeoDao() {
+            return localNeoDao;
+        }
+
+        public TaxonomyCache getTaxonomy() {
+            return taxonomy;
+        }
+    }
+
     /**
      * Profile Reader without any validation of underlying taxonomic ids or lineages.
      */
     public static class Reader extends Base.Reader {
         public Reader(String fileName, Boolean checkHeader) throws ParseException, IOException {
-            super(fileName, PRO_TASK, PRO_VERSION_SUPPORT,
-                    PRO_MANDATORY_FIELDS, checkHeader);
+            super(fileName, SCHEMA, checkHeader);
+        }
+
+        /**
+         * @param input       the lines to read, see {@link LineReader#of(java.io.InputStream, String)}
+         * @param checkHeader check header fields
+         */
+        public Reader(LineReader input, Boolean checkHeader) throws ParseException, IOException {
+            super(input, SCHEMA, checkHeader);
         }
     }
 
@@ -79,16 +275,30 @@ public class Profile extends Base {
         private NeoDao neoDao;
         // a local neoDao instance will be shutdown with close()
         private boolean localNeoDao = false;
+        // index of the PERCENTAGE column of the current sample; set by readHeader() from the super
+        // constructor, so it must not have an initializer
+        protected int percentageColumn;
 
         public ValidatingReader(String fileName, NeoDao neoDao, Boolean checkHeader)
                 throws ParseException, IOException {
-            super(fileName, PRO_TASK, PRO_VERSION_SUPPORT, PRO_MANDATORY_FIELDS, checkHeader);
+            super(fileName, SCHEMA, checkHeader);
+            this.neoDao = neoDao;
+        }
+
+        /**
+         * @param input       the lines to read, see {@link LineReader#of(java.io.InputStream, String)}
+         * @param neoDao      the taxonomy, not shut down by {@link #close()}
+         * @param checkHeader check header fields
+         */
+        public ValidatingReader(LineReader input, NeoDao neoDao, Boolean checkHeader)
+                throws ParseException, IOException {
+            super(input, SCHEMA, checkHeader);
             this.neoDao = neoDao;
         }
 
         public ValidatingReader(String fileName, String neoDBPath, Boolean checkHeader)
                 throws ParseException, IOException {
-            super(fileName, PRO_TASK, PRO_VERSION_SUPPORT, PRO_MANDATORY_FIELDS, checkHeader);
+            super(fileName, SCHEMA, checkHeader);
             this.neoDao = new NeoDao(new File(neoDBPath));
             this.localNeoDao = true;
         }
@@ -104,9 +314,11 @@ public class Profile extends Base {
             // First column in row is a TAXID, check that it exists.
             // This is technically redundant if the lineage field includes
             // this value as well and is validated.
+            long start = startTimer();
             int taxId = toInt(values[0]);
             this.checkInvalidTAXID(taxId);
             this.checkInvalidTaxPath(values[2]);
+            stopTimer(MetricsListener.Stage.VALIDATE, start);
             return values;
         }
 
@@ -121,7 +333,6 @@ public class Profile extends Base {
 //          check for the following allowed IDs
 //          TAXID, RANKS, TAXPATH,PERCENTAGE
 //          TAXID, RANKS, TAXPATH, TAXPATHSN, PERCENTAGE
-            List<String> subCol = null;
             List<String> newColDef = new ArrayList<>();
             for (String col : columnDefinition) {
                 newColDef.add(col.toUpperCase());
@@ -129,47 +340,26 @@ public class Profile extends Base {
 
             //this MUST be refactored
             columnDefinition = newColDef;
-            if (columnDefinition.subList(0, PRO_COLUMN_DEFINITION.length).equals(Arrays.asList(PRO_COLUMN_DEFINITION))) {
-                subCol = columnDefinition.subList(0, PRO_COLUMN_DEFINITION.length);
-                percentageColumn = 3;
-            }
-
-            if (columnDefinition.size() >= PRO_COLUMN_DEFINITION_TAXPATH_SN.length &&
-                    columnDefinition.subList(0, PRO_COLUMN_DEFINITION_TAXPATH_SN.length).equals(Arrays.asList(PRO_COLUMN_DEFINITION_TAXPATH_SN))) {
-                subCol = columnDefinition.subList(0, PRO_COLUMN_DEFINITION_TAXPATH_SN.length);
-                percentageColumn = 4;
-            }
-
-            if (subCol == null) {
+            int leading = getSchema().matchLayout(columnDefinition);
+            if (leading == 0) {
                 getLogger().warn("Invalid Header on line: {}  \n", lineNumber);
                 throw new HeaderException("");
             }
+            // the percentage closes both layouts
+            this.percentageColumn = leading - 1;
 
-            if (subCol.equals(PRO_COLUMN_DEFINITION) && subCol.size() > PRO_COLUMN_DEFINITION.length) {
-                List<String> subColumns = columnDefinition.subList(PRO_COLUMN_DEFINITION.length, columnDefinition.size());
-                checkCustomColumns(subColumns, lineNumber);
-            }
-
-            if (subCol.equals(PRO_COLUMN_DEFINITION_TAXPATH_SN) && columnDefinition.size() > PRO_COLUMN_DEFINITION_TAXPATH_SN.length) {
-                List<String> subColumns = columnDefinition.subList(PRO_COLUMN_DEFINITION_TAXPATH_SN.length, columnDefinition.size());
-                checkCustomColumns(subColumns, lineNumber);
-            }
-        }
-
-        private void checkCustomColumns(List<String> customColumns, int lineNumber) throws HeaderException {
-            for (String column : customColumns) {
-                if (!column.matches("n _[A-Za-z]*_[A-Za-z]+[A-Za-z0-9]*")) {
-                    getLogger().warn("Invalid Header on line:{} . " +
-                            "Custom types MUST be prefixed by a case-insensitive " +
-                            "string with an underscore before and after the string  ", lineNumber);
-                    throw new HeaderException("");
-                }
+            if (getSchema().findInvalidColumn(columnDefinition) != -1) {
+                getLogger().warn("Invalid Header on line:{} . " +
+                        "Custom types MUST be prefixed by a case-insensitive " +
+                        "string with an underscore before and after the string  ", lineNumber);
+                throw new HeaderException("");
             }
         }
 
         protected void checkInvalidTAXID(int taxId) throws FieldException {
-            if (!getNeoDao().taxonExists(taxId)) {
+            if (!taxonExists(getNeoDao(), taxId)) {
                 getLogger().warn("Invalid TAXID [{}] on line:{}", taxId, lineNumber);
+                traceFailure("unknown TAXID " + taxId);
                 throw new FieldException("");
             }
         }
@@ -178,6 +368,7 @@ public class Profile extends Base {
             // Check that the lineage field exists as well.
             if (taxpath.trim().isEmpty()) {
                 getLogger().warn("Invalid TAXPATH {} on line:{}", taxpath, lineNumber);
+                traceFailure("empty TAXPATH");
                 throw new FieldException("");
             }
             List<Integer> lineage = toIntList(taxpath, "\\|");
@@ -186,15 +377,17 @@ public class Profile extends Base {
 
             for (Integer taxId : lineage) {
                 second = taxId;
-                if (getNeoDao().taxonExists(second)) {
+                if (taxonExists(getNeoDao(), second)) {
                     if (first != null && second != null &&
-                            (!getNeoDao().sparsePathExists(first, second))) {
+                            (!sparsePathExists(getNeoDao(), first, second))) {
                         getLogger().warn("Invalid TAXPATH {} on line:{}", taxpath, lineNumber);
+                        traceFailure("broken TAXPATH " + taxpath);
                         throw new FieldException("");
                     }
                     first = second;
                 } else {
                     getLogger().warn("Invalid TAXID {} on line:{}", taxpath, lineNumber);
+                    traceFailure("unknown TAXID " + second + " in TAXPATH");
                     throw new FieldException("");
                 }
             }
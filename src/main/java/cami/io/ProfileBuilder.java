@@ -0,0 +1,227 @@
+package cami.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.Base.FieldException;
+import cami.io.Base.ParseException;
+
+/**
+ * Collects profile rows in any order and writes them rank by rank, from superkingdom down to strain,
+ * through a {@link Profile.Writer}.
+ * <p/>
+ * Rows are kept in one primitive bucket per rank. When the buckets exceed the memory limit they are
+ * appended to one temporary file per rank and cleared. On {@link #close()} the header is written and
+ * each rank is emitted in turn, spilled rows first, so that the output is produced in a single
+ * sequential pass. Within a rank rows keep the order in which they were added.
+ * <p/>
+ * The header fields of the wrapped writer must be set before {@link #close()} and its header must not
+ * have been written.
+ */
+public class ProfileBuilder {
+    public final static long DEFAULT_MEMORY_LIMIT = 64L << 20;
+
+    private final Profile.Writer writer;
+    private final long memoryLimit;
+    private final File spillDirectory;
+    private final Bucket[] buckets = new Bucket[Profile.RANK_NAMES.length];
+    private final File[] spills = new File[Profile.RANK_NAMES.length];
+    private long memoryUsed = 0;
+    private boolean closed = false;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    public ProfileBuilder(Profile.Writer writer) {
+        this(writer, DEFAULT_MEMORY_LIMIT, null);
+    }
+
+    /**
+     * @param writer         the writer to emit into
+     * @param memoryLimit    approximate number of bytes of buffered rows before spilling to disk
+     * @param spillDirectory directory for temporary files, null for the system default
+     */
+    public ProfileBuilder(Profile.Writer writer, long memoryLimit, File spillDirectory) {
+        this.writer = writer;
+        this.memoryLimit = memoryLimit;
+        this.spillDirectory = spillDirectory;
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Add a row.
+     *
+     * @param taxId      the taxid of the row
+     * @param rank       the ordinal of the rank in {@link Profile#RANK_NAMES}
+     * @param lineage    the TAXPATH, non-positive entries denote empty ranks
+     * @param percentage the relative abundance
+     * @throws FieldException rank ordinal out of range
+     * @throws IOException    error while spilling to disk
+     */
+    public void add(int taxId, int rank, int[] lineage, double percentage) throws FieldException, IOException {
+        if (this.closed) {
+            throw new IOException("builder has been closed");
+        }
+        if (rank < 0 || rank >= this.buckets.length) {
+            throw new FieldException(String.format("invalid rank ordinal %d", rank));
+        }
+        this.memoryUsed += this.buckets[rank].add(taxId, lineage, percentage);
+        if (this.memoryUsed > this.memoryLimit) {
+            spill();
+        }
+    }
+
+    /**
+     * Add a row given the rank by name.
+     *
+     * @see #add(int, int, int[], double)
+     */
+    public void add(int taxId, String rank, int[] lineage, double percentage) throws FieldException, IOException {
+        int ordinal = Arrays.asList(Profile.RANK_NAMES).indexOf(rank);
+        if (ordinal == -1) {
+            throw new FieldException(String.format("invalid rank [%s]", rank));
+        }
+        add(taxId, ordinal, lineage, percentage);
+    }
+
+    private void spill() throws IOException {
+        for (int rank = 0; rank < this.buckets.length; rank++) {
+            Bucket bucket = this.buckets[rank];
+            if (bucket.size == 0) {
+                continue;
+            }
+            if (this.spills[rank] == null) {
+                this.spills[rank] = File.createTempFile("cami-profile-" + Profile.RANK_NAMES[rank], ".bin",
+                        this.spillDirectory);
+                this.spills[rank].deleteOnExit();
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(this.spills[rank], true), 1 << 16))) {
+                for (int i = 0; i < bucket.size; i++) {
+                    int from = bucket.lineageStart[i];
+                    int to = bucket.lineageStart[i + 1];
+                    out.writeInt(bucket.taxIds[i]);
+                    out.writeDouble(bucket.percentages[i]);
+                    out.writeInt(to - from);
+                    for (int j = from; j < to; j++) {
+                        out.writeInt(bucket.lineages[j]);
+                    }
+                }
+            }
+            getLogger().debug("spilled {} {} rows", bucket.size, Profile.RANK_NAMES[rank]);
+            bucket.clear();
+        }
+        this.memoryUsed = 0;
+    }
+
+    /**
+     * Write the header and all rows in rank order, then close the wrapped writer and remove
+     * temporary files.
+     *
+     * @throws ParseException error while writing the header or rows
+     * @throws IOException    error reading temporary files or writing the output
+     */
+    public void close() throws ParseException, IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.writer.writeHeader();
+            int[] lineage = new int[Profile.RANK_NAMES.length];
+            for (int rank = 0; rank < this.buckets.length; rank++) {
+                if (this.spills[rank] != null) {
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                            new FileInputStream(this.spills[rank]), 1 << 16))) {
+                        while (true) {
+                            int taxId;
+                            try {
+                                taxId = in.readInt();
+                            } catch (EOFException e) {
+                                break;
+                            }
+                            double percentage = in.readDouble();
+                            int length = in.readInt();
+                            if (lineage.length != length) {
+                                lineage = new int[length];
+                            }
+                            for (int j = 0; j < length; j++) {
+                                lineage[j] = in.readInt();
+                            }
+                            this.writer.writeProfileRow(taxId, rank, lineage, percentage);
+                        }
+                    }
+                }
+                Bucket bucket = this.buckets[rank];
+                for (int i = 0; i < bucket.size; i++) {
+                    int from = bucket.lineageStart[i];
+                    int length = bucket.lineageStart[i + 1] - from;
+                    if (lineage.length != length) {
+                        lineage = new int[length];
+                    }
+                    System.arraycopy(bucket.lineages, from, lineage, 0, length);
+                    this.writer.writeProfileRow(bucket.taxIds[i], rank, lineage, bucket.percentages[i]);
+                }
+                bucket.clear();
+            }
+        } finally {
+            this.writer.close();
+            for (File spill : this.spills) {
+                if (spill != null && !spill.delete()) {
+                    getLogger().warn("could not delete temporary file {}", spill);
+                }
+            }
+        }
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Rows of one rank in parallel primitive arrays, lineages are stored back to back.
+     */
+    private static class Bucket {
+        private int[] taxIds = new int[64];
+        private double[] percentages = new double[64];
+        private int[] lineageStart = new int[65];
+        private int[] lineages = new int[256];
+        private int size = 0;
+
+        /**
+         * @return approximate number of bytes added
+         */
+        private long add(int taxId, int[] lineage, double percentage) {
+            if (this.size == this.taxIds.length) {
+                int capacity = this.size << 1;
+                this.taxIds = Arrays.copyOf(this.taxIds, capacity);
+                this.percentages = Arrays.copyOf(this.percentages, capacity);
+                this.lineageStart = Arrays.copyOf(this.lineageStart, capacity + 1);
+            }
+            int from = this.lineageStart[this.size];
+            if (from + lineage.length > this.lineages.length) {
+                this.lineages = Arrays.copyOf(this.lineages, Math.max(this.lineages.length << 1, from + lineage.length));
+            }
+            System.arraycopy(lineage, 0, this.lineages, from, lineage.length);
+            this.taxIds[this.size] = taxId;
+            this.percentages[this.size] = percentage;
+            this.lineageStart[++this.size] = from + lineage.length;
+            return 16 + 4L * lineage.length;
+        }
+
+        private void clear() {
+            this.size = 0;
+        }
+    }
+}
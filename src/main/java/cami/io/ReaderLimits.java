@@ -0,0 +1,82 @@
+package cami.io;
+
+/**
+ * Bounds on the input accepted by a {@link Base.Reader}, so that a broken or hostile file, such as a binary
+ * file or one without line breaks, fails with a {@link Base.LimitException} instead of exhausting the heap.
+ * <p/>
+ * A reader takes the limits set by {@link #setDefault(ReaderLimits)} when created, see
+ * {@link Base.Reader#setLimits(ReaderLimits)} to change them afterwards. The {@link #DEFAULT} limits lie
+ * far beyond any CAMI submission.
+ */
+public final class ReaderLimits {
+    public final static ReaderLimits DEFAULT = new ReaderLimits(1 << 20, 10000, 10000, Long.MAX_VALUE,
+            Integer.MAX_VALUE);
+    public final static ReaderLimits UNLIMITED = new ReaderLimits(Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    private static volatile ReaderLimits defaultLimits = DEFAULT;
+
+    private final int maxLineLength;
+    private final int maxHeaderLines;
+    private final int maxFields;
+    private final long maxRows;
+    private final int maxSamples;
+
+    /**
+     * @param maxLineLength  the longest line in bytes, terminator excluded
+     * @param maxHeaderLines the most lines in the header of a sample, blank and comment lines included
+     * @param maxFields      the most columns in a column definition
+     * @param maxRows        the most data rows in a file
+     * @param maxSamples     the most samples in a concatenated file
+     */
+    public ReaderLimits(int maxLineLength, int maxHeaderLines, int maxFields, long maxRows, int maxSamples) {
+        if (maxLineLength <= 0 || maxHeaderLines <= 0 || maxFields <= 0 || maxRows <= 0 || maxSamples <= 0) {
+            throw new IllegalArgumentException("limits must be positive");
+        }
+        this.maxLineLength = maxLineLength;
+        this.maxHeaderLines = maxHeaderLines;
+        this.maxFields = maxFields;
+        this.maxRows = maxRows;
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * @return the limits taken by readers when created
+     */
+    public static ReaderLimits getDefault() {
+        return defaultLimits;
+    }
+
+    /**
+     * @param limits the limits taken by readers created from now on, null for {@link #DEFAULT}
+     */
+    public static void setDefault(ReaderLimits limits) {
+        defaultLimits = limits == null ? DEFAULT : limits;
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    public int getMaxHeaderLines() {
+        return maxHeaderLines;
+    }
+
+    public int getMaxFields() {
+        return maxFields;
+    }
+
+    public long getMaxRows() {
+        return maxRows;
+    }
+
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("line:%d header:%d fields:%d rows:%d samples:%d", this.maxLineLength,
+                this.maxHeaderLines, this.maxFields, this.maxRows, this.maxSamples);
+    }
+}
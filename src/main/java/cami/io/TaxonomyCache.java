@@ -0,0 +1,146 @@
+package cami.io;
+
+import mzd.taxonomy.neo.NeoDao;
+
+import cami.io.metrics.Metrics;
+import cami.io.metrics.TraceListener;
+import cami.io.util.IntIntMap;
+import cami.io.util.LongIntMap;
+
+/**
+ * Memoizing front end for {@code mzd.taxonomy.neo.NeoDao}.
+ * <p/>
+ * Each taxon and each ancestor/descendant pair is looked up in the taxonomy at most once,
+ * subsequent queries are answered from primitive hash tables. A single instance can be shared
+ * between readers, writers and threads.
+ */
+public class TaxonomyCache {
+    private final static int UNKNOWN = 0;
+    private final static int YES = 1;
+    private final static int NO = 2;
+    // flags an answer which was not cached
+    private final static int MISSED = 4;
+
+    private final NeoDao neoDao;
+    private final IntIntMap taxa = new IntIntMap(1 << 16);
+    private final LongIntMap paths = new LongIntMap(1 << 16);
+    private long hits = 0;
+    private long misses = 0;
+    private volatile TraceListener tracer = Metrics.getDefaultTracer();
+
+    public TaxonomyCache(NeoDao neoDao) {
+        this.neoDao = neoDao;
+    }
+
+    /**
+     * @param taxId the taxid to look up
+     * @return true if the taxon exists in the taxonomy
+     */
+    public boolean taxonExists(int taxId) {
+        TraceListener tracer = this.tracer;
+        if (tracer == null) {
+            return (lookupTaxon(taxId) & YES) != 0;
+        }
+        Object span = tracer.begin(TraceListener.Span.LOOKUP);
+        int answer = lookupTaxon(taxId);
+        tracer.endLookup(span, null, -1, -1, taxId, (answer & MISSED) == 0, (answer & YES) != 0);
+        return (answer & YES) != 0;
+    }
+
+    private int lookupTaxon(int taxId) {
+        synchronized (this) {
+            int known = this.taxa.get(taxId, UNKNOWN);
+            if (known != UNKNOWN) {
+                this.hits++;
+                return known;
+            }
+            this.misses++;
+        }
+        boolean exists = this.neoDao.taxonExists(taxId);
+        synchronized (this) {
+            this.taxa.put(taxId, exists ? YES : NO);
+        }
+        return (exists ? YES : NO) | MISSED;
+    }
+
+    /**
+     * @param ancestor   the upper taxid
+     * @param descendant the lower taxid
+     * @return true if {@code descendant} lies below {@code ancestor}, possibly skipping ranks
+     */
+    public boolean sparsePathExists(int ancestor, int descendant) {
+        TraceListener tracer = this.tracer;
+        if (tracer == null) {
+            return (lookupPath(ancestor, descendant) & YES) != 0;
+        }
+        Object span = tracer.begin(TraceListener.Span.LOOKUP);
+        int answer = lookupPath(ancestor, descendant);
+        tracer.endLookup(span, null, -1, ancestor, descendant, (answer & MISSED) == 0, (answer & YES) != 0);
+        return (answer & YES) != 0;
+    }
+
+    private int lookupPath(int ancestor, int descendant) {
+        long key = ((long) ancestor << 32) | (descendant & 0xffffffffL);
+        synchronized (this) {
+            int known = this.paths.get(key, UNKNOWN);
+            if (known != UNKNOWN) {
+                this.hits++;
+                return known;
+            }
+            this.misses++;
+        }
+        boolean exists = this.neoDao.sparsePathExists(ancestor, descendant);
+        synchronized (this) {
+            this.paths.put(key, exists ? YES : NO);
+        }
+        return (exists ? YES : NO) | MISSED;
+    }
+
+    /**
+     * Check a lineage as found in a TAXPATH field. Every taxon must exist and every taxon must
+     * descend from its predecessor. Non-positive entries denote empty ranks and are skipped.
+     *
+     * @param lineage the taxids from top to bottom
+     * @param length  number of entries of {@code lineage} to check
+     * @return the index of the first offending entry or -1 if the lineage is valid
+     */
+    public int checkLineage(int[] lineage, int length) {
+        int previous = -1;
+        for (int i = 0; i < length; i++) {
+            int taxId = lineage[i];
+            if (taxId <= 0) {
+                continue;
+            }
+            if (!taxonExists(taxId) || (previous != -1 && !sparsePathExists(previous, taxId))) {
+                return i;
+            }
+            previous = taxId;
+        }
+        return -1;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public NeoDao getNeoDao() {
+        return neoDao;
+    }
+
+    public TraceListener getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Replace the tracer taken from {@link Metrics#getDefaultTracer()} at creation.
+     *
+     * @param tracer the tracer, null to disable tracing
+     */
+    public void setTracer(TraceListener tracer) {
+        this.tracer = tracer;
+    }
+}
@@ -0,0 +1,166 @@
+package cami.io.binary;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.Profile;
+
+/**
+ * Compact binary companion format for CAMI binning and profile data.
+ * <p/>
+ * A file holds the header fields, the column definition and one section per column. Each column is
+ * stored with the narrowest type which reproduces every value exactly:
+ * <ul>
+ * <li>{@link ColumnType#INT} fixed-width 32 bit integers, e.g. TAXID</li>
+ * <li>{@link ColumnType#DOUBLE} fixed-width 64 bit floats, e.g. PERCENTAGE, written with the fraction digits of
+ * the first value; spellings which differ, such as {@code 1.50} among {@code 1.5}, are kept in a short list
+ * of exceptions in the dictionary section</li>
+ * <li>{@link ColumnType#LINEAGE} fixed-width integer lists, e.g. TAXPATH</li>
+ * <li>{@link ColumnType#DICTIONARY} integer codes into a string dictionary, e.g. SEQUENCEID</li>
+ * </ul>
+ * A footer at the end of the file indexes the column sections, so that a reader can memory-map the
+ * columns it needs without parsing anything else. Conversion to and from TSV is lossless with respect
+ * to the header fields as written and in file order, see {@link Base.Reader#getOriginalHeaderInfo()}, and
+ * the column definition and row values seen by {@link Base.Reader}; comments and blank lines are not retained.
+ * <p/>
+ * Layout: {@code MAGIC, column sections..., footer, footer offset (long), MAGIC}
+ */
+public final class CamiBinary {
+    final static byte[] MAGIC = {'C', 'A', 'M', 'I', 'B', 'I', 'N', 1};
+
+    /**
+     * The CAMI file type held by a binary file.
+     */
+    public enum Kind {
+        BINNING, PROFILE
+    }
+
+    /**
+     * Storage type of a column.
+     */
+    public enum ColumnType {
+        INT, DOUBLE, LINEAGE, DICTIONARY
+    }
+
+    private CamiBinary() {
+    }
+
+    /**
+     * Convert a TSV binning file.
+     *
+     * @param tsvFile     the binning file to read
+     * @param binaryFile  the binary file to create
+     * @param checkHeader check mandatory header fields
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading or writing
+     */
+    public static void binningToBinary(String tsvFile, String binaryFile, boolean checkHeader)
+            throws Base.ParseException, IOException {
+        toBinary(new Binning.Reader(tsvFile, checkHeader), Kind.BINNING, binaryFile);
+    }
+
+    /**
+     * Convert a TSV profile file.
+     *
+     * @param tsvFile     the profile file to read
+     * @param binaryFile  the binary file to create
+     * @param checkHeader check mandatory header fields
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading or writing
+     */
+    public static void profileToBinary(String tsvFile, String binaryFile, boolean checkHeader)
+            throws Base.ParseException, IOException {
+        toBinary(new Profile.Reader(tsvFile, checkHeader), Kind.PROFILE, binaryFile);
+    }
+
+    /**
+     * Drain an open reader into a binary file. The reader is closed, also on failure, in which case no binary
+     * file is left behind.
+     *
+     * @param reader     any reader positioned after the header
+     * @param kind       the file type of the reader
+     * @param binaryFile the binary file to create
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading or writing
+     */
+    public static void toBinary(Base.Reader reader, Kind kind, String binaryFile)
+            throws Base.ParseException, IOException {
+        try {
+            // nothing is written before close, which removes its partial output itself
+            CamiBinaryWriter writer = new CamiBinaryWriter(binaryFile, kind, reader.getOriginalHeaderInfo(),
+                    reader.getColumnDefinition().toArray(new String[0]));
+            String[] row;
+            while ((row = reader.readRow()) != null) {
+                writer.writeRow(row);
+            }
+            writer.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Convert a binary file back to TSV with the writer of its file type.
+     *
+     * @param binaryFile the binary file to read
+     * @param tsvFile    the TSV file to create
+     * @throws Base.ParseException error writing rows
+     * @throws IOException         error reading or writing
+     */
+    public static void toTsv(String binaryFile, String tsvFile) throws Base.ParseException, IOException {
+        CamiBinaryReader reader = new CamiBinaryReader(binaryFile);
+        try {
+            String[] columns = reader.getColumnDefinition().toArray(new String[0]);
+            Base.Writer writer = reader.getKind() == Kind.BINNING
+                    ? new Binning.Writer(tsvFile, columns, true)
+                    : new Profile.Writer(tsvFile, columns, true);
+            try {
+                writer.replaceHeaderInfo(reader.getHeaderInfo());
+                writer.writeHeader();
+                String[] row = new String[columns.length];
+                for (int i = 0; i < reader.getRowCount(); i++) {
+                    writer.writeRow(reader.readRow(i, row));
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /*
+     * Canonical text forms. A value is stored with a type only if the text form reproduces it.
+     */
+
+    static String formatDouble(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * @param width 0 for the canonical form, else one more than the number of fraction digits
+     */
+    static String formatDouble(double value, int width) {
+        if (width == 0) {
+            return formatDouble(value);
+        }
+        return BigDecimal.valueOf(value).setScale(width - 1, RoundingMode.HALF_EVEN).toPlainString();
+    }
+
+    static String formatLineage(int[] lineage, int from, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            int taxId = lineage[from + i];
+            if (taxId > 0) {
+                sb.append(taxId);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,280 @@
+package cami.io.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cami.io.binary.CamiBinary.ColumnType;
+import cami.io.binary.CamiBinary.Kind;
+
+/**
+ * Memory-mapped reader for the binary CAMI format described in {@link CamiBinary}.
+ * <p/>
+ * Opening a file reads only the footer and maps the column sections. Values are decoded at
+ * access time, so loading cost does not depend on the number of rows. Typed accessors ({@link #getInt}, {@link #getDouble}, {@link #getLineage}, {@link #getCode}) avoid creating
+ * strings; {@link #getString} and {@link #readRow} produce the TSV representation.
+ * <p/>
+ * Instances may be shared between threads once opened.
+ */
+public class CamiBinaryReader {
+    private final FileChannel channel;
+    private final Kind kind;
+    private final int rowCount;
+    private final Map<String, String> headerInfo = new LinkedHashMap<>();
+    private final List<String> columnDefinition = new ArrayList<>();
+    private final ColumnType[] types;
+    private final int[] widths;
+    private final long[][] sections;
+    private final ByteBuffer[] data;
+    private final ByteBuffer[] dictionaries;
+
+    /**
+     * Open a binary file and read its footer.
+     *
+     * @param fileName the file to open
+     * @throws IOException error reading the file or not a binary CAMI file
+     */
+    public CamiBinaryReader(String fileName) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            long size = this.channel.size();
+            int trailer = 8 + CamiBinary.MAGIC.length;
+            if (size < CamiBinary.MAGIC.length + trailer) {
+                throw new IOException(String.format("%s is not a binary CAMI file", fileName));
+            }
+            ByteBuffer tail = read(size - trailer, trailer);
+            long footer = tail.getLong();
+            byte[] magic = new byte[CamiBinary.MAGIC.length];
+            tail.get(magic);
+            if (!Arrays.equals(magic, CamiBinary.MAGIC) || footer < CamiBinary.MAGIC.length || footer > size - trailer) {
+                throw new IOException(String.format("%s is not a binary CAMI file", fileName));
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    read(footer, (int) (size - trailer - footer)).array()));
+            this.kind = Kind.values()[in.readByte()];
+            this.rowCount = in.readInt();
+            int headerCount = in.readInt();
+            for (int i = 0; i < headerCount; i++) {
+                this.headerInfo.put(in.readUTF(), in.readUTF());
+            }
+            int columns = in.readInt();
+            this.types = new ColumnType[columns];
+            this.widths = new int[columns];
+            this.sections = new long[columns][4];
+            this.data = new ByteBuffer[columns];
+            this.dictionaries = new ByteBuffer[columns];
+            for (int i = 0; i < columns; i++) {
+                this.columnDefinition.add(in.readUTF());
+                this.types[i] = ColumnType.values()[in.readByte()];
+                this.widths[i] = in.readInt();
+                for (int j = 0; j < 4; j++) {
+                    this.sections[i][j] = in.readLong();
+                }
+                this.data[i] = map(this.sections[i][0], this.sections[i][1]);
+                this.dictionaries[i] = map(this.sections[i][2], this.sections[i][3]);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of binary CAMI file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private ByteBuffer map(long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("column section exceeds 2GB and cannot be mapped");
+        }
+        return this.channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private void checkType(int column, ColumnType type) {
+        if (this.types[column] != type) {
+            throw new IllegalArgumentException(String.format("column %s is stored as %s not %s",
+                    this.columnDefinition.get(column), this.types[column], type));
+        }
+    }
+
+    public int getInt(int column, int row) {
+        checkType(column, ColumnType.INT);
+        return this.data[column].getInt(row << 2);
+    }
+
+    public double getDouble(int column, int row) {
+        checkType(column, ColumnType.DOUBLE);
+        return this.data[column].getDouble(row << 3);
+    }
+
+    /**
+     * Copy the lineage of a row, empty ranks are returned as 0.
+     *
+     * @param out receives the taxids, must hold at least {@link #getWidth(int)} entries
+     * @return the number of ranks in the lineage
+     */
+    public int getLineage(int column, int row, int[] out) {
+        checkType(column, ColumnType.LINEAGE);
+        ByteBuffer buffer = this.data[column];
+        int length = buffer.get(row);
+        int base = this.rowCount + (row * this.widths[column] << 2);
+        for (int i = 0; i < length; i++) {
+            out[i] = buffer.getInt(base + (i << 2));
+        }
+        return length;
+    }
+
+    /**
+     * @return the dictionary code of a row in a {@link ColumnType#DICTIONARY} column
+     */
+    public int getCode(int column, int row) {
+        checkType(column, ColumnType.DICTIONARY);
+        return this.data[column].getInt(row << 2);
+    }
+
+    public int getDictionarySize(int column) {
+        checkType(column, ColumnType.DICTIONARY);
+        return this.dictionaries[column].getInt(0);
+    }
+
+    public String getDictionaryValue(int column, int code) {
+        checkType(column, ColumnType.DICTIONARY);
+        ByteBuffer dictionary = this.dictionaries[column].duplicate();
+        int count = dictionary.getInt(0);
+        int start = dictionary.getInt(4 + (code << 2));
+        int end = dictionary.getInt(8 + (code << 2));
+        byte[] bytes = new byte[end - start];
+        dictionary.position(4 + ((count + 1) << 2) + start);
+        dictionary.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the TSV representation of a value regardless of its storage type
+     */
+    public String getString(int column, int row) {
+        switch (this.types[column]) {
+            case INT:
+                return Integer.toString(getInt(column, row));
+            case DOUBLE:
+                String exception = getException(column, row);
+                return exception != null ? exception
+                        : CamiBinary.formatDouble(getDouble(column, row), this.widths[column]);
+            case LINEAGE:
+                int[] lineage = new int[this.widths[column]];
+                int length = getLineage(column, row, lineage);
+                return CamiBinary.formatLineage(lineage, 0, length);
+            default:
+                return getDictionaryValue(column, getCode(column, row));
+        }
+    }
+
+    /**
+     * @return the spelling of a value of a double column which its number format does not reproduce, or null
+     */
+    private String getException(int column, int row) {
+        ByteBuffer exceptions = this.dictionaries[column];
+        if (exceptions.capacity() == 0) {
+            return null;
+        }
+        int count = exceptions.getInt(0);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = exceptions.getInt(4 + (mid << 2));
+            if (value < row) {
+                low = mid + 1;
+            } else if (value > row) {
+                high = mid - 1;
+            } else {
+                int base = 4 + (count << 2);
+                int start = exceptions.getInt(base + (mid << 2));
+                int end = exceptions.getInt(base + 4 + (mid << 2));
+                byte[] bytes = new byte[end - start];
+                ByteBuffer spelling = exceptions.duplicate();
+                spelling.position(base + ((count + 1) << 2) + start);
+                spelling.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a row in its TSV representation.
+     *
+     * @param row the row index
+     * @param out array receiving the values, or null to allocate one
+     * @return {@code String[]} containing the row in column order.
+     */
+    public String[] readRow(int row, String[] out) {
+        if (out == null) {
+            out = new String[this.types.length];
+        }
+        for (int i = 0; i < this.types.length; i++) {
+            out[i] = getString(i, row);
+        }
+        return out;
+    }
+
+    public int getColumnIndex(String column) {
+        return this.columnDefinition.indexOf(column);
+    }
+
+    public ColumnType getColumnType(int column) {
+        return this.types[column];
+    }
+
+    /**
+     * @return the maximum lineage length of a {@link ColumnType#LINEAGE} column, or for a {@link ColumnType#DOUBLE}
+     * column 0 if written in canonical form and else one more than its fraction digits
+     */
+    public int getWidth(int column) {
+        return this.widths[column];
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public Map<String, String> getHeaderInfo() {
+        return Collections.unmodifiableMap(headerInfo);
+    }
+
+    public List<String> getColumnDefinition() {
+        return Collections.unmodifiableList(columnDefinition);
+    }
+
+    /**
+     * Close the underlying file. Mapped sections stay valid until garbage collected.
+     *
+     * @throws IOException error closing the file
+     */
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
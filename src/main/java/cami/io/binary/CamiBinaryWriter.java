@@ -0,0 +1,477 @@
+package cami.io.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cami.io.Base;
+import cami.io.binary.CamiBinary.ColumnType;
+import cami.io.binary.CamiBinary.Kind;
+
+/**
+ * Writer for the binary CAMI format described in {@link CamiBinary}.
+ * <p/>
+ * Rows are collected column by column in primitive arrays. Each column starts with the narrowest
+ * type which reproduces its first value and is widened (INT to LINEAGE or DOUBLE, anything to
+ * DICTIONARY) when a later value does not fit. A DOUBLE column keeps the spellings its number format does
+ * not reproduce, such as {@code 12.30000} among canonical values, as exceptions and becomes a DICTIONARY
+ * only if there are more than a few of them. The file is written on {@link #close()}.
+ */
+public class CamiBinaryWriter {
+    private final String fileName;
+    private final Kind kind;
+    private final Map<String, String> headerInfo;
+    private final String[] columnDefinition;
+    private final Column[] columns;
+    private int rows = 0;
+
+    /**
+     * @param fileName         the file to create
+     * @param kind             the file type
+     * @param headerInfo       the header fields to store
+     * @param columnDefinition the column names
+     */
+    public CamiBinaryWriter(String fileName, Kind kind, Map<String, String> headerInfo, String[] columnDefinition) {
+        this.fileName = fileName;
+        this.kind = kind;
+        this.headerInfo = new LinkedHashMap<>(headerInfo);
+        this.columnDefinition = columnDefinition.clone();
+        this.columns = new Column[columnDefinition.length];
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = new Column();
+        }
+    }
+
+    /**
+     * Add a data row.
+     *
+     * @param row the values in column order
+     * @throws Base.FieldException wrong number of fields
+     */
+    public void writeRow(String[] row) throws Base.FieldException {
+        if (row.length != this.columns.length) {
+            throw new Base.FieldException(String.format("number of fields in: %s does not agree with columns: %s",
+                    Arrays.toString(row), Arrays.toString(this.columnDefinition)));
+        }
+        if (this.rows == Integer.MAX_VALUE) {
+            throw new Base.FieldException("binary format is limited to " + Integer.MAX_VALUE + " rows");
+        }
+        for (int i = 0; i < row.length; i++) {
+            this.columns[i].add(row[i], this.rows);
+        }
+        this.rows++;
+    }
+
+    /**
+     * Write the file. A partial file is deleted if writing fails.
+     *
+     * @throws IOException error writing to file
+     */
+    public void close() throws IOException {
+        boolean written = false;
+        try {
+            write();
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(Paths.get(this.fileName));
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(this.fileName), 1 << 16))) {
+            out.write(CamiBinary.MAGIC);
+            long position = CamiBinary.MAGIC.length;
+            long[][] sections = new long[this.columns.length][];
+            for (int i = 0; i < this.columns.length; i++) {
+                sections[i] = this.columns[i].write(out, this.rows, position);
+                position = sections[i][2] + sections[i][3];
+            }
+            long footer = position;
+            out.writeByte(this.kind.ordinal());
+            out.writeInt(this.rows);
+            out.writeInt(this.headerInfo.size());
+            for (Map.Entry<String, String> entry : this.headerInfo.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            out.writeInt(this.columns.length);
+            for (int i = 0; i < this.columns.length; i++) {
+                out.writeUTF(this.columnDefinition[i]);
+                out.writeByte(this.columns[i].type.ordinal());
+                out.writeInt(this.columns[i].width);
+                for (long value : sections[i]) {
+                    out.writeLong(value);
+                }
+            }
+            out.writeLong(footer);
+            out.write(CamiBinary.MAGIC);
+        }
+    }
+
+    /**
+     * Values of a single column. Only the arrays of the current type are in use.
+     */
+    private static class Column {
+        // exceptions allowed besides one per 64 rows
+        private final static int MIN_EXCEPTIONS = 64;
+
+        private ColumnType type = null;
+        private int[] ints = new int[1024];
+        private double[] doubles;
+        private byte[] lengths;
+        // lineage length, or for doubles 0 for the canonical form and else one more than the fraction digits
+        private int width = 0;
+        private Map<String, Integer> dictionary;
+        // dictionary values, or the spellings of the exceptions of a double column
+        private List<String> values;
+        private int[] exceptionRows;
+        private int exceptions = 0;
+        private int[] scratch = new int[16];
+        private double number;
+
+        private void add(String value, int row) {
+            if (this.type == null) {
+                this.type = ColumnType.INT;
+            }
+            ensureCapacity(row + 1);
+            switch (this.type) {
+                case INT:
+                    if (parseInt(value)) {
+                        this.ints[row] = this.scratch[0];
+                        return;
+                    }
+                    if (parseDouble(value)) {
+                        toDouble(row);
+                        if (putDouble(row, value)) {
+                            return;
+                        }
+                        break;
+                    }
+                    int length = parseLineage(value);
+                    if (length != -1 && allPositive(row)) {
+                        toLineage(row, length);
+                        putLineage(row, length);
+                        return;
+                    }
+                    break;
+                case DOUBLE:
+                    if (parseDouble(value) && putDouble(row, value)) {
+                        return;
+                    }
+                    break;
+                case LINEAGE:
+                    int len = parseLineage(value);
+                    if (len != -1) {
+                        if (len > this.width) {
+                            widen(row, len);
+                        }
+                        putLineage(row, len);
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (this.type != ColumnType.DICTIONARY) {
+                toDictionary(row);
+            }
+            Integer code = this.dictionary.get(value);
+            if (code == null) {
+                code = this.values.size();
+                this.dictionary.put(value, code);
+                this.values.add(value);
+            }
+            this.ints[row] = code;
+        }
+
+        private void ensureCapacity(int rows) {
+            int capacity = this.type == ColumnType.LINEAGE ? this.lengths.length
+                    : this.type == ColumnType.DOUBLE ? this.doubles.length : this.ints.length;
+            if (rows <= capacity) {
+                return;
+            }
+            int grown = Math.max(rows, capacity + (capacity >> 1));
+            switch (this.type) {
+                case DOUBLE:
+                    this.doubles = Arrays.copyOf(this.doubles, grown);
+                    break;
+                case LINEAGE:
+                    this.lengths = Arrays.copyOf(this.lengths, grown);
+                    this.ints = Arrays.copyOf(this.ints, grown * this.width);
+                    break;
+                default:
+                    this.ints = Arrays.copyOf(this.ints, grown);
+            }
+        }
+
+        private boolean parseInt(String value) {
+            try {
+                int v = Integer.parseInt(value);
+                this.scratch[0] = v;
+                return Integer.toString(v).equals(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Parse a finite number into {@link #number}, spelled in any way.
+         */
+        private boolean parseDouble(String value) {
+            try {
+                this.number = Double.parseDouble(value);
+                return !Double.isNaN(this.number) && !Double.isInfinite(this.number);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Store {@link #number}, keeping its spelling as an exception if the number format of the column
+         * does not reproduce it.
+         *
+         * @return false if there are too many exceptions
+         */
+        private boolean putDouble(int row, String value) {
+            this.doubles[row] = this.number;
+            if (CamiBinary.formatDouble(this.number, this.width).equals(value)) {
+                return true;
+            }
+            if (this.width == 0 && this.exceptions == 0) {
+                // fixed fraction digits, unless an earlier value shows otherwise
+                int dot = value.indexOf('.');
+                int width = value.length() - dot;
+                if (dot != -1 && CamiBinary.formatDouble(this.number, width).equals(value)
+                        && sameSpelling(row, width)) {
+                    this.width = width;
+                    return true;
+                }
+            }
+            if (this.exceptions >= MIN_EXCEPTIONS + (row >> 6)) {
+                return false;
+            }
+            if (this.exceptions == this.exceptionRows.length) {
+                this.exceptionRows = Arrays.copyOf(this.exceptionRows, this.exceptions << 1);
+            }
+            this.exceptionRows[this.exceptions++] = row;
+            this.values.add(value);
+            return true;
+        }
+
+        private boolean sameSpelling(int rows, int width) {
+            for (int i = 0; i < rows; i++) {
+                if (!CamiBinary.formatDouble(this.doubles[i], width).equals(
+                        CamiBinary.formatDouble(this.doubles[i], this.width))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Parse a lineage into {@link #scratch}. Empty ranks are stored as 0.
+         *
+         * @return number of ranks or -1 if the value is not a canonical lineage
+         */
+        private int parseLineage(String value) {
+            int n = 0;
+            int start = 0;
+            while (true) {
+                int end = value.indexOf('|', start);
+                String token = value.substring(start, end == -1 ? value.length() : end);
+                if (n == this.scratch.length) {
+                    this.scratch = Arrays.copyOf(this.scratch, n << 1);
+                }
+                if (token.isEmpty()) {
+                    this.scratch[n++] = 0;
+                } else {
+                    try {
+                        int v = Integer.parseInt(token);
+                        if (v <= 0 || !Integer.toString(v).equals(token)) {
+                            return -1;
+                        }
+                        this.scratch[n++] = v;
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                }
+                if (end == -1) {
+                    break;
+                }
+                start = end + 1;
+            }
+            return n > Byte.MAX_VALUE || value.isEmpty() ? -1 : n;
+        }
+
+        private boolean allPositive(int rows) {
+            for (int i = 0; i < rows; i++) {
+                if (this.ints[i] <= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void putLineage(int row, int length) {
+            System.arraycopy(this.scratch, 0, this.ints, row * this.width, length);
+            Arrays.fill(this.ints, row * this.width + length, (row + 1) * this.width, 0);
+            this.lengths[row] = (byte) length;
+        }
+
+        private void toDouble(int rows) {
+            this.doubles = new double[this.ints.length];
+            for (int i = 0; i < rows; i++) {
+                this.doubles[i] = this.ints[i];
+            }
+            this.exceptionRows = new int[16];
+            this.values = new ArrayList<>();
+            this.type = ColumnType.DOUBLE;
+        }
+
+        private void toLineage(int rows, int width) {
+            int[] values = this.ints;
+            this.width = width;
+            this.lengths = new byte[values.length];
+            this.ints = new int[values.length * width];
+            for (int i = 0; i < rows; i++) {
+                this.ints[i * width] = values[i];
+                this.lengths[i] = 1;
+            }
+            this.type = ColumnType.LINEAGE;
+        }
+
+        private void widen(int rows, int width) {
+            int[] values = this.ints;
+            this.ints = new int[this.lengths.length * width];
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(values, i * this.width, this.ints, i * width, this.width);
+            }
+            this.width = width;
+        }
+
+        private void toDictionary(int rows) {
+            String[] text = new String[rows];
+            int exception = 0;
+            for (int i = 0; i < rows; i++) {
+                switch (this.type) {
+                    case INT:
+                        text[i] = Integer.toString(this.ints[i]);
+                        break;
+                    case DOUBLE:
+                        if (exception < this.exceptions && this.exceptionRows[exception] == i) {
+                            text[i] = this.values.get(exception++);
+                        } else {
+                            text[i] = CamiBinary.formatDouble(this.doubles[i], this.width);
+                        }
+                        break;
+                    default:
+                        text[i] = CamiBinary.formatLineage(this.ints, i * this.width, this.lengths[i]);
+                }
+            }
+            int capacity = this.type == ColumnType.LINEAGE ? this.lengths.length
+                    : this.type == ColumnType.DOUBLE ? this.doubles.length : this.ints.length;
+            this.type = ColumnType.DICTIONARY;
+            this.ints = new int[capacity];
+            this.doubles = null;
+            this.lengths = null;
+            this.width = 0;
+            this.exceptionRows = null;
+            this.exceptions = 0;
+            this.dictionary = new HashMap<>();
+            this.values = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                Integer code = this.dictionary.get(text[i]);
+                if (code == null) {
+                    code = this.values.size();
+                    this.dictionary.put(text[i], code);
+                    this.values.add(text[i]);
+                }
+                this.ints[i] = code;
+            }
+        }
+
+        /**
+         * Write the column sections.
+         *
+         * @return data offset, data length, dictionary offset and dictionary length, where the dictionary
+         * section of a double column holds its exceptions
+         */
+        private long[] write(DataOutputStream out, int rows, long position) throws IOException {
+            if (this.type == null) {
+                this.type = ColumnType.INT;
+            }
+            long[] sections = new long[4];
+            sections[0] = position;
+            switch (this.type) {
+                case DOUBLE:
+                    for (int i = 0; i < rows; i++) {
+                        out.writeDouble(this.doubles[i]);
+                    }
+                    sections[1] = 8L * rows;
+                    break;
+                case LINEAGE:
+                    out.write(this.lengths, 0, rows);
+                    for (int i = 0; i < rows * this.width; i++) {
+                        out.writeInt(this.ints[i]);
+                    }
+                    sections[1] = rows + 4L * rows * this.width;
+                    break;
+                default:
+                    for (int i = 0; i < rows; i++) {
+                        out.writeInt(this.ints[i]);
+                    }
+                    sections[1] = 4L * rows;
+            }
+            sections[2] = sections[0] + sections[1];
+            if (this.type == ColumnType.DICTIONARY) {
+                List<byte[]> encoded = new ArrayList<>(this.values.size());
+                for (String value : this.values) {
+                    encoded.add(value.getBytes(StandardCharsets.UTF_8));
+                }
+                out.writeInt(encoded.size());
+                int offset = 0;
+                out.writeInt(offset);
+                for (byte[] bytes : encoded) {
+                    offset += bytes.length;
+                    out.writeInt(offset);
+                }
+                for (byte[] bytes : encoded) {
+                    out.write(bytes);
+                }
+                sections[3] = 4 + 4L * (encoded.size() + 1) + offset;
+            } else if (this.type == ColumnType.DOUBLE && this.exceptions > 0) {
+                // rows in ascending order, then their spellings as in a dictionary
+                out.writeInt(this.exceptions);
+                for (int i = 0; i < this.exceptions; i++) {
+                    out.writeInt(this.exceptionRows[i]);
+                }
+                int offset = 0;
+                out.writeInt(offset);
+                byte[][] encoded = new byte[this.exceptions][];
+                for (int i = 0; i < this.exceptions; i++) {
+                    encoded[i] = this.values.get(i).getBytes(StandardCharsets.UTF_8);
+                    offset += encoded[i].length;
+                    out.writeInt(offset);
+                }
+                for (byte[] bytes : encoded) {
+                    out.write(bytes);
+                }
+                sections[3] = 4 + 4L * this.exceptions + 4L * (this.exceptions + 1) + offset;
+            }
+            return sections;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package cami.io.concat;
 
 import cami.io.Base;
+import cami.io.LineReader;
 import cami.io.Profile;
+import cami.io.metrics.MetricsListener;
 import mzd.taxonomy.neo.NeoDao;
 
 import java.io.IOException;
@@ -17,28 +19,43 @@ public class ConcatProfilingIter extends Profile.ValidatingReader {
         super(fileName, neoDao, checkHeader);
     }
 
+    public ConcatProfilingIter(LineReader input, NeoDao neoDao, Boolean checkHeader) throws ParseException, IOException {
+        super(input, neoDao, checkHeader);
+    }
+
     @Override
     public String[] readRow() throws Base.ParseException, IOException {
-        String line = readLine();
-        if (line == null) {
-            return null;
-        }
+        String line;
+        while (true) {
+            long start = startTimer();
+            line = readLine();
+            stopTimer(MetricsListener.Stage.READ, start);
+            if (line == null) {
+                reportEnd();
+                return null;
+            }
 
-        getLogger().debug("read: [{}]", line);
+            getLogger().debug("read: [{}]", line);
 
-        if (isBlank(line) || isComment(line)) {
-            return readRow();
-        }
+            if (isBlank(line) || isComment(line)) {
+                continue;
+            }
 
-        //next profiling data started?
-        if (isHeaderLine(line)) {
-            clearHeaderInfo();
-            parseHeaderLine(line);
-            readHeader();
-            return readRow();
+            //next profiling data started?
+            if (isHeaderLine(line)) {
+                endBatch();
+                markHeader();
+                clearHeaderInfo();
+                parseHeaderLine(line);
+                readHeader();
+                continue;
+            }
+            break;
         }
 
-        String[] values = line.split(Base.DELIMITER, -1);
+        long start = startTimer();
+        String[] values = line.split(Base.DELIMITER, this.columnDefinition.size() + 1);
+        stopTimer(MetricsListener.Stage.PARSE, start);
         if (values.length != this.columnDefinition.size()) {
             throw new Base.FieldException(String.format(
                     "'incorrect number of fields for line:%d [%s]'",
@@ -49,12 +66,15 @@ public class ConcatProfilingIter extends Profile.ValidatingReader {
             // end of file reached
             return null;
         }
+        start = startTimer();
         checkInvalidRank(values[1], this.lineNumber);
         int taxId = toInt(values[0]);
         checkInvalidTAXID(taxId);
         checkInvalidTaxPath(values[2]);
-        checkInvalidPercentageNumber(values[percentageColumn]);
+        checkInvalidPercentageNumber(values[this.percentageColumn]);
+        stopTimer(MetricsListener.Stage.VALIDATE, start);
 
+        countRow();
         return values;
     }
 
@@ -62,6 +82,7 @@ public class ConcatProfilingIter extends Profile.ValidatingReader {
         try {
             Double.parseDouble(percentage);
         } catch (NumberFormatException ex) {
+            traceFailure("invalid PERCENTAGE " + percentage);
             throw new Base.FieldException(String.format(
                     "'invalid PERCENTAGE number in line:%d [%s]'",
                     lineNumber, percentage));
@@ -70,6 +91,7 @@ public class ConcatProfilingIter extends Profile.ValidatingReader {
 
     private void checkInvalidRank(String value, int lineNumber) throws FieldException {
         if (!Profile.PRO_RANKS.contains(value)) {
+            traceFailure("invalid rank " + value);
             throw new Base.FieldException(String.format("'invalid rank in line:%d [%s]'", lineNumber, value));
         }
     }
@@ -0,0 +1,223 @@
+package cami.io.convert;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.LineageTable;
+import cami.io.Profile;
+import cami.io.fasta.FastaIndex;
+import cami.io.util.IntIntMap;
+
+/**
+ * Streams taxonomic binning rows into a profile.
+ * <p/>
+ * While reading, each row only increments the counter of its TAXID, so memory grows with the number of
+ * distinct TAXIDs rather than with the number of sequences. Counters are sequences, or base pairs when a
+ * {@link FastaIndex} is given. On {@link #write(Profile.Writer)} the counters are rolled up the taxonomy
+ * once, resolving the lineage of each distinct TAXID a single time from a {@link LineageTable}, and the
+ * profile is written rank by rank with TAXPATH and TAXPATHSN.
+ * <p/>
+ * PERCENTAGE is relative to all counted rows, so sequences without a TAXID, or with a TAXID unknown to the
+ * lineage table, lower the sum of each rank below 100.
+ */
+public class BinningToProfile {
+    private final LineageTable lineages;
+    private final FastaIndex lengths;
+    // TAXID to slot in weights
+    private final IntIntMap taxa = new IntIntMap(1 << 10);
+    private long[] weights = new long[1 << 10];
+    private long total = 0;
+    private long unassigned = 0;
+    private long missingLengths = 0;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Converter weighting every sequence equally.
+     */
+    public BinningToProfile(LineageTable lineages) {
+        this(lineages, null);
+    }
+
+    /**
+     * @param lineages the taxonomy used to roll up TAXIDs
+     * @param lengths  sequence lengths to weight rows by base pairs, or null to count sequences
+     */
+    public BinningToProfile(LineageTable lineages, FastaIndex lengths) {
+        this.lineages = lineages;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Count the remaining rows of an open reader. The reader is not closed.
+     *
+     * @param reader an open binning reader
+     * @throws Base.ParseException invalid input or missing columns
+     * @throws IOException         error reading from file
+     */
+    public void addAll(Base.Reader reader) throws Base.ParseException, IOException {
+        List<String> columns = reader.getColumnDefinition();
+        int seqIndex = columns.indexOf(Binning.SEQUENCEID);
+        int taxIndex = columns.indexOf(Binning.TAXID);
+        if (taxIndex == -1) {
+            throw new Base.FieldException(String.format("no TAXID column in %s", columns));
+        }
+        if (this.lengths != null && seqIndex == -1) {
+            throw new Base.FieldException(String.format("no SEQUENCEID column in %s", columns));
+        }
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            int taxId;
+            try {
+                taxId = row[taxIndex].isEmpty() ? 0 : Base.toInt(row[taxIndex]);
+            } catch (NumberFormatException e) {
+                throw new Base.FieldException(String.format("invalid TAXID [%s]", row[taxIndex]));
+            }
+            add(seqIndex != -1 ? row[seqIndex] : null, taxId);
+        }
+        if (this.missingLengths > 0) {
+            getLogger().warn("{} sequences are missing from the FASTA index and were not counted",
+                    this.missingLengths);
+        }
+    }
+
+    /**
+     * Count a single assignment.
+     *
+     * @param sequenceId the sequence, only used for base pair weighting
+     * @param taxId      the assigned taxon, non-positive if the sequence is unassigned
+     */
+    public void add(String sequenceId, int taxId) {
+        long weight = 1;
+        if (this.lengths != null) {
+            weight = this.lengths.getLength(sequenceId);
+            if (weight == FastaIndex.MISSING) {
+                this.missingLengths++;
+                return;
+            }
+        }
+        this.total += weight;
+        if (taxId <= 0) {
+            this.unassigned += weight;
+            return;
+        }
+        int slot = this.taxa.get(taxId, -1);
+        if (slot == -1) {
+            slot = this.taxa.size();
+            this.taxa.put(taxId, slot);
+            if (slot == this.weights.length) {
+                this.weights = Arrays.copyOf(this.weights, slot << 1);
+            }
+        }
+        this.weights[slot] += weight;
+    }
+
+    /**
+     * Roll up the counters and write the profile, superkingdom first and by TAXID within a rank.
+     * The writer must have been created with {@link Profile#COLUMNDEF_TAXPATH_SN} and its header
+     * fields set; the header is written here. The writer is not closed. Unless the writer was given a digit
+     * count, the computed percentages are rounded to {@link Base.Writer#FRACTION_DIGITS} digits.
+     *
+     * @param writer the profile writer
+     * @throws Base.ParseException invalid header or column definition
+     * @throws IOException         error writing to file
+     */
+    public void write(final Profile.Writer writer) throws Base.ParseException, IOException {
+        final int ranks = Profile.RANK_NAMES.length;
+        final int[] lineage = new int[ranks];
+        // rolled up weight of every taxon at a CAMI rank
+        final IntIntMap rolled = new IntIntMap(this.taxa.size() << 1);
+        final long[][] rolledWeights = {new long[Math.max(16, this.taxa.size() << 1)]};
+        final long[] unknown = {0};
+        this.taxa.forEach(new IntIntMap.Visitor() {
+            @Override
+            public void visit(int taxId, int slot) {
+                if (lineages.getLineage(taxId, lineage) == LineageTable.NO_RANK) {
+                    unknown[0] += weights[slot];
+                    return;
+                }
+                for (int rank = 0; rank < ranks; rank++) {
+                    if (lineage[rank] == 0) {
+                        continue;
+                    }
+                    int r = rolled.get(lineage[rank], -1);
+                    if (r == -1) {
+                        r = rolled.size();
+                        rolled.put(lineage[rank], r);
+                        if (r == rolledWeights[0].length) {
+                            rolledWeights[0] = Arrays.copyOf(rolledWeights[0], r << 1);
+                        }
+                    }
+                    rolledWeights[0][r] += weights[slot];
+                }
+            }
+        });
+        if (unknown[0] > 0) {
+            getLogger().warn("weight {} assigned to TAXIDs without a CAMI lineage was not profiled", unknown[0]);
+        }
+
+        int fractionDigits = writer.getFractionDigits();
+        if (fractionDigits == Base.Writer.SHORTEST) {
+            writer.setFractionDigits(Base.Writer.FRACTION_DIGITS);
+        }
+        try {
+            writeRows(writer, rolled, rolledWeights[0]);
+        } finally {
+            writer.setFractionDigits(fractionDigits);
+        }
+    }
+
+    private void writeRows(Profile.Writer writer, IntIntMap rolled, long[] rolledWeights)
+            throws Base.ParseException, IOException {
+        final int ranks = Profile.RANK_NAMES.length;
+        int[] rolledTaxa = rolled.keys();
+        Arrays.sort(rolledTaxa);
+        int[] lineageRanks = new int[ranks];
+        String[] names = new String[ranks];
+        writer.writeHeader();
+        for (int rank = 0; rank < ranks; rank++) {
+            for (int taxId : rolledTaxa) {
+                if (this.lineages.getRank(taxId) != rank) {
+                    continue;
+                }
+                this.lineages.getLineage(taxId, lineageRanks);
+                for (int r = 0; r < ranks; r++) {
+                    names[r] = lineageRanks[r] == 0 ? null : this.lineages.getName(lineageRanks[r]);
+                }
+                double percentage = 100.0 * rolledWeights[rolled.get(taxId, -1)] / this.total;
+                writer.writeProfileRow(taxId, rank, Arrays.copyOf(lineageRanks, rank + 1),
+                        Arrays.copyOf(names, rank + 1), percentage);
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct TAXIDs counted
+     */
+    public int getTaxonCount() {
+        return this.taxa.size();
+    }
+
+    /**
+     * @return the total weight of all counted rows
+     */
+    public long getTotalWeight() {
+        return this.total;
+    }
+
+    /**
+     * @return the weight of rows without a TAXID
+     */
+    public long getUnassignedWeight() {
+        return this.unassigned;
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+}
@@ -0,0 +1,360 @@
+package cami.io.eval;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.fasta.FastaIndex;
+import cami.io.util.LongIntMap;
+import cami.io.util.StringDictionary;
+
+/**
+ * Compares binning submissions with a gold standard binning.
+ * <p/>
+ * The gold standard is read once into primitive arrays: SEQUENCEIDs are interned and each sequence code
+ * maps to a genome code (the gold BINID, or the TAXID when there is no BINID column) and a weight. Weights
+ * are 1 per sequence, or its length when a {@link FastaIndex} is given. The gold standard is read-only
+ * afterwards, so submissions can be evaluated concurrently with {@link #evaluateAll(List, boolean, int)}.
+ * <p/>
+ * Each submission is streamed once into a sparse bin by genome contingency table from which all metrics
+ * are computed in one walk:
+ * <ul>
+ * <li>purity of a bin: weight of its majority genome over its size, averaged over bins</li>
+ * <li>completeness of a genome: weight in its best bin over its gold size, averaged over gold genomes</li>
+ * <li>precision: summed majority weights over the total weight binned</li>
+ * <li>recall: summed best-bin weights over the total gold weight</li>
+ * <li>adjusted Rand index over the binned sequences known to the gold standard</li>
+ * </ul>
+ * Sequences unknown to the gold standard are counted but excluded from all metrics.
+ */
+public class BinningEvaluator {
+    private final StringDictionary sequences = new StringDictionary(1 << 16);
+    private final StringDictionary genomes = new StringDictionary();
+    private int[] genomeOf = new int[1 << 16];
+    private long[] weightOf = new long[1 << 16];
+    private long[] genomeSizes;
+    private long totalWeight = 0;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param goldStandard the gold standard binning
+     * @param checkHeader  check mandatory header fields
+     * @param lengths      sequence lengths to weight by base pairs, or null to count sequences
+     */
+    public BinningEvaluator(String goldStandard, boolean checkHeader, FastaIndex lengths)
+            throws Base.ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(goldStandard, checkHeader);
+        try {
+            load(reader, lengths);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Load the gold standard from an open reader. The reader is not closed.
+     *
+     * @param reader  an open binning reader over the gold standard
+     * @param lengths sequence lengths to weight by base pairs, or null to count sequences
+     */
+    public BinningEvaluator(Base.Reader reader, FastaIndex lengths) throws Base.ParseException, IOException {
+        load(reader, lengths);
+    }
+
+    private void load(Base.Reader reader, FastaIndex lengths) throws Base.ParseException, IOException {
+        List<String> columns = reader.getColumnDefinition();
+        int seqIndex = columns.indexOf(Binning.SEQUENCEID);
+        int genomeIndex = columns.contains(Binning.BINID) ? columns.indexOf(Binning.BINID)
+                : columns.indexOf(Binning.TAXID);
+        if (seqIndex == -1 || genomeIndex == -1) {
+            throw new Base.FieldException(String.format("gold standard needs SEQUENCEID and BINID or TAXID, found %s",
+                    columns));
+        }
+        int duplicates = 0;
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            int known = this.sequences.size();
+            int seq = this.sequences.add(row[seqIndex]);
+            if (seq < known) {
+                duplicates++;
+            } else if (seq == this.genomeOf.length) {
+                this.genomeOf = Arrays.copyOf(this.genomeOf, seq << 1);
+                this.weightOf = Arrays.copyOf(this.weightOf, seq << 1);
+            }
+            long weight = 1;
+            if (lengths != null) {
+                weight = lengths.getLength(row[seqIndex]);
+                if (weight == FastaIndex.MISSING) {
+                    throw new Base.FieldException(String.format("no length for gold standard sequence [%s]",
+                            row[seqIndex]));
+                }
+            }
+            this.genomeOf[seq] = this.genomes.add(row[genomeIndex]);
+            this.weightOf[seq] = weight;
+        }
+        if (duplicates > 0) {
+            getLogger().warn("{} duplicate SEQUENCEIDs in gold standard, the last assignment is kept", duplicates);
+        }
+        this.genomeSizes = new long[this.genomes.size()];
+        for (int seq = 0; seq < this.sequences.size(); seq++) {
+            this.genomeSizes[this.genomeOf[seq]] += this.weightOf[seq];
+            this.totalWeight += this.weightOf[seq];
+        }
+    }
+
+    /**
+     * Read and evaluate a submission.
+     *
+     * @param fileName    the submitted binning
+     * @param checkHeader check mandatory header fields
+     * @return the metrics of the submission
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading from file
+     */
+    public Metrics evaluate(String fileName, boolean checkHeader) throws Base.ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(fileName, checkHeader);
+        try {
+            return evaluate(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Evaluate the remaining rows of an open reader. The reader is not closed.
+     *
+     * @param reader an open binning reader over the submission
+     * @return the metrics of the submission
+     * @throws Base.ParseException invalid input or missing columns
+     * @throws IOException         error reading from file
+     */
+    public Metrics evaluate(Base.Reader reader) throws Base.ParseException, IOException {
+        List<String> columns = reader.getColumnDefinition();
+        int seqIndex = columns.indexOf(Binning.SEQUENCEID);
+        int binIndex = columns.contains(Binning.BINID) ? columns.indexOf(Binning.BINID)
+                : columns.indexOf(Binning.TAXID);
+        if (seqIndex == -1 || binIndex == -1) {
+            throw new Base.FieldException(String.format("submission needs SEQUENCEID and BINID or TAXID, found %s",
+                    columns));
+        }
+        StringDictionary bins = new StringDictionary();
+        // (bin, genome) to slot in cells
+        LongIntMap contingency = new LongIntMap(1 << 10);
+        long[] cells = new long[1 << 10];
+        long unknown = 0;
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            int seq = this.sequences.code(row[seqIndex]);
+            if (seq == -1) {
+                unknown++;
+                continue;
+            }
+            if (row[binIndex].isEmpty()) {
+                continue;
+            }
+            long pair = ((long) bins.add(row[binIndex]) << 32) | this.genomeOf[seq];
+            int slot = contingency.get(pair, -1);
+            if (slot == -1) {
+                slot = contingency.size();
+                contingency.put(pair, slot);
+                if (slot == cells.length) {
+                    cells = Arrays.copyOf(cells, slot << 1);
+                }
+            }
+            cells[slot] += this.weightOf[seq];
+        }
+        return summarize(bins.size(), contingency, cells, unknown);
+    }
+
+    private Metrics summarize(int binCount, LongIntMap contingency, final long[] cells, long unknown) {
+        final long[] binSizes = new long[binCount];
+        final long[] binMajority = new long[binCount];
+        final long[] genomeBest = new long[this.genomeSizes.length];
+        final long[] genomeBinned = new long[this.genomeSizes.length];
+        // [0] sum of pairs within cells
+        final double[] pairs = new double[1];
+        contingency.forEach(new LongIntMap.Visitor() {
+            @Override
+            public void visit(long pair, int slot) {
+                int bin = (int) (pair >>> 32);
+                int genome = (int) pair;
+                long n = cells[slot];
+                binSizes[bin] += n;
+                binMajority[bin] = Math.max(binMajority[bin], n);
+                genomeBest[genome] = Math.max(genomeBest[genome], n);
+                genomeBinned[genome] += n;
+                pairs[0] += choose2(n);
+            }
+        });
+
+        Metrics metrics = new Metrics();
+        metrics.bins = binCount;
+        metrics.unknownSequences = unknown;
+        long binned = 0;
+        long majority = 0;
+        double binPairs = 0;
+        double purity = 0;
+        for (int bin = 0; bin < binCount; bin++) {
+            binned += binSizes[bin];
+            majority += binMajority[bin];
+            binPairs += choose2(binSizes[bin]);
+            purity += binSizes[bin] > 0 ? (double) binMajority[bin] / binSizes[bin] : 0.0;
+        }
+        long best = 0;
+        double genomePairs = 0;
+        double completeness = 0;
+        for (int genome = 0; genome < this.genomeSizes.length; genome++) {
+            best += genomeBest[genome];
+            genomePairs += choose2(genomeBinned[genome]);
+            completeness += this.genomeSizes[genome] > 0 ? (double) genomeBest[genome] / this.genomeSizes[genome] : 0.0;
+        }
+        metrics.binnedWeight = binned;
+        metrics.purity = binCount > 0 ? purity / binCount : Double.NaN;
+        metrics.completeness = this.genomeSizes.length > 0 ? completeness / this.genomeSizes.length : Double.NaN;
+        metrics.precision = binned > 0 ? (double) majority / binned : Double.NaN;
+        metrics.recall = this.totalWeight > 0 ? (double) best / this.totalWeight : Double.NaN;
+
+        double expected = binned > 1 ? binPairs * genomePairs / choose2(binned) : 0.0;
+        double maximum = 0.5 * (binPairs + genomePairs);
+        metrics.adjustedRandIndex = maximum - expected != 0 ? (pairs[0] - expected) / (maximum - expected) : 1.0;
+        return metrics;
+    }
+
+    private static double choose2(long n) {
+        return n * (n - 1) / 2.0;
+    }
+
+    /**
+     * Evaluate several submissions concurrently. All submissions share this gold standard.
+     *
+     * @param fileNames   the submitted binnings
+     * @param checkHeader check mandatory header fields
+     * @param threads     the number of submissions evaluated at once
+     * @return the metrics of each submission in the order given
+     * @throws Base.ParseException a submission is invalid
+     * @throws IOException         error reading a submission
+     */
+    public List<Metrics> evaluateAll(List<String> fileNames, final boolean checkHeader, int threads)
+            throws Base.ParseException, IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<Metrics>> pending = new ArrayList<>();
+        try {
+            for (final String fileName : fileNames) {
+                pending.add(pool.submit(new Callable<Metrics>() {
+                    @Override
+                    public Metrics call() throws Base.ParseException, IOException {
+                        return evaluate(fileName, checkHeader);
+                    }
+                }));
+            }
+            List<Metrics> results = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    results.add(pending.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Base.ParseException) {
+                        throw (Base.ParseException) e.getCause();
+                    }
+                    throw new IOException(String.format("failed to evaluate %s", fileNames.get(i)), e.getCause());
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while evaluating submissions");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the number of sequences in the gold standard
+     */
+    public int getSequenceCount() {
+        return this.sequences.size();
+    }
+
+    /**
+     * @return the number of genomes in the gold standard
+     */
+    public int getGenomeCount() {
+        return this.genomes.size();
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Metrics of one submission.
+     */
+    public static class Metrics {
+        private int bins;
+        private long binnedWeight;
+        private long unknownSequences;
+        private double purity;
+        private double completeness;
+        private double precision;
+        private double recall;
+        private double adjustedRandIndex;
+
+        private Metrics() {
+        }
+
+        public int getBinCount() {
+            return bins;
+        }
+
+        /**
+         * @return the weight of binned sequences known to the gold standard
+         */
+        public long getBinnedWeight() {
+            return binnedWeight;
+        }
+
+        /**
+         * @return the number of rows whose sequence is not in the gold standard
+         */
+        public long getUnknownSequenceCount() {
+            return unknownSequences;
+        }
+
+        public double getAveragePurity() {
+            return purity;
+        }
+
+        public double getAverageCompleteness() {
+            return completeness;
+        }
+
+        public double getPrecision() {
+            return precision;
+        }
+
+        public double getRecall() {
+            return recall;
+        }
+
+        public double getAdjustedRandIndex() {
+            return adjustedRandIndex;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("bins=%d purity=%.5f completeness=%.5f precision=%.5f recall=%.5f ARI=%.5f",
+                    bins, purity, completeness, precision, recall, adjustedRandIndex);
+        }
+    }
+}
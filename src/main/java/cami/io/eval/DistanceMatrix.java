@@ -0,0 +1,310 @@
+package cami.io.eval;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+import cami.io.Base;
+import cami.io.Profile;
+
+/**
+ * Pairwise distances between many profiles.
+ * <p/>
+ * Every profile is read once into a {@link SparseProfile}. The upper triangle of the matrix is split
+ * recursively into tiles of at most {@link #TILE} by {@link #TILE} pairs which are computed on a
+ * {@link ForkJoinPool}, so that neighbouring pairs share profiles in cache. Distances are kept as a packed
+ * upper triangle of {@code n(n-1)/2} doubles and can be written as a tab-separated table or in a compact
+ * binary form.
+ */
+public class DistanceMatrix {
+    public final static int TILE = 32;
+    private final static byte[] MAGIC = {'C', 'A', 'M', 'I', 'D', 'S', 'T', 1};
+
+    /**
+     * Distances between profiles. {@link #L1} and {@link #BRAY_CURTIS} compare a single rank,
+     * {@link #UNIFRAC} is the weighted UniFrac over all ranks as defined by {@link ProfileEvaluator}.
+     */
+    public enum Metric {
+        L1, BRAY_CURTIS, UNIFRAC
+    }
+
+    private final String[] names;
+    private final double[] distances;
+
+    private DistanceMatrix(String[] names, double[] distances) {
+        this.names = names;
+        this.distances = distances;
+    }
+
+    /**
+     * Read profiles and compute their distance matrix.
+     *
+     * @param fileNames   the profiles, also used as row and column names
+     * @param checkHeader check mandatory header fields
+     * @param metric      the distance
+     * @param rank        the rank ordinal of {@link Profile#RANK_NAMES}, ignored for {@link Metric#UNIFRAC}
+     * @param threads     the parallelism of reading and computing
+     * @return the distance matrix
+     * @throws Base.ParseException a profile is invalid
+     * @throws IOException         error reading a profile
+     */
+    public static DistanceMatrix compute(final List<String> fileNames, final boolean checkHeader, Metric metric,
+                                         int rank, int threads) throws Base.ParseException, IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            List<Future<SparseProfile>> pending = new ArrayList<>();
+            for (final String fileName : fileNames) {
+                pending.add(pool.submit(new Callable<SparseProfile>() {
+                    @Override
+                    public SparseProfile call() throws Base.ParseException, IOException {
+                        return new SparseProfile(ProfileVector.load(fileName, checkHeader));
+                    }
+                }));
+            }
+            SparseProfile[] profiles = new SparseProfile[fileNames.size()];
+            for (int i = 0; i < profiles.length; i++) {
+                try {
+                    profiles[i] = pending.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Base.ParseException) {
+                        throw (Base.ParseException) e.getCause();
+                    }
+                    throw new IOException(String.format("failed to read %s", fileNames.get(i)), e.getCause());
+                }
+            }
+            return compute(fileNames.toArray(new String[0]), profiles, metric, rank, pool);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading profiles");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Compute the distance matrix of loaded profiles.
+     *
+     * @param names    the row and column names
+     * @param vectors  the profiles
+     * @param metric   the distance
+     * @param rank     the rank ordinal of {@link Profile#RANK_NAMES}, ignored for {@link Metric#UNIFRAC}
+     * @param threads  the parallelism
+     * @return the distance matrix
+     */
+    public static DistanceMatrix compute(List<String> names, List<ProfileVector> vectors, Metric metric, int rank,
+                                         int threads) {
+        SparseProfile[] profiles = new SparseProfile[vectors.size()];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = new SparseProfile(vectors.get(i));
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            return compute(names.toArray(new String[0]), profiles, metric, rank, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static DistanceMatrix compute(String[] names, SparseProfile[] profiles, Metric metric, int rank,
+                                          ForkJoinPool pool) {
+        if (names.length != profiles.length) {
+            throw new IllegalArgumentException("number of names and profiles differ");
+        }
+        if (metric != Metric.UNIFRAC && (rank < 0 || rank >= Profile.RANK_NAMES.length)) {
+            throw new IllegalArgumentException("invalid rank ordinal " + rank);
+        }
+        int n = profiles.length;
+        double[] distances = new double[(int) ((long) n * (n - 1) / 2)];
+        pool.invoke(new Tile(profiles, distances, metric, rank, 0, n, 0, n));
+        return new DistanceMatrix(names, distances);
+    }
+
+    private static double distance(SparseProfile a, SparseProfile b, Metric metric, int rank) {
+        switch (metric) {
+            case L1:
+                return a.l1(b, rank);
+            case BRAY_CURTIS:
+                double total = a.getSum(rank) + b.getSum(rank);
+                return total > 0 ? a.l1(b, rank) / total : 0.0;
+            default:
+                double sum = 0.0;
+                for (int r = 0; r < Profile.RANK_NAMES.length; r++) {
+                    sum += a.l1(b, r);
+                }
+                return sum;
+        }
+    }
+
+    /**
+     * @return the offset of the pair (i, j), i &lt; j, in the packed upper triangle
+     */
+    private static int offset(int n, int i, int j) {
+        return (int) ((long) i * n - (long) i * (i + 1) / 2 + (j - i - 1));
+    }
+
+    /**
+     * The pairs of rows [rowFrom, rowTo) and columns [colFrom, colTo) above the diagonal.
+     */
+    private static class Tile extends RecursiveAction {
+        private static final long serialVersionUID = -2270473310283861528L;
+
+        private final SparseProfile[] profiles;
+        private final double[] distances;
+        private final Metric metric;
+        private final int rank;
+        private final int rowFrom;
+        private final int rowTo;
+        private final int colFrom;
+        private final int colTo;
+
+        private Tile(SparseProfile[] profiles, double[] distances, Metric metric, int rank, int rowFrom, int rowTo,
+                     int colFrom, int colTo) {
+            this.profiles = profiles;
+            this.distances = distances;
+            this.metric = metric;
+            this.rank = rank;
+            this.rowFrom = rowFrom;
+            this.rowTo = rowTo;
+            this.colFrom = colFrom;
+            this.colTo = colTo;
+        }
+
+        @Override
+        protected void compute() {
+            // tiles entirely on or below the diagonal hold no pairs
+            if (this.colTo <= this.rowFrom + 1) {
+                return;
+            }
+            int rows = this.rowTo - this.rowFrom;
+            int cols = this.colTo - this.colFrom;
+            if (rows <= TILE && cols <= TILE) {
+                int n = this.profiles.length;
+                for (int i = this.rowFrom; i < this.rowTo; i++) {
+                    for (int j = Math.max(this.colFrom, i + 1); j < this.colTo; j++) {
+                        this.distances[offset(n, i, j)] = distance(this.profiles[i], this.profiles[j], this.metric,
+                                this.rank);
+                    }
+                }
+            } else if (rows >= cols) {
+                int mid = this.rowFrom + rows / 2;
+                invokeAll(new Tile(this.profiles, this.distances, this.metric, this.rank, this.rowFrom, mid,
+                                this.colFrom, this.colTo),
+                        new Tile(this.profiles, this.distances, this.metric, this.rank, mid, this.rowTo,
+                                this.colFrom, this.colTo));
+            } else {
+                int mid = this.colFrom + cols / 2;
+                invokeAll(new Tile(this.profiles, this.distances, this.metric, this.rank, this.rowFrom, this.rowTo,
+                                this.colFrom, mid),
+                        new Tile(this.profiles, this.distances, this.metric, this.rank, this.rowFrom, this.rowTo,
+                                mid, this.colTo));
+            }
+        }
+    }
+
+    /**
+     * @return the distance between two profiles, 0 on the diagonal
+     */
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        return i < j ? this.distances[offset(size(), i, j)] : this.distances[offset(size(), j, i)];
+    }
+
+    public int size() {
+        return this.names.length;
+    }
+
+    public String getName(int i) {
+        return this.names[i];
+    }
+
+    /**
+     * Write the full symmetric matrix with a header row and a name column.
+     *
+     * @param fileName the file to create
+     * @throws IOException error writing to file
+     */
+    public void writeTsv(String fileName) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 16)) {
+            for (String name : this.names) {
+                out.write(Base.DELIMITER);
+                out.write(name);
+            }
+            out.write('\n');
+            for (int i = 0; i < size(); i++) {
+                out.write(this.names[i]);
+                for (int j = 0; j < size(); j++) {
+                    out.write(Base.DELIMITER);
+                    out.write(Double.toString(get(i, j)));
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Write the names and the packed upper triangle in big-endian binary form.
+     *
+     * @param fileName the file to create
+     * @throws IOException error writing to file
+     */
+    public void writeBinary(String fileName) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(fileName), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeInt(this.names.length);
+            for (String name : this.names) {
+                out.writeUTF(name);
+            }
+            for (double distance : this.distances) {
+                out.writeDouble(distance);
+            }
+        }
+    }
+
+    /**
+     * Read a matrix written by {@link #writeBinary(String)}.
+     *
+     * @param fileName the binary matrix
+     * @return the distance matrix
+     * @throws IOException error reading or not a distance matrix
+     */
+    public static DistanceMatrix readBinary(String fileName) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(fileName), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(String.format("%s is not a distance matrix", fileName));
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            double[] distances = new double[(int) ((long) names.length * (names.length - 1) / 2)];
+            for (int i = 0; i < distances.length; i++) {
+                distances[i] = in.readDouble();
+            }
+            return new DistanceMatrix(names, distances);
+        }
+    }
+}
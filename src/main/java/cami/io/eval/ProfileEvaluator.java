@@ -0,0 +1,167 @@
+package cami.io.eval;
+
+import java.io.IOException;
+
+import cami.io.Base;
+import cami.io.Profile;
+
+/**
+ * Compares profile submissions with a gold standard.
+ * <p/>
+ * The gold standard is loaded once and shared read-only, so a single evaluator can score any number of
+ * submissions, also from several threads at once. Each submission is read in a single pass into a
+ * {@link ProfileVector}; all metrics are then computed from one walk over its taxa per rank.
+ * <p/>
+ * Per rank, with abundances as fractions:
+ * <ul>
+ * <li>L1 norm: sum of absolute abundance differences over the union of taxa</li>
+ * <li>Bray-Curtis dissimilarity: the L1 norm divided by the summed abundances of both profiles</li>
+ * <li>precision and recall: of the taxa with a positive abundance, ignoring abundances</li>
+ * </ul>
+ * Weighted UniFrac is the earth mover's distance on the taxonomy with unit branch lengths. As each rank of
+ * a CAMI profile reports the cumulative abundance of its subtree, the mass flowing over the edge above a
+ * taxon is its reported abundance, and the distance is the sum of the per-rank L1 norms.
+ */
+public class ProfileEvaluator {
+    private final ProfileVector gold;
+
+    public ProfileEvaluator(ProfileVector gold) {
+        this.gold = gold;
+    }
+
+    /**
+     * @param goldStandard the gold standard profile
+     * @param checkHeader  check mandatory header fields
+     */
+    public ProfileEvaluator(String goldStandard, boolean checkHeader) throws Base.ParseException, IOException {
+        this(ProfileVector.load(goldStandard, checkHeader));
+    }
+
+    /**
+     * Read and evaluate a submission.
+     *
+     * @param fileName    the submitted profile
+     * @param checkHeader check mandatory header fields
+     * @return the metrics of the submission
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading from file
+     */
+    public Metrics evaluate(String fileName, boolean checkHeader) throws Base.ParseException, IOException {
+        return evaluate(ProfileVector.load(fileName, checkHeader));
+    }
+
+    /**
+     * Evaluate a loaded submission.
+     *
+     * @param submission the submitted profile
+     * @return the metrics of the submission
+     */
+    public Metrics evaluate(ProfileVector submission) {
+        int ranks = Profile.RANK_NAMES.length;
+        final Metrics metrics = new Metrics(ranks);
+        for (int rank = 0; rank < ranks; rank++) {
+            final int r = rank;
+            // [0] L1 over submitted taxa, [1] gold abundance of submitted taxa, [2] true and [3] false positives
+            final double[] sums = new double[4];
+            submission.forEach(rank, new ProfileVector.Visitor() {
+                @Override
+                public void visit(int taxId, double abundance) {
+                    double expected = gold.getAbundance(r, taxId);
+                    sums[0] += Math.abs(abundance - expected);
+                    sums[1] += expected;
+                    if (abundance > 0) {
+                        if (expected > 0) {
+                            sums[2]++;
+                        } else {
+                            sums[3]++;
+                        }
+                    }
+                }
+            });
+            double l1 = sums[0] + this.gold.getSum(rank) - sums[1];
+            double total = this.gold.getSum(rank) + submission.getSum(rank);
+            int truePositives = (int) sums[2];
+            metrics.l1[rank] = l1;
+            metrics.brayCurtis[rank] = total > 0 ? l1 / total : 0.0;
+            metrics.truePositives[rank] = truePositives;
+            metrics.falsePositives[rank] = (int) sums[3];
+            metrics.falseNegatives[rank] = this.gold.getPositiveCount(rank) - truePositives;
+            metrics.weightedUnifrac += l1;
+        }
+        return metrics;
+    }
+
+    public ProfileVector getGoldStandard() {
+        return gold;
+    }
+
+    /**
+     * Metrics of one submission, per rank ordinal of {@link Profile#RANK_NAMES}.
+     */
+    public static class Metrics {
+        private final double[] l1;
+        private final double[] brayCurtis;
+        private final int[] truePositives;
+        private final int[] falsePositives;
+        private final int[] falseNegatives;
+        private double weightedUnifrac = 0.0;
+
+        private Metrics(int ranks) {
+            this.l1 = new double[ranks];
+            this.brayCurtis = new double[ranks];
+            this.truePositives = new int[ranks];
+            this.falsePositives = new int[ranks];
+            this.falseNegatives = new int[ranks];
+        }
+
+        public double getL1(int rank) {
+            return l1[rank];
+        }
+
+        public double getBrayCurtis(int rank) {
+            return brayCurtis[rank];
+        }
+
+        /**
+         * @return the precision at a rank, NaN if the submission reports no taxa there
+         */
+        public double getPrecision(int rank) {
+            int predicted = truePositives[rank] + falsePositives[rank];
+            return predicted > 0 ? (double) truePositives[rank] / predicted : Double.NaN;
+        }
+
+        /**
+         * @return the recall at a rank, NaN if the gold standard has no taxa there
+         */
+        public double getRecall(int rank) {
+            int expected = truePositives[rank] + falseNegatives[rank];
+            return expected > 0 ? (double) truePositives[rank] / expected : Double.NaN;
+        }
+
+        public int getTruePositives(int rank) {
+            return truePositives[rank];
+        }
+
+        public int getFalsePositives(int rank) {
+            return falsePositives[rank];
+        }
+
+        public int getFalseNegatives(int rank) {
+            return falseNegatives[rank];
+        }
+
+        public double getWeightedUnifrac() {
+            return weightedUnifrac;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int rank = 0; rank < l1.length; rank++) {
+                sb.append(String.format("%s\tL1=%.5f\tBC=%.5f\tprecision=%.5f\trecall=%.5f%n",
+                        Profile.RANK_NAMES[rank], l1[rank], brayCurtis[rank], getPrecision(rank), getRecall(rank)));
+            }
+            return sb.append(String.format("weighted UniFrac=%.5f", weightedUnifrac)).toString();
+        }
+    }
+}
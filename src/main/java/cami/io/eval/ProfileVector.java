@@ -0,0 +1,148 @@
+package cami.io.eval;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import cami.io.Base;
+import cami.io.Profile;
+import cami.io.util.IntIntMap;
+
+/**
+ * Relative abundances of a profile as one sparse vector per rank, indexed by taxid.
+ * <p/>
+ * A profile is read once; each rank keeps a primitive map from taxid to a slot in a {@code double}
+ * array. PERCENTAGE values are stored as fractions. Rows repeating a taxid at the same rank are summed.
+ * Once loaded a vector is not modified, so it may be shared between threads, for example as the gold
+ * standard of a {@link ProfileEvaluator}.
+ */
+public class ProfileVector {
+    private final IntIntMap[] slots = new IntIntMap[Profile.RANK_NAMES.length];
+    private final double[][] abundances = new double[Profile.RANK_NAMES.length][];
+    private final double[] sums = new double[Profile.RANK_NAMES.length];
+    private final int[] positives = new int[Profile.RANK_NAMES.length];
+
+    private ProfileVector() {
+        for (int rank = 0; rank < this.slots.length; rank++) {
+            this.slots[rank] = new IntIntMap();
+            this.abundances[rank] = new double[16];
+        }
+    }
+
+    /**
+     * Read a profile file.
+     *
+     * @param fileName    the profile
+     * @param checkHeader check mandatory header fields
+     * @return the abundance vectors of the profile
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading from file
+     */
+    public static ProfileVector load(String fileName, boolean checkHeader) throws Base.ParseException, IOException {
+        Profile.Reader reader = new Profile.Reader(fileName, checkHeader);
+        try {
+            return load(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Drain an open profile reader. The reader is not closed.
+     *
+     * @param reader an open profile reader
+     * @return the abundance vectors of the profile
+     * @throws Base.ParseException invalid input or missing columns
+     * @throws IOException         error reading from file
+     */
+    public static ProfileVector load(Base.Reader reader) throws Base.ParseException, IOException {
+        List<String> columns = reader.getColumnDefinition();
+        int taxIndex = columns.indexOf(Profile.TAXID_COL_DEF);
+        int rankIndex = columns.indexOf(Profile.RANKS_COL_DEF);
+        int percentageIndex = columns.indexOf(Profile.PERCENTAGE_COL_DEF);
+        if (taxIndex == -1 || rankIndex == -1 || percentageIndex == -1) {
+            throw new Base.FieldException(String.format("no TAXID, RANK or PERCENTAGE column in %s", columns));
+        }
+        List<String> ranks = Arrays.asList(Profile.RANK_NAMES);
+        ProfileVector vector = new ProfileVector();
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            int rank = ranks.indexOf(row[rankIndex]);
+            if (rank == -1) {
+                throw new Base.FieldException(String.format("invalid rank [%s]", row[rankIndex]));
+            }
+            try {
+                vector.add(rank, Base.toInt(row[taxIndex]), Double.parseDouble(row[percentageIndex]) / 100.0);
+            } catch (NumberFormatException e) {
+                throw new Base.FieldException(String.format("invalid TAXID or PERCENTAGE in %s",
+                        Arrays.toString(row)));
+            }
+        }
+        return vector;
+    }
+
+    private void add(int rank, int taxId, double abundance) {
+        IntIntMap map = this.slots[rank];
+        int slot = map.get(taxId, -1);
+        if (slot == -1) {
+            slot = map.size();
+            map.put(taxId, slot);
+            if (slot == this.abundances[rank].length) {
+                this.abundances[rank] = Arrays.copyOf(this.abundances[rank], slot << 1);
+            }
+        }
+        double before = this.abundances[rank][slot];
+        this.abundances[rank][slot] = before + abundance;
+        if (before <= 0 && before + abundance > 0) {
+            this.positives[rank]++;
+        } else if (before > 0 && before + abundance <= 0) {
+            this.positives[rank]--;
+        }
+        this.sums[rank] += abundance;
+    }
+
+    /**
+     * @return the abundance of a taxon as a fraction, 0 if it is absent
+     */
+    public double getAbundance(int rank, int taxId) {
+        int slot = this.slots[rank].get(taxId, -1);
+        return slot == -1 ? 0.0 : this.abundances[rank][slot];
+    }
+
+    /**
+     * @return the taxa reported at a rank, in no particular order
+     */
+    public int[] getTaxa(int rank) {
+        return this.slots[rank].keys();
+    }
+
+    /**
+     * @return the number of taxa at a rank with a positive abundance
+     */
+    public int getPositiveCount(int rank) {
+        return this.positives[rank];
+    }
+
+    /**
+     * @return the sum of all abundances at a rank as a fraction
+     */
+    public double getSum(int rank) {
+        return this.sums[rank];
+    }
+
+    /**
+     * Visit the taxa of a rank without allocating.
+     */
+    void forEach(final int rank, final Visitor visitor) {
+        this.slots[rank].forEach(new IntIntMap.Visitor() {
+            @Override
+            public void visit(int taxId, int slot) {
+                visitor.visit(taxId, abundances[rank][slot]);
+            }
+        });
+    }
+
+    interface Visitor {
+        void visit(int taxId, double abundance);
+    }
+}
@@ -0,0 +1,62 @@
+package cami.io.eval;
+
+import java.util.Arrays;
+
+import cami.io.Profile;
+
+/**
+ * Immutable per-rank abundances of a profile as taxid-sorted parallel arrays, so that two profiles are
+ * compared by a merge over their taxa without hashing.
+ */
+class SparseProfile {
+    private final int[][] taxa = new int[Profile.RANK_NAMES.length][];
+    private final double[][] abundances = new double[Profile.RANK_NAMES.length][];
+    private final double[] sums = new double[Profile.RANK_NAMES.length];
+
+    SparseProfile(ProfileVector vector) {
+        for (int rank = 0; rank < this.taxa.length; rank++) {
+            int[] ids = vector.getTaxa(rank);
+            Arrays.sort(ids);
+            double[] values = new double[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                values[i] = vector.getAbundance(rank, ids[i]);
+            }
+            this.taxa[rank] = ids;
+            this.abundances[rank] = values;
+            this.sums[rank] = vector.getSum(rank);
+        }
+    }
+
+    /**
+     * @return the sum of absolute abundance differences at a rank
+     */
+    double l1(SparseProfile other, int rank) {
+        int[] a = this.taxa[rank];
+        int[] b = other.taxa[rank];
+        double[] x = this.abundances[rank];
+        double[] y = other.abundances[rank];
+        double sum = 0.0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                sum += Math.abs(x[i++] - y[j++]);
+            } else if (a[i] < b[j]) {
+                sum += Math.abs(x[i++]);
+            } else {
+                sum += Math.abs(y[j++]);
+            }
+        }
+        while (i < a.length) {
+            sum += Math.abs(x[i++]);
+        }
+        while (j < b.length) {
+            sum += Math.abs(y[j++]);
+        }
+        return sum;
+    }
+
+    double getSum(int rank) {
+        return this.sums[rank];
+    }
+}
@@ -0,0 +1,235 @@
+package cami.io.fasta;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.util.StringDictionary;
+
+/**
+ * SEQUENCEID to length table of a FASTA file, backed by a samtools-style {@code .fai} index.
+ * <p/>
+ * {@link #load(String)} reads {@code <fasta>.fai} when it is at least as new as the FASTA file. Otherwise
+ * the FASTA file is streamed once, without holding any sequence data, and the index is written for the
+ * next load. The index is written to a temporary file and then moved into place, so that a concurrent load
+ * never reads a partial index. Only the name and length of each record are kept in memory.
+ */
+public class FastaIndex {
+    public final static String SUFFIX = ".fai";
+    public final static long MISSING = -1;
+
+    private static Logger logger = LoggerFactory.getLogger(FastaIndex.class);
+
+    private final StringDictionary names;
+    private final long[] lengths;
+
+    private FastaIndex(StringDictionary names, long[] lengths) {
+        this.names = names;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Load the lengths of a FASTA file, building its {@code .fai} index if necessary.
+     *
+     * @param fastaFile the FASTA file
+     * @return the length table
+     * @throws IOException error reading the FASTA file or reading/writing the index
+     */
+    public static FastaIndex load(String fastaFile) throws IOException {
+        File fasta = new File(fastaFile);
+        File index = new File(fastaFile + SUFFIX);
+        if (index.isFile() && index.lastModified() >= fasta.lastModified()) {
+            return readIndex(index.getPath());
+        }
+        logger.info("building FASTA index {}", index);
+        return build(fastaFile, index.getPath());
+    }
+
+    /**
+     * Read a {@code .fai} index. Only the NAME and LENGTH columns are used.
+     *
+     * @param indexFile the index to read
+     * @return the length table
+     * @throws IOException error reading or malformed index
+     */
+    public static FastaIndex readIndex(String indexFile) throws IOException {
+        StringDictionary names = new StringDictionary(1 << 16);
+        long[] lengths = new long[1 << 16];
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                int end = tab == -1 ? -1 : line.indexOf('\t', tab + 1);
+                if (tab == -1) {
+                    throw new IOException(String.format("malformed index line:%d [%s]", lineNumber, line));
+                }
+                int code = names.add(line.substring(0, tab));
+                if (code == lengths.length) {
+                    lengths = Arrays.copyOf(lengths, code << 1);
+                }
+                try {
+                    lengths[code] = Long.parseLong(end == -1 ? line.substring(tab + 1) : line.substring(tab + 1, end));
+                } catch (NumberFormatException e) {
+                    throw new IOException(String.format("malformed index line:%d [%s]", lineNumber, line));
+                }
+            }
+        }
+        return new FastaIndex(names, lengths);
+    }
+
+    /**
+     * Stream a FASTA file once, writing its {@code .fai} index. Names are decoded as UTF-8.
+     *
+     * @param fastaFile the FASTA file
+     * @param indexFile the index to create
+     * @return the length table
+     * @throws IOException error reading or writing
+     */
+    public static FastaIndex build(String fastaFile, String indexFile) throws IOException {
+        StringDictionary names = new StringDictionary(1 << 16);
+        long[] lengths = new long[1 << 16];
+        Path index = Paths.get(indexFile).toAbsolutePath();
+        Path temp = Files.createTempFile(index.getParent(), index.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(fastaFile), 1 << 16);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp),
+                         StandardCharsets.UTF_8), 1 << 16)) {
+                byte[] name = new byte[256];
+                int nameLength = 0;
+                long offset = 0;
+                long length = 0;
+                long sequenceOffset = 0;
+                long lineBases = 0;
+                long lineWidth = 0;
+                long currentBases = 0;
+                boolean inHeader = false;
+                boolean inName = false;
+                boolean firstLine = true;
+                boolean record = false;
+                byte[] buffer = new byte[1 << 16];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    for (int i = 0; i < n; i++) {
+                        int b = buffer[i] & 0xff;
+                        offset++;
+                        if (inHeader) {
+                            if (b == '\n') {
+                                inHeader = false;
+                                sequenceOffset = offset;
+                                firstLine = true;
+                                currentBases = 0;
+                            } else if (inName && (b == ' ' || b == '\t' || b == '\r')) {
+                                inName = false;
+                            } else if (inName) {
+                                if (nameLength == name.length) {
+                                    name = Arrays.copyOf(name, nameLength << 1);
+                                }
+                                name[nameLength++] = (byte) b;
+                            }
+                        } else if (b == '>') {
+                            if (record) {
+                                String id = new String(name, 0, nameLength, StandardCharsets.UTF_8);
+                                lengths = store(lengths, names.add(id), length);
+                                writeEntry(out, id, length, sequenceOffset, lineBases, lineWidth);
+                            }
+                            nameLength = 0;
+                            length = 0;
+                            lineBases = 0;
+                            lineWidth = 0;
+                            inHeader = true;
+                            inName = true;
+                            record = true;
+                        } else if (b == '\n') {
+                            if (firstLine && currentBases > 0) {
+                                lineBases = currentBases;
+                                lineWidth = offset - sequenceOffset;
+                                firstLine = false;
+                            }
+                            currentBases = 0;
+                        } else if (b != '\r' && record) {
+                            length++;
+                            currentBases++;
+                        }
+                    }
+                }
+                if (record) {
+                    if (firstLine && currentBases > 0) {
+                        lineBases = currentBases;
+                        lineWidth = currentBases;
+                    }
+                    String id = new String(name, 0, nameLength, StandardCharsets.UTF_8);
+                    lengths = store(lengths, names.add(id), length);
+                    writeEntry(out, id, length, sequenceOffset, lineBases, lineWidth);
+                }
+            }
+            // the index is complete once its writer is closed
+            Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return new FastaIndex(names, lengths);
+    }
+
+    private static long[] store(long[] lengths, int code, long length) {
+        if (code == lengths.length) {
+            lengths = Arrays.copyOf(lengths, code << 1);
+        }
+        lengths[code] = length;
+        return lengths;
+    }
+
+    private static void writeEntry(Writer out, CharSequence name, long length, long offset, long lineBases,
+                                   long lineWidth) throws IOException {
+        out.append(name).append('\t').append(Long.toString(length)).append('\t').append(Long.toString(offset))
+                .append('\t').append(Long.toString(lineBases)).append('\t').append(Long.toString(lineWidth))
+                .append('\n');
+    }
+
+    /**
+     * @return the length of a sequence or {@link #MISSING}
+     */
+    public long getLength(String sequenceId) {
+        int code = this.names.code(sequenceId);
+        return code == -1 ? MISSING : this.lengths[code];
+    }
+
+    /**
+     * @return the number of sequences in the table
+     */
+    public int size() {
+        return this.names.size();
+    }
+
+    /**
+     * @return the sum of all sequence lengths
+     */
+    public long getTotalLength() {
+        long total = 0;
+        for (int i = 0; i < this.names.size(); i++) {
+            total += this.lengths[i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,374 @@
+package cami.io.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.util.StringDictionary;
+
+/**
+ * Persistent SEQUENCEID lookup index for binning files.
+ * <p/>
+ * The index is a sidecar file ({@code <binning file>.idx}) holding an open-addressing hash table from
+ * SEQUENCEID to its BINID and TAXID. The table is memory-mapped, so point lookups touch a few pages and
+ * do not load the binning file into the heap. The size and modification time of the binning file and a
+ * checksum of its first and last {@link #CHECKSUM_WINDOW} bytes are recorded in the index, so that an edit
+ * keeping size and time, or a copy keeping the time, is noticed as well; {@link #open(String, boolean)}
+ * rebuilds a stale or missing index. The index is written to a temporary file and moved into place, so that
+ * concurrent builds never leave a partial index.
+ * <p/>
+ * If a sequence is assigned more than once the last assignment is indexed.
+ * Instances may be shared between threads once opened.
+ */
+public class BinningIndex {
+    public final static String SUFFIX = ".idx";
+    public final static int MISSING = -1;
+    public final static int CHECKSUM_WINDOW = 1 << 16;
+    private final static byte[] MAGIC = {'C', 'A', 'M', 'I', 'I', 'D', 'X', 2};
+    // size, modification time and checksum of the binning file
+    private final static int SOURCE_SIZE = 8 + 8 + 8;
+    private final static int HEADER_SIZE = MAGIC.length + SOURCE_SIZE + 4 + 4 + 4 + 8 * 5;
+    private final static int SLOT_SIZE = 16;
+    private final static float LOAD_FACTOR = 0.7f;
+
+    private static Logger logger = LoggerFactory.getLogger(BinningIndex.class);
+
+    private final FileChannel channel;
+    private final int sequences;
+    private final int capacity;
+    private final int bins;
+    private final ByteBuffer table;
+    private final ByteBuffer pool;
+    private final ByteBuffer binDictionary;
+
+    private BinningIndex(File indexFile) throws IOException {
+        this.channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.position(MAGIC.length + SOURCE_SIZE);
+            this.sequences = header.getInt();
+            this.capacity = header.getInt();
+            this.bins = header.getInt();
+            long tableOffset = header.getLong();
+            long poolOffset = header.getLong();
+            long poolLength = header.getLong();
+            long binOffset = header.getLong();
+            long binLength = header.getLong();
+            this.table = map(tableOffset, (long) this.capacity * SLOT_SIZE);
+            this.pool = map(poolOffset, poolLength);
+            this.binDictionary = map(binOffset, binLength);
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer map(long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("index section exceeds 2GB and cannot be mapped");
+        }
+        return this.channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    /**
+     * Open the index of a binning file, building it first if it is missing or older than the file.
+     *
+     * @param binningFile the binning file
+     * @param checkHeader check mandatory header fields when building
+     * @return the opened index
+     * @throws Base.ParseException invalid binning file
+     * @throws IOException         error reading or writing
+     */
+    public static BinningIndex open(String binningFile, boolean checkHeader) throws Base.ParseException, IOException {
+        File source = new File(binningFile);
+        File indexFile = new File(binningFile + SUFFIX);
+        if (!isCurrent(source, indexFile)) {
+            logger.info("building index {}", indexFile);
+            build(binningFile, checkHeader);
+        }
+        return new BinningIndex(indexFile);
+    }
+
+    /**
+     * @return true if the index exists and was built from the binning file in its current state
+     */
+    public static boolean isCurrent(File source, File indexFile) throws IOException {
+        if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length + SOURCE_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read fully
+            }
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            return Arrays.equals(magic, MAGIC) && header.getLong() == source.length()
+                    && header.getLong() == source.lastModified() && header.getLong() == checksum(source);
+        }
+    }
+
+    /**
+     * @return the CRC-32 of the first and last {@link #CHECKSUM_WINDOW} bytes of a file
+     */
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, CHECKSUM_WINDOW));
+            update(crc, channel, buffer, 0);
+            if (size > CHECKSUM_WINDOW) {
+                buffer.clear();
+                buffer.limit((int) Math.min(size - CHECKSUM_WINDOW, CHECKSUM_WINDOW));
+                update(crc, channel, buffer, size - buffer.limit());
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void update(CRC32 crc, FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("file shrank while computing its checksum");
+            }
+        }
+        crc.update(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * Build the index of a binning file, replacing any existing index.
+     *
+     * @param binningFile the binning file
+     * @param checkHeader check mandatory header fields
+     * @throws Base.ParseException invalid binning file
+     * @throws IOException         error reading or writing
+     */
+    public static void build(String binningFile, boolean checkHeader) throws Base.ParseException, IOException {
+        File source = new File(binningFile);
+        long size = source.length();
+        long modified = source.lastModified();
+        long checksum = checksum(source);
+
+        StringDictionary sequenceIds = new StringDictionary(1 << 16);
+        StringDictionary binIds = new StringDictionary();
+        int[] binCodes = new int[1 << 16];
+        int[] taxIds = new int[1 << 16];
+        Binning.Reader reader = new Binning.Reader(binningFile, checkHeader);
+        try {
+            List<String> columns = reader.getColumnDefinition();
+            int seqIndex = columns.indexOf(Binning.SEQUENCEID);
+            int binIndex = columns.indexOf(Binning.BINID);
+            int taxIndex = columns.indexOf(Binning.TAXID);
+            if (seqIndex == -1) {
+                throw new Base.FieldException(String.format("%s has no SEQUENCEID column", binningFile));
+            }
+            String[] row;
+            while ((row = reader.readRow()) != null) {
+                int seq = sequenceIds.add(row[seqIndex]);
+                if (seq == binCodes.length) {
+                    binCodes = Arrays.copyOf(binCodes, seq << 1);
+                    taxIds = Arrays.copyOf(taxIds, seq << 1);
+                }
+                binCodes[seq] = binIndex != -1 ? binIds.add(row[binIndex]) : MISSING;
+                try {
+                    taxIds[seq] = taxIndex != -1 ? Base.toInt(row[taxIndex]) : MISSING;
+                } catch (NumberFormatException e) {
+                    throw new Base.FieldException(String.format("invalid TAXID [%s] in %s", row[taxIndex], binningFile));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        int n = sequenceIds.size();
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (n / LOAD_FACTOR)) - 1) << 1;
+        byte[][] encoded = new byte[n][];
+        int[] hashes = new int[n];
+        int[] poolOffsets = new int[n];
+        long poolLength = 0;
+        for (int seq = 0; seq < n; seq++) {
+            encoded[seq] = sequenceIds.get(seq).getBytes(StandardCharsets.UTF_8);
+            hashes[seq] = hash(encoded[seq]);
+            if (poolLength + 4 + encoded[seq].length > Integer.MAX_VALUE) {
+                throw new IOException("SEQUENCEIDs exceed the 2GB index limit");
+            }
+            poolOffsets[seq] = (int) poolLength;
+            poolLength += 4 + encoded[seq].length;
+        }
+        // code + 1 of the sequence in each slot, 0 marks a free slot
+        int[] slots = new int[capacity];
+        for (int seq = 0; seq < n; seq++) {
+            int i = hashes[seq] & (capacity - 1);
+            while (slots[i] != 0) {
+                i = (i + 1) & (capacity - 1);
+            }
+            slots[i] = seq + 1;
+        }
+        byte[][] binBytes = new byte[binIds.size()][];
+        long binLength = 4L * (binBytes.length + 1);
+        for (int b = 0; b < binBytes.length; b++) {
+            binBytes[b] = binIds.get(b).getBytes(StandardCharsets.UTF_8);
+            binLength += binBytes[b].length;
+        }
+
+        Path indexFile = new File(binningFile + SUFFIX).toPath().toAbsolutePath();
+        Path partial = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+        long tableOffset = HEADER_SIZE;
+        long poolOffset = tableOffset + (long) capacity * SLOT_SIZE;
+        long binOffset = poolOffset + poolLength;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(partial), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeLong(checksum);
+                out.writeInt(n);
+                out.writeInt(capacity);
+                out.writeInt(binBytes.length);
+                out.writeLong(tableOffset);
+                out.writeLong(poolOffset);
+                out.writeLong(poolLength);
+                out.writeLong(binOffset);
+                out.writeLong(binLength);
+                for (int slot : slots) {
+                    if (slot == 0) {
+                        out.writeLong(0);
+                        out.writeLong(0);
+                    } else {
+                        int seq = slot - 1;
+                        out.writeInt(hashes[seq]);
+                        out.writeInt(poolOffsets[seq] + 1);
+                        out.writeInt(binCodes[seq]);
+                        out.writeInt(taxIds[seq]);
+                    }
+                }
+                for (byte[] bytes : encoded) {
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                int offset = 0;
+                out.writeInt(offset);
+                for (byte[] bytes : binBytes) {
+                    offset += bytes.length;
+                    out.writeInt(offset);
+                }
+                for (byte[] bytes : binBytes) {
+                    out.write(bytes);
+                }
+            }
+            // readers of the old index keep their mapping
+            Files.move(partial, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes of a SEQUENCEID.
+     */
+    private static int hash(byte[] bytes) {
+        int h = 0x811c9dc5;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Look up a sequence.
+     *
+     * @param sequenceId the SEQUENCEID
+     * @return the slot of the sequence for {@link #getBinId(int)} and {@link #getTaxId(int)},
+     * or -1 if it is not in the binning file
+     */
+    public int find(String sequenceId) {
+        byte[] key = sequenceId.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        int mask = this.capacity - 1;
+        int i = hash & mask;
+        while (true) {
+            int base = i * SLOT_SIZE;
+            int entry = this.table.getInt(base + 4);
+            if (entry == 0) {
+                return -1;
+            }
+            if (this.table.getInt(base) == hash && keyEquals(entry - 1, key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if (this.pool.getInt(offset) != key.length) {
+            return false;
+        }
+        for (int j = 0; j < key.length; j++) {
+            if (this.pool.get(offset + 4 + j) != key[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the TAXID at a slot returned by {@link #find(String)}, or {@link #MISSING}
+     */
+    public int getTaxId(int slot) {
+        return this.table.getInt(slot * SLOT_SIZE + 12);
+    }
+
+    /**
+     * @return the BINID code at a slot returned by {@link #find(String)}, or {@link #MISSING}
+     */
+    public int getBinCode(int slot) {
+        return this.table.getInt(slot * SLOT_SIZE + 8);
+    }
+
+    /**
+     * @return the BINID at a slot returned by {@link #find(String)}, or null
+     */
+    public String getBinId(int slot) {
+        int code = getBinCode(slot);
+        if (code == MISSING) {
+            return null;
+        }
+        ByteBuffer dictionary = this.binDictionary.duplicate();
+        int start = dictionary.getInt(code << 2);
+        int end = dictionary.getInt((code + 1) << 2);
+        byte[] bytes = new byte[end - start];
+        dictionary.position(((this.bins + 1) << 2) + start);
+        dictionary.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return number of distinct sequences in the index
+     */
+    public int size() {
+        return sequences;
+    }
+
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,253 @@
+package cami.io.join;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.util.StringDictionary;
+
+/**
+ * Joins several binning submissions for the same sample on SEQUENCEID.
+ * <p/>
+ * SEQUENCEIDs of all submissions are interned into a single {@link StringDictionary}. Each submission
+ * contributes a column of BINID codes and a column of TAXIDs, indexed by sequence code, so memory grows
+ * with the number of distinct sequences times the number of submissions rather than with the number of rows
+ * read. Sequences missing from a submission have {@link #MISSING} in its columns.
+ * <p/>
+ * The joined table can be visited row by row or written as a wide tab-separated table.
+ */
+public class BinningJoin {
+    public final static int MISSING = -1;
+
+    private final StringDictionary sequences = new StringDictionary(1 << 16);
+    private final List<Submission> submissions = new ArrayList<>();
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Open and add a binning file.
+     *
+     * @param name        name of the submission, used in the wide table header
+     * @param fileName    the binning file
+     * @param checkHeader check mandatory header fields
+     * @return the index of the submission
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading from file
+     */
+    public int add(String name, String fileName, boolean checkHeader) throws Base.ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(fileName, checkHeader);
+        try {
+            return add(name, reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Drain a reader into the join. The reader is not closed.
+     *
+     * @param name   name of the submission, used in the wide table header
+     * @param reader an open binning reader
+     * @return the index of the submission
+     * @throws Base.ParseException invalid input or no SEQUENCEID column
+     * @throws IOException         error reading from file
+     */
+    public int add(String name, Base.Reader reader) throws Base.ParseException, IOException {
+        List<String> columns = reader.getColumnDefinition();
+        int seqIndex = columns.indexOf(Binning.SEQUENCEID);
+        int binIndex = columns.indexOf(Binning.BINID);
+        int taxIndex = columns.indexOf(Binning.TAXID);
+        if (seqIndex == -1) {
+            throw new Base.FieldException(String.format("submission %s has no SEQUENCEID column", name));
+        }
+
+        Submission submission = new Submission(name, this.sequences.size());
+        int duplicates = 0;
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            int seq = this.sequences.add(row[seqIndex]);
+            submission.ensureCapacity(seq + 1);
+            if (submission.binCodes[seq] != MISSING || submission.taxIds[seq] != MISSING) {
+                duplicates++;
+            }
+            if (binIndex != -1) {
+                submission.binCodes[seq] = submission.bins.add(row[binIndex]);
+            }
+            if (taxIndex != -1) {
+                try {
+                    submission.taxIds[seq] = Base.toInt(row[taxIndex]);
+                } catch (NumberFormatException e) {
+                    throw new Base.FieldException(String.format("invalid TAXID [%s] in submission %s",
+                            row[taxIndex], name));
+                }
+            }
+        }
+        if (duplicates > 0) {
+            getLogger().warn("{} duplicate SEQUENCEIDs in submission {}, the last assignment is kept", duplicates, name);
+        }
+        this.submissions.add(submission);
+        return this.submissions.size() - 1;
+    }
+
+    /**
+     * Visit every distinct sequence in order of first appearance. The arrays passed to the visitor
+     * are reused between calls.
+     *
+     * @param visitor receives the joined rows
+     * @throws IOException when thrown by the visitor
+     */
+    public void visit(Visitor visitor) throws IOException {
+        int n = this.submissions.size();
+        int[] binCodes = new int[n];
+        int[] taxIds = new int[n];
+        for (int seq = 0; seq < this.sequences.size(); seq++) {
+            for (int s = 0; s < n; s++) {
+                binCodes[s] = getBinCode(s, seq);
+                taxIds[s] = getTaxId(s, seq);
+            }
+            visitor.visit(seq, binCodes, taxIds);
+        }
+    }
+
+    /**
+     * Write the joined table with one row per sequence and a BINID and TAXID column per submission.
+     * Missing values are written as empty fields.
+     *
+     * @param fileName the file to create
+     * @throws IOException error writing to file
+     */
+    public void writeTsv(String fileName) throws IOException {
+        try (final Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 16)) {
+            out.write(Binning.SEQUENCEID);
+            for (Submission submission : this.submissions) {
+                out.write(Base.DELIMITER + submission.name + "_" + Binning.BINID);
+                out.write(Base.DELIMITER + submission.name + "_" + Binning.TAXID);
+            }
+            out.write('\n');
+            visit(new Visitor() {
+                @Override
+                public void visit(int sequence, int[] binCodes, int[] taxIds) throws IOException {
+                    out.write(getSequenceId(sequence));
+                    for (int s = 0; s < binCodes.length; s++) {
+                        out.write(Base.DELIMITER);
+                        if (binCodes[s] != MISSING) {
+                            out.write(getBinId(s, binCodes[s]));
+                        }
+                        out.write(Base.DELIMITER);
+                        if (taxIds[s] != MISSING) {
+                            out.write(Integer.toString(taxIds[s]));
+                        }
+                    }
+                    out.write('\n');
+                }
+            });
+        }
+    }
+
+    public int getSubmissionCount() {
+        return this.submissions.size();
+    }
+
+    public String getSubmissionName(int submission) {
+        return this.submissions.get(submission).name;
+    }
+
+    public int getSequenceCount() {
+        return this.sequences.size();
+    }
+
+    public String getSequenceId(int sequence) {
+        return this.sequences.get(sequence);
+    }
+
+    /**
+     * @return the code of a SEQUENCEID or -1 if no submission contains it
+     */
+    public int getSequenceCode(String sequenceId) {
+        return this.sequences.code(sequenceId);
+    }
+
+    /**
+     * @return the BINID code assigned to a sequence by a submission, or {@link #MISSING}
+     */
+    public int getBinCode(int submission, int sequence) {
+        Submission s = this.submissions.get(submission);
+        return sequence < s.binCodes.length ? s.binCodes[sequence] : MISSING;
+    }
+
+    public String getBinId(int submission, int binCode) {
+        return this.submissions.get(submission).bins.get(binCode);
+    }
+
+    /**
+     * @return the number of distinct BINIDs of a submission
+     */
+    public int getBinCount(int submission) {
+        return this.submissions.get(submission).bins.size();
+    }
+
+    /**
+     * @return the TAXID assigned to a sequence by a submission, or {@link #MISSING}
+     */
+    public int getTaxId(int submission, int sequence) {
+        Submission s = this.submissions.get(submission);
+        return sequence < s.taxIds.length ? s.taxIds[sequence] : MISSING;
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Receives one joined row per distinct sequence.
+     */
+    public interface Visitor {
+        /**
+         * @param sequence the sequence code, see {@link #getSequenceId(int)}
+         * @param binCodes BINID code per submission or {@link #MISSING}
+         * @param taxIds   TAXID per submission or {@link #MISSING}
+         */
+        void visit(int sequence, int[] binCodes, int[] taxIds) throws IOException;
+    }
+
+    /**
+     * Columns of a single submission, indexed by sequence code.
+     */
+    private static class Submission {
+        private final String name;
+        private final StringDictionary bins = new StringDictionary();
+        private int[] binCodes;
+        private int[] taxIds;
+
+        private Submission(String name, int expected) {
+            this.name = name;
+            this.binCodes = new int[Math.max(16, expected)];
+            this.taxIds = new int[this.binCodes.length];
+            Arrays.fill(this.binCodes, MISSING);
+            Arrays.fill(this.taxIds, MISSING);
+        }
+
+        private void ensureCapacity(int sequences) {
+            if (sequences <= this.binCodes.length) {
+                return;
+            }
+            int from = this.binCodes.length;
+            int capacity = Math.max(sequences, from + (from >> 1));
+            this.binCodes = Arrays.copyOf(this.binCodes, capacity);
+            this.taxIds = Arrays.copyOf(this.taxIds, capacity);
+            Arrays.fill(this.binCodes, from, capacity, MISSING);
+            Arrays.fill(this.taxIds, from, capacity, MISSING);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package cami.io.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values with bounded relative error.
+ * <p/>
+ * As in HdrHistogram, each power of two is divided into {@link #SUB_BUCKETS} linear buckets, so every
+ * recorded value is known to within 1/16 of itself over the whole range of long. The buckets take a fixed
+ * 8KB and recording is a few bit operations and atomic additions, without locks or allocation.
+ */
+public class Histogram {
+    public final static int SUB_BUCKETS = 16;
+    private final static int SUB_BITS = 4;
+    private final static int BUCKETS = (65 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return ((exponent - SUB_BITS) << SUB_BITS) + (int) (value >>> (exponent - SUB_BITS));
+    }
+
+    private static long lowestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        return (long) ((index & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+    }
+
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        return lowestValue(index) + ((1L << shift) - 1);
+    }
+
+    /**
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts.incrementAndGet(index(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+        long current;
+        while (value > (current = this.max.get()) && !this.max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @return the mean of the recorded values, 0 if empty
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0.0 : getSum() / (double) n;
+    }
+
+    /**
+     * @param percentile the percentile in [0, 100]
+     * @return the largest value equivalent to the value at the percentile, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clear all recorded values. Values recorded concurrently may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+}
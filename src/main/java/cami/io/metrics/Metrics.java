@@ -0,0 +1,72 @@
+package cami.io.metrics;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holder of the default {@link MetricsListener} and {@link TraceListener} taken up by readers and writers
+ * at creation.
+ * <p/>
+ * No listener is registered by default, so metrics cost nothing until enabled:
+ * <pre>
+ * MetricsRegistry registry = new MetricsRegistry();
+ * Metrics.setDefaultListener(registry);
+ * ... read and write files ...
+ * registry.writeJson("metrics.json");
+ * </pre>
+ * Setting the system property {@value #JFR_PROPERTY} to true registers the Java Flight Recorder tracer
+ * {@code cami.io.jfr.FlightRecorderTracer} of the separate {@code jfr} module as default tracer, where it is on
+ * the classpath and the JVM provides the JFR API.
+ */
+public final class Metrics {
+    // number of rows between progress reports
+    public final static int PROGRESS_INTERVAL = 1 << 16;
+    // number of rows per traced batch
+    public final static int TRACE_BATCH = 1 << 12;
+    public final static String JFR_PROPERTY = "cami.io.jfr";
+    private final static String JFR_TRACER = "cami.io.jfr.FlightRecorderTracer";
+
+    private static volatile MetricsListener defaultListener = null;
+    private static volatile TraceListener defaultTracer = null;
+
+    static {
+        if (Boolean.getBoolean(JFR_PROPERTY)) {
+            try {
+                defaultTracer = (TraceListener) Class.forName(JFR_TRACER).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LoggerFactory.getLogger(Metrics.class).warn("Java Flight Recorder events are unavailable: {}",
+                        e.toString());
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the listener given to new readers and writers, null if disabled
+     */
+    public static MetricsListener getDefaultListener() {
+        return defaultListener;
+    }
+
+    /**
+     * @param listener the listener given to new readers and writers, null to disable
+     */
+    public static void setDefaultListener(MetricsListener listener) {
+        defaultListener = listener;
+    }
+
+    /**
+     * @return the tracer given to new readers, writers and taxonomy caches, null if disabled
+     */
+    public static TraceListener getDefaultTracer() {
+        return defaultTracer;
+    }
+
+    /**
+     * @param tracer the tracer given to new readers, writers and taxonomy caches, null to disable
+     */
+    public static void setDefaultTracer(TraceListener tracer) {
+        defaultTracer = tracer;
+    }
+}
@@ -0,0 +1,58 @@
+package cami.io.metrics;
+
+/**
+ * Receives timings and progress from {@link cami.io.Base.Reader} and {@link cami.io.Base.Writer}.
+ * <p/>
+ * Readers and writers take the listener registered with {@link Metrics#setDefaultListener(MetricsListener)}
+ * when they are created, or one set on the instance. Without a listener no clock is read and no callback
+ * is made. Implementations may be called from several threads at once.
+ */
+public interface MetricsListener {
+
+    /**
+     * The stages of reading and writing which are timed.
+     */
+    enum Stage {
+        // reading a line from the file
+        READ,
+        // splitting a line into fields
+        PARSE,
+        // checking the fields of a row against the taxonomy, taxonomy queries included
+        VALIDATE,
+        // encoding and buffering a row for output
+        WRITE,
+        // reading and checking the header of a file or sample
+        HEADER,
+        // a single query of the taxonomy
+        TAXONOMY
+    }
+
+    /**
+     * A stage has completed once.
+     *
+     * @param stage the stage
+     * @param nanos the elapsed time in nanoseconds
+     */
+    void record(Stage stage, long nanos);
+
+    /**
+     * Progress of a reader, reported every {@link Metrics#PROGRESS_INTERVAL} rows and once at the end of
+     * the file.
+     *
+     * @param source     the file being read
+     * @param bytesRead  the bytes consumed from the file so far
+     * @param totalBytes the size of the file, -1 if unknown
+     * @param rows       the data rows returned so far
+     * @param etaNanos   the estimated time to the end of the file, -1 if unknown
+     */
+    void progress(String source, long bytesRead, long totalBytes, long rows, long etaNanos);
+
+    /**
+     * Taxonomy queries of a reader, reported with its progress once it has made any.
+     *
+     * @param source  the file being read
+     * @param lookups the taxonomy queries made so far
+     */
+    default void lookups(String source, long lookups) {
+    }
+}
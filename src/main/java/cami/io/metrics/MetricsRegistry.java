@@ -0,0 +1,173 @@
+package cami.io.metrics;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory {@link MetricsListener} which keeps a latency {@link Histogram} per stage and the latest
+ * progress and taxonomy query count of every source.
+ * <p/>
+ * A single registry can be shared by all readers and writers of a process and dumped as JSON at any time.
+ * Latencies are reported in nanoseconds.
+ */
+public class MetricsRegistry implements MetricsListener {
+    private final static double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final Histogram[] histograms = new Histogram[Stage.values().length];
+    private final Map<String, long[]> sources = new ConcurrentHashMap<>();
+    private final Map<String, Long> lookups = new ConcurrentHashMap<>();
+
+    public MetricsRegistry() {
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new Histogram();
+        }
+    }
+
+    @Override
+    public void record(Stage stage, long nanos) {
+        this.histograms[stage.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void progress(String source, long bytesRead, long totalBytes, long rows, long etaNanos) {
+        this.sources.put(source, new long[]{bytesRead, totalBytes, rows, etaNanos});
+    }
+
+    @Override
+    public void lookups(String source, long lookups) {
+        this.lookups.put(source, lookups);
+    }
+
+    /**
+     * @return the latencies of a stage, which also count how often it completed
+     */
+    public Histogram getHistogram(Stage stage) {
+        return this.histograms[stage.ordinal()];
+    }
+
+    /**
+     * @return the number of times a stage completed
+     */
+    public long getCount(Stage stage) {
+        return getHistogram(stage).getCount();
+    }
+
+    /**
+     * @return the bytes read from a source at its latest progress report, -1 if never reported
+     */
+    public long getBytesRead(String source) {
+        long[] progress = this.sources.get(source);
+        return progress == null ? -1 : progress[0];
+    }
+
+    /**
+     * @return the rows read from a source at its latest progress report, -1 if never reported
+     */
+    public long getRows(String source) {
+        long[] progress = this.sources.get(source);
+        return progress == null ? -1 : progress[2];
+    }
+
+    /**
+     * @return the taxonomy queries of a source at its latest progress report, 0 if never reported
+     */
+    public long getLookups(String source) {
+        Long lookups = this.lookups.get(source);
+        return lookups == null ? 0 : lookups;
+    }
+
+    /**
+     * Discard all recorded latencies and progress.
+     */
+    public void reset() {
+        for (Histogram histogram : this.histograms) {
+            histogram.reset();
+        }
+        this.sources.clear();
+        this.lookups.clear();
+    }
+
+    /**
+     * @return the stages and sources as a JSON object
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"stages\": {");
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = getHistogram(stage);
+            sb.append(stage.ordinal() == 0 ? "\n" : ",\n");
+            sb.append("    \"").append(stage.name().toLowerCase(Locale.ROOT)).append("\": {");
+            sb.append("\"count\": ").append(histogram.getCount());
+            sb.append(", \"totalNanos\": ").append(histogram.getSum());
+            sb.append(", \"meanNanos\": ").append(String.format(Locale.ROOT, "%.1f", histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                sb.append(", \"p").append(percentileName(percentile)).append("Nanos\": ")
+                        .append(histogram.getValueAtPercentile(percentile));
+            }
+            sb.append(", \"maxNanos\": ").append(histogram.getMax()).append('}');
+        }
+        sb.append("\n  },\n  \"sources\": {");
+        boolean first = true;
+        for (Map.Entry<String, long[]> entry : new TreeMap<>(this.sources).entrySet()) {
+            long[] progress = entry.getValue();
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("    \"").append(escape(entry.getKey())).append("\": {");
+            sb.append("\"bytesRead\": ").append(progress[0]);
+            sb.append(", \"totalBytes\": ").append(progress[1]);
+            sb.append(", \"rows\": ").append(progress[2]);
+            sb.append(", \"lookups\": ").append(getLookups(entry.getKey()));
+            sb.append(", \"etaNanos\": ").append(progress[3]).append('}');
+        }
+        sb.append(first ? "}\n}\n" : "\n  }\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Write {@link #toJson()} to a file.
+     *
+     * @param fileName the file to create
+     * @throws IOException error writing to file
+     */
+    public void writeJson(String fileName) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8)) {
+            out.write(toJson());
+        }
+    }
+
+    private static String percentileName(double percentile) {
+        return percentile == Math.rint(percentile) ? Integer.toString((int) percentile)
+                : Double.toString(percentile).replace('.', '_');
+    }
+
+    /**
+     * Escape a value for use within a quoted JSON string.
+     *
+     * @param value the value, null taken as empty
+     * @return the escaped value, without quotes
+     */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package cami.io.metrics;
+
+/**
+ * Receives the phases of reading, validating and writing as spans, for tracing tools such as Java Flight
+ * Recorder (see {@code cami.io.jfr.FlightRecorderTracer}).
+ * <p/>
+ * A span is opened with {@link #begin(Span)} and closed by the matching {@code end} method, which is
+ * handed the object returned on opening. Implementations return null from {@link #begin(Span)} when a
+ * span is not wanted and must accept null in the {@code end} methods. Without a tracer, readers and writers
+ * make no calls at all. Sample ids may be null, line numbers are counted from 1 and -1 when unknown.
+ */
+public interface TraceListener {
+
+    /**
+     * The kinds of span.
+     */
+    enum Span {
+        // opening a file and reading its header
+        HEADER,
+        // a batch of data rows returned by a reader
+        ROWS,
+        // a single query of the taxonomy
+        LOOKUP,
+        // writing buffered output to a file
+        FLUSH
+    }
+
+    /**
+     * @param span the kind of span starting now
+     * @return the handle to close the span with, null if it is not traced
+     */
+    Object begin(Span span);
+
+    /**
+     * A header has been read.
+     *
+     * @param span      the handle of {@link Span#HEADER}
+     * @param source    the file read
+     * @param sampleId  the sample id declared by the header
+     * @param firstLine the first line of the header
+     * @param lastLine  the line holding the column definition
+     */
+    void endHeader(Object span, String source, String sampleId, int firstLine, int lastLine);
+
+    /**
+     * A batch of data rows has been returned.
+     *
+     * @param span      the handle of {@link Span#ROWS}
+     * @param source    the file read
+     * @param sampleId  the sample the rows belong to
+     * @param firstLine the line of the first row
+     * @param lastLine  the line of the last row
+     * @param rows      the number of rows
+     */
+    void endRows(Object span, String source, String sampleId, int firstLine, int lastLine, int rows);
+
+    /**
+     * The taxonomy has been queried for a taxon or, if {@code ancestor} is not -1, for a path.
+     *
+     * @param span     the handle of {@link Span#LOOKUP}
+     * @param source   the file being validated, null if unknown
+     * @param line     the line being validated
+     * @param ancestor the upper taxid of a path query, -1 for a taxon query
+     * @param taxId    the taxid queried
+     * @param cacheHit true if answered from a {@link cami.io.TaxonomyCache} without querying the taxonomy
+     * @param exists   the answer
+     */
+    void endLookup(Object span, String source, int line, int ancestor, int taxId, boolean cacheHit,
+                   boolean exists);
+
+    /**
+     * Buffered output has been written to a file.
+     *
+     * @param span     the handle of {@link Span#FLUSH}
+     * @param target   the file written
+     * @param sampleId the sample id of the header written
+     * @param bytes    the number of bytes written
+     */
+    void endFlush(Object span, String target, String sampleId, int bytes);
+
+    /**
+     * A row has failed validation.
+     *
+     * @param source   the file read
+     * @param sampleId the sample the row belongs to
+     * @param line     the offending line
+     * @param reason   a short description
+     */
+    void validationFailure(String source, String sampleId, int line, String reason);
+}
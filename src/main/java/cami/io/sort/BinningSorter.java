@@ -0,0 +1,339 @@
+package cami.io.sort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cami.io.Base;
+import cami.io.Binning;
+
+/**
+ * External merge sort of binning files by one of their columns, typically
+ * {@link Binning#SEQUENCEID} or {@link Binning#BINID}.
+ * <p/>
+ * Rows are read with {@link Binning.Reader} into chunks bounded by the memory budget. Each chunk is
+ * sorted and spilled to a temporary run file on a worker thread while reading continues. The runs are
+ * then merged k-way, in several passes if there are more than {@link #MAX_FAN_IN} of them, and written
+ * through {@link Binning.Writer} with the header of the input preserved. The sort is stable.
+ */
+public class BinningSorter {
+    public final static long DEFAULT_MEMORY_BUDGET = 256L << 20;
+    public final static int MAX_FAN_IN = 128;
+    // rough per-object overheads used to estimate chunk sizes
+    private final static int ROW_OVERHEAD = 32;
+    private final static int FIELD_OVERHEAD = 48;
+
+    private final String column;
+    private final long memoryBudget;
+    private final int threads;
+    private final File tempDirectory;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Sorter with the default memory budget, one worker per core and the system temporary directory.
+     *
+     * @param column the column to sort by
+     */
+    public BinningSorter(String column) {
+        this(column, DEFAULT_MEMORY_BUDGET, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * @param column        the column to sort by
+     * @param memoryBudget  approximate bytes of rows held in memory across all workers
+     * @param threads       number of chunks sorted and spilled in parallel
+     * @param tempDirectory directory for run files, null for the system default
+     */
+    public BinningSorter(String column, long memoryBudget, int threads, File tempDirectory) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("at least one thread is required");
+        }
+        this.column = column;
+        this.memoryBudget = memoryBudget;
+        this.threads = threads;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Sort a binning file.
+     *
+     * @param inputFile   the binning file to sort
+     * @param outputFile  the sorted file to create
+     * @param checkHeader check mandatory header fields of the input
+     * @throws Base.ParseException invalid input or the sort column does not exist
+     * @throws IOException         error reading, writing or sorting
+     */
+    public void sort(String inputFile, String outputFile, boolean checkHeader) throws Base.ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(inputFile, checkHeader);
+        List<File> runs = new ArrayList<>();
+        try {
+            final int key = reader.getColumnDefinition().indexOf(this.column);
+            if (key == -1) {
+                throw new Base.FieldException(String.format("column %s not found in %s",
+                        this.column, reader.getColumnDefinition()));
+            }
+            String[] columns = reader.getColumnDefinition().toArray(new String[0]);
+            createRuns(reader, key, runs);
+            while (runs.size() > MAX_FAN_IN) {
+                runs = mergePass(runs, key);
+            }
+
+            final Binning.Writer writer = new Binning.Writer(outputFile, columns, true);
+            try {
+                writer.replaceHeaderInfo(reader.getOriginalHeaderInfo());
+                writer.writeHeader();
+                merge(runs, key, new RowSink() {
+                    @Override
+                    public void accept(String[] row) throws Base.ParseException, IOException {
+                        writer.writeRow(row);
+                    }
+                });
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+            deleteAll(runs);
+        }
+    }
+
+    /**
+     * Read the input in chunks and sort/spill them on a bounded number of workers.
+     */
+    private void createRuns(Binning.Reader reader, final int key, List<File> runs)
+            throws Base.ParseException, IOException {
+        long chunkBudget = Math.max(1, this.memoryBudget / this.threads);
+        final Semaphore inFlight = new Semaphore(this.threads);
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        List<Future<File>> pending = new ArrayList<>();
+        try {
+            List<String[]> chunk = new ArrayList<>();
+            long used = 0;
+            String[] row;
+            boolean eof = false;
+            while (!eof) {
+                row = reader.readRow();
+                eof = row == null;
+                if (!eof) {
+                    chunk.add(row);
+                    used += estimate(row);
+                }
+                if ((used >= chunkBudget || eof) && !chunk.isEmpty()) {
+                    // block while the maximum number of chunks is held in memory
+                    inFlight.acquireUninterruptibly();
+                    final String[][] rows = chunk.toArray(new String[0][]);
+                    chunk = new ArrayList<>();
+                    used = 0;
+                    pending.add(pool.submit(new Callable<File>() {
+                        @Override
+                        public File call() throws IOException {
+                            try {
+                                return spill(rows, key);
+                            } finally {
+                                inFlight.release();
+                            }
+                        }
+                    }));
+                }
+            }
+            for (Future<File> future : pending) {
+                runs.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while sorting runs");
+        } catch (ExecutionException e) {
+            throw new IOException("failed to sort run", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            // collect runs of failed or cancelled sorts so that they are deleted
+            for (Future<File> future : pending) {
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        File run = future.get();
+                        if (!runs.contains(run)) {
+                            runs.add(run);
+                        }
+                    } catch (InterruptedException | ExecutionException ignored) {
+                        // failure already reported
+                    }
+                }
+            }
+        }
+        getLogger().debug("created {} sorted runs", runs.size());
+    }
+
+    private static long estimate(String[] row) {
+        long bytes = ROW_OVERHEAD;
+        for (String field : row) {
+            bytes += FIELD_OVERHEAD + 2L * field.length();
+        }
+        return bytes;
+    }
+
+    private File spill(String[][] rows, final int key) throws IOException {
+        Arrays.sort(rows, byColumn(key));
+        File run = File.createTempFile("cami-sort", ".run", this.tempDirectory);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+            for (String[] row : rows) {
+                writeRow(out, row);
+            }
+        }
+        return run;
+    }
+
+    private List<File> mergePass(List<File> runs, int key) throws Base.ParseException, IOException {
+        List<File> merged = new ArrayList<>();
+        try {
+            for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                List<File> group = runs.subList(from, Math.min(runs.size(), from + MAX_FAN_IN));
+                File run = File.createTempFile("cami-sort", ".run", this.tempDirectory);
+                merged.add(run);
+                try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(run), 1 << 16))) {
+                    merge(group, key, new RowSink() {
+                        @Override
+                        public void accept(String[] row) throws IOException {
+                            writeRow(out, row);
+                        }
+                    });
+                }
+            }
+        } catch (Base.ParseException | IOException | RuntimeException e) {
+            deleteAll(merged);
+            throw e;
+        }
+        deleteAll(runs);
+        return merged;
+    }
+
+    /**
+     * K-way merge of sorted runs. Equal keys are taken from the earlier run first.
+     */
+    private void merge(List<File> runs, int key, RowSink sink) throws Base.ParseException, IOException {
+        final Comparator<String[]> rowOrder = byColumn(key);
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, runs.size()), new Comparator<Cursor>() {
+            @Override
+            public int compare(Cursor a, Cursor b) {
+                int c = rowOrder.compare(a.row, b.row);
+                return c != 0 ? c : Integer.compare(a.index, b.index);
+            }
+        });
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                Cursor cursor = new Cursor(runs.get(i), i);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+            while (!heap.isEmpty()) {
+                Cursor cursor = heap.poll();
+                sink.accept(cursor.row);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.in.close();
+            }
+        }
+    }
+
+    private static Comparator<String[]> byColumn(final int key) {
+        return new Comparator<String[]>() {
+            @Override
+            public int compare(String[] a, String[] b) {
+                return a[key].compareTo(b[key]);
+            }
+        };
+    }
+
+    /*
+     * Run encoding: field count followed by length-prefixed UTF-8 fields.
+     */
+
+    private static void writeRow(DataOutputStream out, String[] row) throws IOException {
+        out.writeShort(row.length);
+        for (String field : row) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String[] readRow(DataInputStream in) throws IOException {
+        int fields;
+        try {
+            fields = in.readUnsignedShort();
+        } catch (EOFException e) {
+            return null;
+        }
+        String[] row = new String[fields];
+        for (int i = 0; i < fields; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            row[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return row;
+    }
+
+    private void deleteAll(List<File> files) {
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                getLogger().warn("could not delete temporary file {}", file);
+            }
+        }
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+
+    private interface RowSink {
+        void accept(String[] row) throws Base.ParseException, IOException;
+    }
+
+    /**
+     * Current row of an open run.
+     */
+    private static class Cursor {
+        private final DataInputStream in;
+        private final int index;
+        private String[] row;
+
+        private Cursor(File run, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+            this.index = index;
+        }
+
+        private boolean advance() throws IOException {
+            this.row = readRow(this.in);
+            return this.row != null;
+        }
+    }
+}
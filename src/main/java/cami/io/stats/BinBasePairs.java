@@ -0,0 +1,111 @@
+package cami.io.stats;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.fasta.FastaIndex;
+import cami.io.util.StringDictionary;
+
+/**
+ * Base-pair weighted bin sizes.
+ * <p/>
+ * Binning rows are streamed and joined against the sequence lengths of a {@link FastaIndex}, summing the
+ * number of base pairs and sequences per bin. Only the bin table is held in memory. Sequences which are
+ * not in the FASTA index are counted but contribute no base pairs.
+ */
+public class BinBasePairs {
+    private final FastaIndex lengths;
+    private final StringDictionary bins = new StringDictionary();
+    private long[] basePairs = new long[64];
+    private int[] sequences = new int[64];
+    private long missing = 0;
+
+    public BinBasePairs(FastaIndex lengths) {
+        this.lengths = lengths;
+    }
+
+    /**
+     * Accumulate the remaining rows of an open reader. Bins are taken from the BINID column, or from
+     * the TAXID column if there is none. The reader is not closed.
+     *
+     * @param reader an open binning reader
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading from file
+     */
+    public void addAll(Base.Reader reader) throws Base.ParseException, IOException {
+        List<String> columns = reader.getColumnDefinition();
+        int seqIndex = columns.indexOf(Binning.SEQUENCEID);
+        int binIndex = columns.indexOf(Binning.BINID);
+        if (binIndex == -1) {
+            binIndex = columns.indexOf(Binning.TAXID);
+        }
+        if (seqIndex == -1 || binIndex == -1) {
+            throw new Base.FieldException(String.format("no SEQUENCEID and BINID or TAXID column in %s", columns));
+        }
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            add(row[seqIndex], row[binIndex]);
+        }
+    }
+
+    /**
+     * Accumulate a single assignment.
+     *
+     * @param sequenceId the assigned sequence
+     * @param binId      the bin of the sequence
+     */
+    public void add(String sequenceId, String binId) {
+        int bin = this.bins.add(binId);
+        if (bin == this.basePairs.length) {
+            this.basePairs = Arrays.copyOf(this.basePairs, bin << 1);
+            this.sequences = Arrays.copyOf(this.sequences, bin << 1);
+        }
+        long length = this.lengths.getLength(sequenceId);
+        if (length == FastaIndex.MISSING) {
+            this.missing++;
+        } else {
+            this.basePairs[bin] += length;
+        }
+        this.sequences[bin]++;
+    }
+
+    public int getBinCount() {
+        return this.bins.size();
+    }
+
+    public String getBinId(int bin) {
+        return this.bins.get(bin);
+    }
+
+    /**
+     * @return the total length of the sequences assigned to a bin
+     */
+    public long getBasePairs(int bin) {
+        return this.basePairs[bin];
+    }
+
+    public int getSequenceCount(int bin) {
+        return this.sequences[bin];
+    }
+
+    /**
+     * @return number of assigned sequences which were not found in the FASTA index
+     */
+    public long getMissingCount() {
+        return this.missing;
+    }
+
+    /**
+     * @return the total length of all assigned sequences
+     */
+    public long getTotalBasePairs() {
+        long total = 0;
+        for (int bin = 0; bin < this.bins.size(); bin++) {
+            total += this.basePairs[bin];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,236 @@
+package cami.io.stats;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.util.IntIntMap;
+import cami.io.util.LongIntMap;
+import cami.io.util.StringDictionary;
+
+/**
+ * Single-pass statistics over binning rows.
+ * <p/>
+ * One pass computes the number of bins, sequences per bin, distinct taxa per bin and the TAXID
+ * distribution. Bins are interned to codes and counted in primitive hash tables; distinct taxa per bin
+ * are tracked as (bin, taxid) pairs. When a file has no BINID column its TAXIDs act as bins.
+ * <p/>
+ * Instances are not thread-safe, but results of several instances, for example one per chunk of a
+ * file parsed in parallel, can be combined with {@link #merge(BinStatistics)}.
+ */
+public class BinStatistics {
+    private final StringDictionary bins = new StringDictionary();
+    // sequences per bin code
+    private int[] sequencesPerBin = new int[64];
+    // distinct taxa per bin code
+    private int[] taxaPerBin = new int[64];
+    // (bin code, taxid) pairs seen so far
+    private final LongIntMap binTaxa = new LongIntMap(1 << 10);
+    // rows per taxid
+    private final IntIntMap taxa = new IntIntMap(1 << 10);
+    private long rows = 0;
+    private long unassigned = 0;
+
+    /**
+     * Accumulate all rows of a binning file.
+     *
+     * @param fileName    the binning file
+     * @param checkHeader check mandatory header fields
+     * @return the statistics of the file
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading from file
+     */
+    public static BinStatistics of(String fileName, boolean checkHeader) throws Base.ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(fileName, checkHeader);
+        try {
+            BinStatistics statistics = new BinStatistics();
+            statistics.addAll(reader);
+            return statistics;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Accumulate the remaining rows of an open reader. The reader is not closed.
+     *
+     * @param reader an open binning reader
+     * @throws Base.ParseException invalid input
+     * @throws IOException         error reading from file
+     */
+    public void addAll(Base.Reader reader) throws Base.ParseException, IOException {
+        List<String> columns = reader.getColumnDefinition();
+        int binIndex = columns.indexOf(Binning.BINID);
+        int taxIndex = columns.indexOf(Binning.TAXID);
+        if (binIndex == -1 && taxIndex == -1) {
+            throw new Base.FieldException(String.format("no BINID or TAXID column in %s", columns));
+        }
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            int taxId = -1;
+            if (taxIndex != -1) {
+                try {
+                    taxId = Base.toInt(row[taxIndex]);
+                } catch (NumberFormatException e) {
+                    throw new Base.FieldException(String.format("invalid TAXID [%s]", row[taxIndex]));
+                }
+            }
+            add(binIndex != -1 ? row[binIndex] : row[taxIndex], taxId);
+        }
+    }
+
+    /**
+     * Accumulate a single assignment.
+     *
+     * @param binId the bin of the sequence, null or empty if the sequence is unassigned
+     * @param taxId the taxon of the sequence or -1 if unknown
+     */
+    public void add(String binId, int taxId) {
+        this.rows++;
+        if (binId == null || binId.isEmpty()) {
+            this.unassigned++;
+            return;
+        }
+        int bin = this.bins.add(binId);
+        add(bin, taxId, 1);
+    }
+
+    private void add(int bin, int taxId, int sequences) {
+        if (bin >= this.sequencesPerBin.length) {
+            int capacity = Math.max(bin + 1, this.sequencesPerBin.length << 1);
+            this.sequencesPerBin = Arrays.copyOf(this.sequencesPerBin, capacity);
+            this.taxaPerBin = Arrays.copyOf(this.taxaPerBin, capacity);
+        }
+        this.sequencesPerBin[bin] += sequences;
+        if (taxId != -1) {
+            this.taxa.addTo(taxId, sequences);
+            long pair = ((long) bin << 32) | (taxId & 0xffffffffL);
+            if (!this.binTaxa.containsKey(pair)) {
+                this.binTaxa.put(pair, 1);
+                this.taxaPerBin[bin]++;
+            }
+        }
+    }
+
+    /**
+     * Add the statistics of another instance to this one. Bins are matched by BINID.
+     *
+     * @param other statistics of a disjoint set of rows
+     */
+    public void merge(BinStatistics other) {
+        this.rows += other.rows;
+        this.unassigned += other.unassigned;
+        final int[] translate = new int[other.bins.size()];
+        for (int bin = 0; bin < translate.length; bin++) {
+            translate[bin] = this.bins.add(other.bins.get(bin));
+            add(translate[bin], -1, other.sequencesPerBin[bin]);
+        }
+        other.binTaxa.forEach(new LongIntMap.Visitor() {
+            @Override
+            public void visit(long pair, int value) {
+                int bin = translate[(int) (pair >>> 32)];
+                long mapped = ((long) bin << 32) | (pair & 0xffffffffL);
+                if (!binTaxa.containsKey(mapped)) {
+                    binTaxa.put(mapped, 1);
+                    taxaPerBin[bin]++;
+                }
+            }
+        });
+        this.taxa.merge(other.taxa);
+    }
+
+    /**
+     * @return a compact, immutable copy of the current statistics
+     */
+    public Summary summarize() {
+        int n = this.bins.size();
+        String[] binIds = new String[n];
+        for (int bin = 0; bin < n; bin++) {
+            binIds[bin] = this.bins.get(bin);
+        }
+        final int[] taxIds = new int[this.taxa.size()];
+        final int[] taxonCounts = new int[taxIds.length];
+        this.taxa.forEach(new IntIntMap.Visitor() {
+            private int i = 0;
+
+            @Override
+            public void visit(int key, int value) {
+                taxIds[i] = key;
+                taxonCounts[i++] = value;
+            }
+        });
+        return new Summary(this.rows, this.unassigned, binIds, Arrays.copyOf(this.sequencesPerBin, n),
+                Arrays.copyOf(this.taxaPerBin, n), taxIds, taxonCounts);
+    }
+
+    /**
+     * Immutable result of {@link BinStatistics}. Per-bin arrays are indexed alike, as are the
+     * TAXID distribution arrays.
+     */
+    public static class Summary {
+        private final long rows;
+        private final long unassigned;
+        private final String[] binIds;
+        private final int[] sequencesPerBin;
+        private final int[] taxaPerBin;
+        private final int[] taxIds;
+        private final int[] taxonCounts;
+
+        private Summary(long rows, long unassigned, String[] binIds, int[] sequencesPerBin, int[] taxaPerBin,
+                        int[] taxIds, int[] taxonCounts) {
+            this.rows = rows;
+            this.unassigned = unassigned;
+            this.binIds = binIds;
+            this.sequencesPerBin = sequencesPerBin;
+            this.taxaPerBin = taxaPerBin;
+            this.taxIds = taxIds;
+            this.taxonCounts = taxonCounts;
+        }
+
+        public long getRowCount() {
+            return rows;
+        }
+
+        public long getUnassignedCount() {
+            return unassigned;
+        }
+
+        public int getBinCount() {
+            return binIds.length;
+        }
+
+        public String getBinId(int bin) {
+            return binIds[bin];
+        }
+
+        public int getSequenceCount(int bin) {
+            return sequencesPerBin[bin];
+        }
+
+        public int getTaxonCount(int bin) {
+            return taxaPerBin[bin];
+        }
+
+        /**
+         * @return the distinct TAXIDs of the distribution
+         */
+        public int[] getTaxIds() {
+            return taxIds.clone();
+        }
+
+        /**
+         * @return the number of sequences assigned to each TAXID of {@link #getTaxIds()}
+         */
+        public int[] getTaxonSequenceCounts() {
+            return taxonCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rows=%d unassigned=%d bins=%d taxa=%d", rows, unassigned, binIds.length,
+                    taxIds.length);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package cami.io.synth;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.LineageTable;
+import cami.io.Profile;
+
+/**
+ * Seeded generator of CAMI binning, profile and concatenated profile files at arbitrary scale.
+ * <p/>
+ * A random taxonomy is generated over the first {@link #getLineageDepth()} ranks of
+ * {@link Profile#RANK_NAMES}, with {@link #getTaxa()} taxa at the lowest rank and geometrically fewer
+ * above. Each sample draws log-normal abundances for a random subset of the lowest taxa, which gives the
+ * long-tailed communities of real data sets. All files are written through {@link Binning.Writer} and
+ * {@link Profile.Writer}, and the same seed and settings always produce the same bytes.
+ * <p/>
+ * The generated taxonomy is available as a {@link LineageTable}, so validation can be run against it.
+ */
+public class SyntheticData {
+    private final static String CUSTOM_COLUMN = "_SYNTH_COL";
+    private final static double LOG_NORMAL_SIGMA = 2.0;
+    private final static double PRESENCE = 0.5;
+
+    private final long seed;
+    private int taxa = 1000;
+    private int lineageDepth = Profile.RANK_NAMES.length;
+    private int customColumns = 0;
+
+    // generated on first use
+    private LineageTable taxonomy = null;
+    private int[][] taxIds;
+    private int[][] parents;
+
+    public SyntheticData(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return the taxonomy, generating it on first use
+     */
+    public LineageTable getTaxonomy() {
+        if (this.taxonomy == null) {
+            generateTaxonomy();
+        }
+        return this.taxonomy;
+    }
+
+    private void generateTaxonomy() {
+        Random random = new Random(this.seed);
+        this.taxonomy = new LineageTable();
+        this.taxonomy.add(1, 1, "no rank", "root");
+        this.taxIds = new int[this.lineageDepth][];
+        this.parents = new int[this.lineageDepth][];
+        int next = 2;
+        for (int rank = 0; rank < this.lineageDepth; rank++) {
+            int count = rank == this.lineageDepth - 1 ? this.taxa
+                    : (int) Math.max(1, Math.round(Math.pow(this.taxa, (rank + 1.0) / this.lineageDepth)));
+            this.taxIds[rank] = new int[count];
+            this.parents[rank] = new int[count];
+            for (int i = 0; i < count; i++) {
+                int taxId = next++;
+                // the first taxa of a rank cover every parent, the remainder are spread at random
+                int parent = rank == 0 ? -1
+                        : i < this.taxIds[rank - 1].length ? i : random.nextInt(this.taxIds[rank - 1].length);
+                this.taxIds[rank][i] = taxId;
+                this.parents[rank][i] = parent;
+                this.taxonomy.add(taxId, parent == -1 ? 1 : this.taxIds[rank - 1][parent],
+                        Profile.RANK_NAMES[rank], Profile.RANK_NAMES[rank] + "_" + taxId);
+            }
+        }
+    }
+
+    /**
+     * Draw the relative abundances of the lowest taxa for a sample, normalized to a sum of 1.
+     */
+    private double[] sampleAbundances(Random random) {
+        getTaxonomy();
+        double[] abundances = new double[this.taxa];
+        double sum = 0.0;
+        for (int i = 0; i < abundances.length; i++) {
+            if (random.nextDouble() < PRESENCE || (i == abundances.length - 1 && sum == 0.0)) {
+                abundances[i] = Math.exp(LOG_NORMAL_SIGMA * random.nextGaussian());
+                sum += abundances[i];
+            }
+        }
+        for (int i = 0; i < abundances.length; i++) {
+            abundances[i] /= sum;
+        }
+        return abundances;
+    }
+
+    private Map<String, String> header(String sampleId) {
+        Map<String, String> header = new HashMap<>();
+        header.put("version", "0.9");
+        header.put("sampleid", sampleId);
+        return header;
+    }
+
+    private String[] columnDefinition(String[] columns) {
+        String[] definition = Arrays.copyOf(columns, columns.length + this.customColumns);
+        for (int i = 0; i < this.customColumns; i++) {
+            definition[columns.length + i] = CUSTOM_COLUMN + i;
+        }
+        return definition;
+    }
+
+    /**
+     * Write a binning file. Sequences are assigned to the lowest taxa in proportion to the abundances
+     * of a single sample; each taxon forms one bin.
+     *
+     * @param fileName         the file to create
+     * @param rows             the number of sequences
+     * @param columnDefinition one of the {@code Binning.COLUMNDEF_*} layouts, custom columns are appended
+     * @throws Base.ParseException error writing header or rows
+     * @throws IOException         error writing to file
+     */
+    public void writeBinning(String fileName, long rows, String[] columnDefinition)
+            throws Base.ParseException, IOException {
+        Random random = new Random(this.seed + 1);
+        double[] cumulative = sampleAbundances(random);
+        for (int i = 1; i < cumulative.length; i++) {
+            cumulative[i] += cumulative[i - 1];
+        }
+        int[] leaves = this.taxIds[this.lineageDepth - 1];
+        int taxIndex = Arrays.asList(columnDefinition).indexOf(Binning.TAXID);
+        int binIndex = Arrays.asList(columnDefinition).indexOf(Binning.BINID);
+
+        Binning.Writer writer = new Binning.Writer(fileName, columnDefinition(columnDefinition), true);
+        writer.replaceHeaderInfo(header("synthetic"));
+        writer.writeHeader();
+        String[] row = new String[columnDefinition.length + this.customColumns];
+        for (long r = 0; r < rows; r++) {
+            int leaf = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+            leaf = Math.min(leaves.length - 1, leaf < 0 ? -leaf - 1 : leaf);
+            row[0] = "S0C" + r;
+            if (taxIndex != -1) {
+                row[taxIndex] = Integer.toString(leaves[leaf]);
+            }
+            if (binIndex != -1) {
+                row[binIndex] = "bin." + leaves[leaf];
+            }
+            for (int c = columnDefinition.length; c < row.length; c++) {
+                row[c] = Integer.toString(random.nextInt(1000));
+            }
+            writer.writeRow(row);
+        }
+        writer.close();
+    }
+
+    /**
+     * Write a profile of one sample with TAXPATHSN, rank by rank.
+     *
+     * @param fileName the file to create
+     * @param sample   the sample number, which selects the abundances
+     * @throws Base.ParseException error writing header or rows
+     * @throws IOException         error writing to file
+     */
+    public void writeProfile(String fileName, int sample) throws Base.ParseException, IOException {
+        Random random = new Random(this.seed + 2 + sample);
+        double[][] abundances = new double[this.lineageDepth][];
+        abundances[this.lineageDepth - 1] = sampleAbundances(random);
+        for (int rank = this.lineageDepth - 1; rank > 0; rank--) {
+            abundances[rank - 1] = new double[this.taxIds[rank - 1].length];
+            for (int i = 0; i < abundances[rank].length; i++) {
+                abundances[rank - 1][this.parents[rank][i]] += abundances[rank][i];
+            }
+        }
+
+        Profile.Writer writer = new Profile.Writer(fileName, columnDefinition(Profile.COLUMNDEF_TAXPATH_SN), true);
+        // as the padded rows below
+        writer.setFractionDigits(Base.Writer.FRACTION_DIGITS);
+        Map<String, String> header = header("sample" + sample);
+        header.put(Profile.RANKS_KEY, Profile.PRO_RANKS);
+        writer.replaceHeaderInfo(header);
+        writer.writeHeader();
+        int width = Profile.COLUMNDEF_TAXPATH_SN.length;
+        String[] row = new String[width + this.customColumns];
+        int[] lineage = new int[this.lineageDepth];
+        String[] names = new String[this.lineageDepth];
+        for (int rank = 0; rank < this.lineageDepth; rank++) {
+            for (int i = 0; i < abundances[rank].length; i++) {
+                if (abundances[rank][i] <= 0) {
+                    continue;
+                }
+                lineage(rank, i, lineage, names);
+                if (this.customColumns == 0) {
+                    writer.writeProfileRow(this.taxIds[rank][i], rank, Arrays.copyOf(lineage, rank + 1),
+                            Arrays.copyOf(names, rank + 1), 100.0 * abundances[rank][i]);
+                    continue;
+                }
+                row[0] = Integer.toString(this.taxIds[rank][i]);
+                row[1] = Profile.RANK_NAMES[rank];
+                row[2] = join(lineage, rank + 1);
+                row[3] = join(names, rank + 1);
+                row[4] = String.format(Locale.ROOT, "%.5f", 100.0 * abundances[rank][i]);
+                for (int c = width; c < row.length; c++) {
+                    row[c] = Integer.toString(random.nextInt(1000));
+                }
+                writer.writeRow(row);
+            }
+        }
+        writer.close();
+    }
+
+    private void lineage(int rank, int index, int[] lineage, String[] names) {
+        for (int r = rank; r >= 0; r--) {
+            lineage[r] = this.taxIds[r][index];
+            names[r] = this.taxonomy.getName(lineage[r]);
+            index = this.parents[r][index];
+        }
+    }
+
+    private static String join(int[] values, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    private static String join(String[] values, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write the profiles of several samples, one after the other, into a single file.
+     *
+     * @param fileName the file to create
+     * @param samples  the number of samples
+     * @throws Base.ParseException error writing header or rows
+     * @throws IOException         error writing to file
+     */
+    public void writeConcatenatedProfile(String fileName, int samples) throws Base.ParseException, IOException {
+        File part = File.createTempFile("cami-synth", ".profile");
+        try (FileChannel out = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int sample = 0; sample < samples; sample++) {
+                writeProfile(part.getPath(), sample);
+                try (FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long position = 0; position < size; ) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        } finally {
+            part.delete();
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getTaxa() {
+        return taxa;
+    }
+
+    /**
+     * @param taxa the number of taxa at the lowest rank
+     */
+    public void setTaxa(int taxa) {
+        if (taxa < 1) {
+            throw new IllegalArgumentException("at least one taxon is required");
+        }
+        this.taxa = taxa;
+        this.taxonomy = null;
+    }
+
+    public int getLineageDepth() {
+        return lineageDepth;
+    }
+
+    /**
+     * @param lineageDepth the number of ranks, counted from superkingdom
+     */
+    public void setLineageDepth(int lineageDepth) {
+        if (lineageDepth < 1 || lineageDepth > Profile.RANK_NAMES.length) {
+            throw new IllegalArgumentException("invalid lineage depth " + lineageDepth);
+        }
+        this.lineageDepth = lineageDepth;
+        this.taxonomy = null;
+    }
+
+    public int getCustomColumns() {
+        return customColumns;
+    }
+
+    /**
+     * @param customColumns the number of integer custom columns appended to every file
+     */
+    public void setCustomColumns(int customColumns) {
+        this.customColumns = customColumns;
+    }
+
+    /**
+     * @return the taxids of a rank of the generated taxonomy
+     */
+    public int[] getTaxIds(int rank) {
+        getTaxonomy();
+        return this.taxIds[rank].clone();
+    }
+}
@@ -0,0 +1,183 @@
+package cami.io.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from {@code int} to {@code int} without boxing.
+ * <p/>
+ * Keys are stored in a linear probing table, the key {@code 0} is kept aside as it marks free slots.
+ * Instances are not thread-safe.
+ */
+public class IntIntMap {
+    private final static float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+    private boolean hasZero = false;
+    private int zeroValue;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    /**
+     * @param expected number of keys which can be stored without rehashing
+     */
+    public IntIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Spread the bits of a key (murmur3 finalizer).
+     */
+    static int mix(int key) {
+        int h = key * 0x85ebca6b;
+        h ^= h >>> 13;
+        return h * 0xc2b2ae35;
+    }
+
+    private int slot(int key) {
+        int i = mix(key) & this.mask;
+        while (this.keys[i] != 0 && this.keys[i] != key) {
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    public boolean containsKey(int key) {
+        return key == 0 ? this.hasZero : this.keys[slot(key)] != 0;
+    }
+
+    /**
+     * @param key     the key to look up
+     * @param missing value returned when the key is not present
+     * @return the value of the key or {@code missing}
+     */
+    public int get(int key, int missing) {
+        if (key == 0) {
+            return this.hasZero ? this.zeroValue : missing;
+        }
+        int i = slot(key);
+        return this.keys[i] != 0 ? this.values[i] : missing;
+    }
+
+    public void put(int key, int value) {
+        if (key == 0) {
+            if (!this.hasZero) {
+                this.hasZero = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return;
+        }
+        int i = slot(key);
+        if (this.keys[i] == 0) {
+            this.keys[i] = key;
+            this.size++;
+            this.values[i] = value;
+            if (this.size > this.keys.length * LOAD_FACTOR) {
+                rehash();
+            }
+        } else {
+            this.values[i] = value;
+        }
+    }
+
+    /**
+     * Add {@code delta} to the value of a key, absent keys start at zero.
+     *
+     * @return the updated value
+     */
+    public int addTo(int key, int delta) {
+        if (key == 0) {
+            int v = (this.hasZero ? this.zeroValue : 0) + delta;
+            put(0, v);
+            return v;
+        }
+        int i = slot(key);
+        if (this.keys[i] != 0) {
+            return this.values[i] += delta;
+        }
+        put(key, delta);
+        return delta;
+    }
+
+    /**
+     * Add all entries of another map to this one, summing the values of common keys.
+     */
+    public void merge(IntIntMap other) {
+        if (other.hasZero) {
+            addTo(0, other.zeroValue);
+        }
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != 0) {
+                addTo(other.keys[i], other.values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        this.hasZero = false;
+        this.size = 0;
+    }
+
+    /**
+     * Visit all entries in table order.
+     */
+    public void forEach(Visitor visitor) {
+        if (this.hasZero) {
+            visitor.visit(0, this.zeroValue);
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0) {
+                visitor.visit(this.keys[i], this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return all keys in table order
+     */
+    public int[] keys() {
+        int[] out = new int[this.size];
+        int n = 0;
+        if (this.hasZero) {
+            out[n++] = 0;
+        }
+        for (int key : this.keys) {
+            if (key != 0) {
+                out[n++] = key;
+            }
+        }
+        return out;
+    }
+
+    private void rehash() {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new int[oldKeys.length << 1];
+        this.values = new int[oldKeys.length << 1];
+        this.mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                this.keys[j] = oldKeys[i];
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+
+    public interface Visitor {
+        void visit(int key, int value);
+    }
+}
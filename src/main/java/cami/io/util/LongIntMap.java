@@ -0,0 +1,127 @@
+package cami.io.util;
+
+/**
+ * Open-addressing hash map from {@code long} to {@code int} without boxing.
+ * <p/>
+ * Keys are stored in a linear probing table, the key {@code 0} is kept aside as it marks free slots.
+ * Instances are not thread-safe.
+ */
+public class LongIntMap {
+    private final static float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+    private boolean hasZero = false;
+    private int zeroValue;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    /**
+     * @param expected number of keys which can be stored without rehashing
+     */
+    public LongIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Spread the bits of a key (murmur3 finalizer).
+     */
+    static int mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private int slot(long key) {
+        int i = mix(key) & this.mask;
+        while (this.keys[i] != 0 && this.keys[i] != key) {
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    public boolean containsKey(long key) {
+        return key == 0 ? this.hasZero : this.keys[slot(key)] != 0;
+    }
+
+    /**
+     * @param key     the key to look up
+     * @param missing value returned when the key is not present
+     * @return the value of the key or {@code missing}
+     */
+    public int get(long key, int missing) {
+        if (key == 0) {
+            return this.hasZero ? this.zeroValue : missing;
+        }
+        int i = slot(key);
+        return this.keys[i] != 0 ? this.values[i] : missing;
+    }
+
+    public void put(long key, int value) {
+        if (key == 0) {
+            if (!this.hasZero) {
+                this.hasZero = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return;
+        }
+        int i = slot(key);
+        if (this.keys[i] == 0) {
+            this.keys[i] = key;
+            this.size++;
+            this.values[i] = value;
+            if (this.size > this.keys.length * LOAD_FACTOR) {
+                rehash();
+            }
+        } else {
+            this.values[i] = value;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Visit all entries in table order.
+     */
+    public void forEach(Visitor visitor) {
+        if (this.hasZero) {
+            visitor.visit(0, this.zeroValue);
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0) {
+                visitor.visit(this.keys[i], this.values[i]);
+            }
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[oldKeys.length << 1];
+        this.values = new int[oldKeys.length << 1];
+        this.mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                this.keys[j] = oldKeys[i];
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+
+    public interface Visitor {
+        void visit(long key, int value);
+    }
+}
@@ -0,0 +1,109 @@
+package cami.io.util;
+
+import java.util.Arrays;
+
+/**
+ * Interns strings to dense {@code int} codes 0, 1, 2, ... in order of first appearance.
+ * <p/>
+ * Codes are kept in an open-addressing table next to their cached hash codes, so lookups
+ * do not box and each distinct string is stored once. Instances are not thread-safe.
+ */
+public class StringDictionary {
+    private final static float LOAD_FACTOR = 0.5f;
+
+    // code + 1 of the string in each slot, 0 marks a free slot
+    private int[] table;
+    private int mask;
+    private String[] values;
+    private int[] hashes;
+    private int size = 0;
+
+    public StringDictionary() {
+        this(16);
+    }
+
+    /**
+     * @param expected number of strings which can be stored without rehashing
+     */
+    public StringDictionary(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        this.values = new String[Math.max(4, expected)];
+        this.hashes = new int[this.values.length];
+    }
+
+    private static int hash(String value) {
+        return IntIntMap.mix(value.hashCode());
+    }
+
+    private int slot(String value, int hash) {
+        int i = hash & this.mask;
+        while (this.table[i] != 0) {
+            int code = this.table[i] - 1;
+            if (this.hashes[code] == hash && this.values[code].equals(value)) {
+                break;
+            }
+            i = (i + 1) & this.mask;
+        }
+        return i;
+    }
+
+    /**
+     * @return the code of {@code value}, assigning the next free code if it is new
+     */
+    public int add(String value) {
+        int hash = hash(value);
+        int i = slot(value, hash);
+        if (this.table[i] != 0) {
+            return this.table[i] - 1;
+        }
+        if (this.size == this.values.length) {
+            int capacity = this.size + (this.size >> 1);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.hashes = Arrays.copyOf(this.hashes, capacity);
+        }
+        int code = this.size++;
+        this.values[code] = value;
+        this.hashes[code] = hash;
+        this.table[i] = code + 1;
+        if (this.size > this.table.length * LOAD_FACTOR) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * @return the code of {@code value} or -1 if it has not been added
+     */
+    public int code(String value) {
+        int i = slot(value, hash(value));
+        return this.table[i] - 1;
+    }
+
+    /**
+     * @return the string of a code
+     */
+    public String get(int code) {
+        if (code < 0 || code >= this.size) {
+            throw new IndexOutOfBoundsException("unknown code " + code);
+        }
+        return this.values[code];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private void rehash() {
+        this.table = new int[this.table.length << 1];
+        this.mask = this.table.length - 1;
+        for (int code = 0; code < this.size; code++) {
+            int i = this.hashes[code] & this.mask;
+            while (this.table[i] != 0) {
+                i = (i + 1) & this.mask;
+            }
+            this.table[i] = code + 1;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package cami.io.validate;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import mzd.taxonomy.neo.NeoDao;
+
+import cami.io.Base;
+import cami.io.CamiFormat;
+import cami.io.LineReader;
+
+/**
+ * Validates many binning and profile submissions against one taxonomy.
+ * <p/>
+ * The taxonomy is opened once and shared by a fixed pool of workers, each validating a whole file with the
+ * reader chosen by {@link CamiFormat}, concatenated profiles included. A {@link ValidationResult} is written
+ * as a line of JSON as soon as each file is done, followed by a summary line.
+ * <p/>
+ * Usage: {@code BatchValidator -db path [-threads n] [-no-header-check] [-report file] (file|directory|glob)...}
+ * <p/>
+ * Directories are searched recursively, hidden files skipped. Glob patterns follow
+ * {@link java.nio.file.FileSystem#getPathMatcher(String)} and should be quoted against the shell. The exit
+ * code is {@link #EXIT_VALID} if every file is valid, {@link #EXIT_INVALID} if some are invalid,
+ * {@link #EXIT_ERROR} if some could not be read and {@link #EXIT_USAGE} for bad arguments.
+ */
+public class BatchValidator {
+    public final static int EXIT_VALID = 0;
+    public final static int EXIT_INVALID = 1;
+    public final static int EXIT_ERROR = 2;
+    public final static int EXIT_USAGE = 3;
+    private final static String GLOB_CHARS = "*?[{";
+
+    private final NeoDao neoDao;
+    private final int threads;
+    private boolean checkHeader = true;
+
+    /**
+     * @param neoDao  the taxonomy, shared by all workers and not shut down
+     * @param threads the number of files validated at once
+     */
+    public BatchValidator(NeoDao neoDao, int threads) {
+        this.neoDao = neoDao;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String dbPath = null;
+        String reportFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean checkHeader = true;
+        List<String> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-db":
+                        dbPath = args[++i];
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-report":
+                        reportFile = args[++i];
+                        break;
+                    case "-no-header-check":
+                        checkHeader = false;
+                        break;
+                    default:
+                        if (args[i].startsWith("-")) {
+                            throw new IllegalArgumentException("unknown option " + args[i]);
+                        }
+                        files.addAll(expand(args[i]));
+                }
+            }
+            if (dbPath == null) {
+                throw new IllegalArgumentException("no taxonomy given with -db");
+            }
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("no files to validate");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "missing option value" : e.getMessage());
+            System.err.println("usage: BatchValidator -db path [-threads n] [-no-header-check] [-report file] "
+                    + "(file|directory|glob)...");
+            System.exit(EXIT_USAGE);
+            return;
+        }
+
+        NeoDao neoDao = new NeoDao(new File(dbPath));
+        int exitCode;
+        try (Writer report = reportFile == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : new OutputStreamWriter(Files.newOutputStream(Paths.get(reportFile)), StandardCharsets.UTF_8)) {
+            BatchValidator validator = new BatchValidator(neoDao, threads);
+            validator.setCheckHeader(checkHeader);
+            exitCode = validator.validateAll(files, report);
+        } finally {
+            neoDao.shutdown();
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Expand a command line argument into the files it names.
+     *
+     * @param argument a file, a directory or a glob pattern
+     * @return the files found in sorted order, the argument itself if it names no directory nor pattern
+     * @throws IOException error searching a directory
+     */
+    public static List<String> expand(String argument) throws IOException {
+        Path path;
+        int glob = -1;
+        for (int i = 0; i < argument.length() && glob < 0; i++) {
+            if (GLOB_CHARS.indexOf(argument.charAt(i)) >= 0) {
+                glob = i;
+            }
+        }
+        final PathMatcher matcher;
+        int maxDepth = Integer.MAX_VALUE;
+        if (glob < 0) {
+            path = Paths.get(argument);
+            if (!Files.isDirectory(path)) {
+                return Collections.singletonList(argument);
+            }
+            matcher = null;
+        } else {
+            // search from the directory above the first wildcard
+            int sep = argument.lastIndexOf('/', glob);
+            path = Paths.get(sep < 0 ? "" : argument.substring(0, sep + 1));
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + argument);
+            if (!argument.contains("**")) {
+                maxDepth = Paths.get(argument).getNameCount() - (sep < 0 ? 0 : path.getNameCount());
+            }
+        }
+        final List<String> files = new ArrayList<>();
+        final Path root = path;
+        Files.walkFileTree(path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && isHidden(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !isHidden(file) && (matcher == null || matcher.matches(file))) {
+                    files.add(file.toString());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+
+    private static boolean isHidden(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    /**
+     * Validate files on the pool, writing each result as soon as it is known.
+     *
+     * @param files  the files to validate
+     * @param report receives a line of JSON per file, in order of completion, and a summary line
+     * @return the exit code for the worst result
+     * @throws IOException error writing the report
+     */
+    public int validateAll(List<String> files, Writer report) throws IOException {
+        long start = System.nanoTime();
+        PrintWriter out = new PrintWriter(report);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.threads, Math.max(1, files.size())));
+        CompletionService<ValidationResult> completion = new ExecutorCompletionService<>(pool);
+        int[] counts = new int[ValidationResult.Status.values().length];
+        long rows = 0;
+        try {
+            for (final String fileName : files) {
+                completion.submit(new Callable<ValidationResult>() {
+                    @Override
+                    public ValidationResult call() {
+                        return validate(fileName);
+                    }
+                });
+            }
+            for (int i = 0; i < files.size(); i++) {
+                ValidationResult result = completion.take().get();
+                counts[result.getStatus().ordinal()]++;
+                rows += result.getRows();
+                out.println(result.toJson());
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while validating");
+        } catch (ExecutionException e) {
+            throw new IOException("failed to validate", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        out.printf("{\"files\": %d, \"valid\": %d, \"invalid\": %d, \"errors\": %d, \"rows\": %d, \"millis\": %d}%n",
+                files.size(), counts[ValidationResult.Status.VALID.ordinal()],
+                counts[ValidationResult.Status.INVALID.ordinal()], counts[ValidationResult.Status.ERROR.ordinal()],
+                rows, (System.nanoTime() - start) / 1000000L);
+        out.flush();
+        if (counts[ValidationResult.Status.ERROR.ordinal()] > 0) {
+            return EXIT_ERROR;
+        }
+        return counts[ValidationResult.Status.INVALID.ordinal()] > 0 ? EXIT_INVALID : EXIT_VALID;
+    }
+
+    /**
+     * Validate a single file completely.
+     *
+     * @param fileName the file to validate
+     * @return the result, never null
+     */
+    public ValidationResult validate(String fileName) {
+        long start = System.nanoTime();
+        CamiFormat format;
+        try {
+            format = CamiFormat.probe(fileName);
+        } catch (IOException e) {
+            return failure(fileName, ValidationResult.Status.ERROR, null, null, e, start);
+        }
+        return validate(format, null, start);
+    }
+
+    /**
+     * Validate a stream completely, see {@link CamiFormat#openReader(LineReader, NeoDao, boolean)}.
+     *
+     * @param in   the stream to validate, not closed
+     * @param name the name reported for the stream
+     * @return the result, never null
+     */
+    public ValidationResult validate(InputStream in, String name) {
+        long start = System.nanoTime();
+        InputStream buffered = new BufferedInputStream(in, CamiFormat.PROBE_SIZE);
+        CamiFormat format;
+        try {
+            format = CamiFormat.probe(buffered, name);
+        } catch (IOException e) {
+            return failure(name, ValidationResult.Status.ERROR, null, null, e, start);
+        }
+        return validate(format, LineReader.of(buffered, name), start);
+    }
+
+    /**
+     * @param input the lines of a stream, null to open the file probed
+     */
+    private ValidationResult validate(CamiFormat format, LineReader input, long start) {
+        String source = format.getFileName();
+        Base.Reader reader = null;
+        try {
+            reader = input == null ? format.openReader(this.neoDao, this.checkHeader)
+                    : format.openReader(input, this.neoDao, this.checkHeader);
+            while (reader.readRow() != null) {
+                // validated while read
+            }
+            // the samples counted while read, probing may miss some
+            return new ValidationResult(source, ValidationResult.Status.VALID, format.getTask(),
+                    reader.getSampleCount() > 1, reader.getRowCount(), 0, null, null, System.nanoTime() - start);
+        } catch (Base.ParseException | NumberFormatException e) {
+            // bad content may also surface as a NumberFormatException
+            return failure(source, ValidationResult.Status.INVALID, format, reader, e, start);
+        } catch (IOException | RuntimeException e) {
+            // a failing taxonomy or a bug, not the fault of the submission
+            return failure(source, ValidationResult.Status.ERROR, format, reader, e, start);
+        } finally {
+            // streams are closed by their owner
+            if (reader != null && input == null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // the result is known
+                }
+            }
+        }
+    }
+
+    private static ValidationResult failure(String source, ValidationResult.Status status, CamiFormat format,
+                                            Base.Reader reader, Exception e, long start) {
+        return new ValidationResult(source, status, format == null ? CamiFormat.Task.UNKNOWN : format.getTask(),
+                format != null && format.isMultiSample() || reader != null && reader.getSampleCount() > 1,
+                reader == null ? 0 : reader.getRowCount(),
+                reader == null ? 0 : reader.getLineNumber(), e.getClass().getSimpleName(), e.getMessage(),
+                System.nanoTime() - start);
+    }
+
+    public boolean isCheckHeader() {
+        return checkHeader;
+    }
+
+    /**
+     * @param checkHeader check mandatory header fields, true by default
+     */
+    public void setCheckHeader(boolean checkHeader) {
+        this.checkHeader = checkHeader;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+}
@@ -0,0 +1,215 @@
+package cami.io.validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import mzd.taxonomy.neo.NeoDao;
+
+import cami.io.Base;
+import cami.io.Binning;
+import cami.io.CamiFormat;
+import cami.io.Checkpoint;
+import cami.io.LineReader;
+import cami.io.concat.ConcatProfilingIter;
+
+/**
+ * Validates a submission while it is being written, so that a bad row is reported as soon as the producer
+ * writes it rather than when its run finishes.
+ * <p/>
+ * The file is tailed by {@link LineReader#follow(String, long)} and each complete line is validated as it
+ * appears. Every {@link #CHECKPOINT_INTERVAL} rows, and when following ends, the position is saved as a
+ * {@link Checkpoint}; a restarted validator resumes from it, validating again at most the rows written since.
+ * A checkpoint taken on a file which has since been replaced is refused, and the new file is validated from
+ * its start.
+ * <p/>
+ * Usage: {@code FollowValidator -db path [-task binning|profiling] [-idle seconds] [-checkpoint file]
+ * [-no-header-check] file}
+ * <p/>
+ * The exit codes are those of {@link BatchValidator}.
+ */
+public class FollowValidator {
+    public final static int CHECKPOINT_INTERVAL = 1 << 12;
+
+    private final NeoDao neoDao;
+    private boolean checkHeader = true;
+    private volatile LineReader input = null;
+    private volatile boolean stopped = false;
+
+    /**
+     * @param neoDao the taxonomy, not shut down
+     */
+    public FollowValidator(NeoDao neoDao) {
+        this.neoDao = neoDao;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String dbPath = null;
+        String checkpointFile = null;
+        String task = null;
+        long idleSeconds = 600;
+        boolean checkHeader = true;
+        String fileName = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-db":
+                        dbPath = args[++i];
+                        break;
+                    case "-task":
+                        task = args[++i];
+                        break;
+                    case "-idle":
+                        idleSeconds = Long.parseLong(args[++i]);
+                        break;
+                    case "-checkpoint":
+                        checkpointFile = args[++i];
+                        break;
+                    case "-no-header-check":
+                        checkHeader = false;
+                        break;
+                    default:
+                        if (args[i].startsWith("-") || fileName != null) {
+                            throw new IllegalArgumentException("unexpected argument " + args[i]);
+                        }
+                        fileName = args[i];
+                }
+            }
+            if (dbPath == null) {
+                throw new IllegalArgumentException("no taxonomy given with -db");
+            }
+            if (fileName == null) {
+                throw new IllegalArgumentException("no file to follow");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "missing option value" : e.getMessage());
+            System.err.println("usage: FollowValidator -db path [-task binning|profiling] [-idle seconds] "
+                    + "[-checkpoint file] [-no-header-check] file");
+            System.exit(BatchValidator.EXIT_USAGE);
+            return;
+        }
+        CamiFormat.Task fileTask = task == null ? CamiFormat.probe(fileName).getTask()
+                : CamiFormat.Task.valueOf(task.toUpperCase(Locale.ROOT));
+        if (fileTask == CamiFormat.Task.UNKNOWN) {
+            System.err.println("cannot tell the task of " + fileName + " yet, give it with -task");
+            System.exit(BatchValidator.EXIT_USAGE);
+            return;
+        }
+
+        NeoDao neoDao = new NeoDao(new File(dbPath));
+        final FollowValidator validator = new FollowValidator(neoDao);
+        validator.setCheckHeader(checkHeader);
+        final Thread main = Thread.currentThread();
+        Thread hook = new Thread() {
+            @Override
+            public void run() {
+                // let the main thread save its checkpoint
+                validator.stop();
+                try {
+                    main.join(10000);
+                } catch (InterruptedException ignored) {
+                    // exiting anyway
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(hook);
+        ValidationResult result;
+        try {
+            result = validator.follow(fileName, fileTask, checkpointFile, idleSeconds * 1000L);
+        } finally {
+            neoDao.shutdown();
+        }
+        System.out.println(result.toJson());
+        if (validator.stopped) {
+            // the JVM is already shutting down
+            return;
+        }
+        Runtime.getRuntime().removeShutdownHook(hook);
+        System.exit(result.getStatus() == ValidationResult.Status.VALID ? BatchValidator.EXIT_VALID
+                : result.getStatus() == ValidationResult.Status.INVALID ? BatchValidator.EXIT_INVALID
+                : BatchValidator.EXIT_ERROR);
+    }
+
+    /**
+     * Validate a file as it is written, until it has not grown for the idle time or {@link #stop()} is called.
+     *
+     * @param fileName       the file to follow
+     * @param task           the task of the file
+     * @param checkpointFile the checkpoint to resume from and save to, null for none
+     * @param idleMillis     the time without growth after which the file is taken to be complete
+     * @return the result, never null
+     */
+    public ValidationResult follow(String fileName, CamiFormat.Task task, String checkpointFile, long idleMillis) {
+        long start = System.nanoTime();
+        Base.Reader reader = null;
+        LineReader input = null;
+        try {
+            input = LineReader.follow(fileName, idleMillis);
+            this.input = input;
+            if (this.stopped) {
+                input.stop();
+            }
+            if (task == CamiFormat.Task.BINNING) {
+                reader = new Binning.ValidatingReader(input, this.neoDao, this.checkHeader);
+            } else {
+                // reads single samples as well
+                reader = new ConcatProfilingIter(input, this.neoDao, this.checkHeader);
+            }
+            Checkpoint checkpoint = checkpointFile == null ? null : Checkpoint.load(checkpointFile);
+            if (checkpoint != null) {
+                reader.resume(checkpoint);
+            }
+            while (reader.readRow() != null) {
+                if (checkpointFile != null && reader.getRowCount() % CHECKPOINT_INTERVAL == 0) {
+                    reader.getCheckpoint().save(checkpointFile);
+                }
+            }
+            if (checkpointFile != null) {
+                reader.getCheckpoint().save(checkpointFile);
+            }
+            return new ValidationResult(fileName, ValidationResult.Status.VALID, task, false, reader.getRowCount(),
+                    0, null, null, System.nanoTime() - start);
+        } catch (Base.ParseException | NumberFormatException e) {
+            return failure(fileName, ValidationResult.Status.INVALID, task, reader, e, start);
+        } catch (IOException | RuntimeException e) {
+            return failure(fileName, ValidationResult.Status.ERROR, task, reader, e, start);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ignored) {
+                    // the result is known
+                }
+            }
+        }
+    }
+
+    private static ValidationResult failure(String fileName, ValidationResult.Status status, CamiFormat.Task task,
+                                            Base.Reader reader, Exception e, long start) {
+        return new ValidationResult(fileName, status, task, false, reader == null ? 0 : reader.getRowCount(),
+                reader == null ? 0 : reader.getLineNumber(), e.getClass().getSimpleName(), e.getMessage(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * End following once no complete line is left, as if the file had been idle. May be called from any thread.
+     */
+    public void stop() {
+        this.stopped = true;
+        LineReader input = this.input;
+        if (input != null) {
+            input.stop();
+        }
+    }
+
+    public boolean isCheckHeader() {
+        return checkHeader;
+    }
+
+    /**
+     * @param checkHeader check mandatory header fields, true by default
+     */
+    public void setCheckHeader(boolean checkHeader) {
+        this.checkHeader = checkHeader;
+    }
+}
@@ -0,0 +1,116 @@
+package cami.io.validate;
+
+import java.util.Locale;
+
+import cami.io.CamiFormat;
+import cami.io.metrics.MetricsRegistry;
+
+/**
+ * Outcome of validating one submission, reported as a line of JSON by {@link #toJson()}.
+ */
+public class ValidationResult {
+
+    /**
+     * Whether a submission passed validation, failed it, or could not be read at all.
+     */
+    public enum Status {
+        VALID, INVALID, ERROR
+    }
+
+    private final String source;
+    private final Status status;
+    private final CamiFormat.Task task;
+    private final boolean multiSample;
+    private final long rows;
+    private final int line;
+    private final String error;
+    private final String message;
+    private final long nanos;
+
+    /**
+     * @param source      the file or stream validated
+     * @param status      the outcome
+     * @param task        the task of the submission, {@link CamiFormat.Task#UNKNOWN} if not found
+     * @param multiSample true if the submission holds several samples
+     * @param rows        the number of data rows read
+     * @param line        the line the validation stopped at, 0 if valid
+     * @param error       the simple name of the exception raised, null if valid
+     * @param message     the message of the exception raised, null if valid
+     * @param nanos       the time taken
+     */
+    public ValidationResult(String source, Status status, CamiFormat.Task task, boolean multiSample, long rows,
+                            int line, String error, String message, long nanos) {
+        this.source = source;
+        this.status = status;
+        this.task = task;
+        this.multiSample = multiSample;
+        this.rows = rows;
+        this.line = line;
+        this.error = error;
+        this.message = message;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return the result on a single line, without a line terminator
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"file\": \"").append(MetricsRegistry.escape(this.source)).append('"');
+        sb.append(", \"status\": \"").append(this.status.name().toLowerCase(Locale.ROOT)).append('"');
+        sb.append(", \"task\": \"").append(this.task.name().toLowerCase(Locale.ROOT)).append('"');
+        sb.append(", \"multiSample\": ").append(this.multiSample);
+        sb.append(", \"rows\": ").append(this.rows);
+        if (this.status != Status.VALID) {
+            sb.append(", \"line\": ").append(this.line);
+            sb.append(", \"error\": \"").append(MetricsRegistry.escape(this.error)).append('"');
+            sb.append(", \"message\": \"").append(MetricsRegistry.escape(this.message)).append('"');
+        }
+        sb.append(", \"millis\": ").append(this.nanos / 1000000L).append('}');
+        return sb.toString();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public CamiFormat.Task getTask() {
+        return task;
+    }
+
+    public boolean isMultiSample() {
+        return multiSample;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the line the validation stopped at, 0 if valid or the file could not be opened
+     */
+    public int getLine() {
+        return line;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
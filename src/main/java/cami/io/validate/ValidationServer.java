@@ -0,0 +1,269 @@
+package cami.io.validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import mzd.taxonomy.neo.NeoDao;
+
+/**
+ * Validation daemon which keeps the taxonomy open between submissions.
+ * <p/>
+ * The server listens on the loopback interface only. Local files are read only if a root directory is given and
+ * only below it: relative paths are taken from the root and paths leaving it, through symbolic links as well,
+ * are refused. Submissions are
+ * validated by a {@link BatchValidator} on a bounded pool; when all workers are busy and the queue is full,
+ * new connections wait in the accept backlog instead of piling up in memory.
+ * <ul>
+ * <li>{@code POST /validate?path=file} validates a file below the root directory</li>
+ * <li>{@code POST /validate?name=label} validates the request body, named by the optional label</li>
+ * <li>{@code GET /health} answers whether the server is up</li>
+ * </ul>
+ * The response is a {@link ValidationResult} as JSON, with status 200 if valid, 422 if invalid and 500 if the
+ * submission could not be read, or else an error with status 403 for a path outside the root directory.
+ * <p/>
+ * Usage: {@code ValidationServer -db path [-root dir] [-port n] [-threads n] [-queue n] [-no-header-check]}
+ */
+public class ValidationServer {
+    public final static int DEFAULT_PORT = 8084;
+    private final static int STATUS_INVALID = 422;
+
+    private final BatchValidator validator;
+    private final Path root;
+    private final HttpServer server;
+    private final ThreadPoolExecutor pool;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param validator validates the submissions, and so sets the taxonomy and the number of workers
+     * @param port      the port to listen on, 0 for any free port
+     * @param queue     the number of submissions waiting for a worker
+     * @param root      the directory below which files may be validated by path, null to accept bodies only
+     * @throws IOException error binding the port or resolving the root directory
+     */
+    public ValidationServer(BatchValidator validator, int port, int queue, Path root) throws IOException {
+        this.validator = validator;
+        this.root = root == null ? null : root.toRealPath();
+        int threads = validator.getThreads();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queue)), new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                // hold the dispatcher until a worker is free
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("interrupted while waiting for a worker", e);
+                }
+            }
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(this.pool);
+        this.server.createContext("/validate", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleValidate(exchange);
+            }
+        });
+        this.server.createContext("/health", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, 200, "{\"status\": \"up\"}");
+            }
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        String dbPath = null;
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = 64;
+        String root = null;
+        boolean checkHeader = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-db":
+                        dbPath = args[++i];
+                        break;
+                    case "-root":
+                        root = args[++i];
+                        break;
+                    case "-port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-queue":
+                        queue = Integer.parseInt(args[++i]);
+                        break;
+                    case "-no-header-check":
+                        checkHeader = false;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (dbPath == null) {
+                throw new IllegalArgumentException("no taxonomy given with -db");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "missing option value" : e.getMessage());
+            System.err.println("usage: ValidationServer -db path [-root dir] [-port n] [-threads n] [-queue n] "
+                    + "[-no-header-check]");
+            System.exit(BatchValidator.EXIT_USAGE);
+            return;
+        }
+
+        final NeoDao neoDao = new NeoDao(new File(dbPath));
+        BatchValidator validator = new BatchValidator(neoDao, threads);
+        validator.setCheckHeader(checkHeader);
+        final ValidationServer server = new ValidationServer(validator, port, queue,
+                root == null ? null : Paths.get(root));
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.stop(1);
+                neoDao.shutdown();
+            }
+        });
+        server.start();
+        System.err.printf("validating on http://localhost:%d/validate%n", server.getPort());
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Stop accepting submissions and wait for those in progress.
+     *
+     * @param delay the seconds to wait for open exchanges to finish
+     */
+    public void stop(int delay) {
+        this.server.stop(delay);
+        this.pool.shutdown();
+        try {
+            this.pool.awaitTermination(delay, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the port listened on, useful if created with port 0
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    private void handleValidate(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "{\"error\": \"use POST\"}");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            ValidationResult result;
+            String path = query.get("path");
+            if (path != null) {
+                Path file = resolve(path);
+                if (file == null) {
+                    respond(exchange, 403, "{\"error\": \"path outside of the root directory\"}");
+                    return;
+                }
+                result = this.validator.validate(file.toString());
+            } else {
+                String name = query.containsKey("name") ? query.get("name") : "request";
+                try (InputStream body = exchange.getRequestBody()) {
+                    result = this.validator.validate(body, name);
+                }
+            }
+            getLogger().debug("validated: {}", result);
+            int status = 200;
+            if (result.getStatus() == ValidationResult.Status.INVALID) {
+                status = STATUS_INVALID;
+            } else if (result.getStatus() == ValidationResult.Status.ERROR) {
+                status = 500;
+            }
+            respond(exchange, status, result.toJson());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the file below the root directory, null if there is no root or the path leaves it
+     */
+    private Path resolve(String path) throws IOException {
+        if (this.root == null) {
+            return null;
+        }
+        Path file;
+        try {
+            file = this.root.resolve(path).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (Files.exists(file)) {
+            // follow symbolic links, a missing file is reported by the validator
+            file = file.toRealPath();
+        }
+        return file.startsWith(this.root) ? file : null;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int sep = parameter.indexOf('=');
+            if (sep > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, sep), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(sep + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public Logger getLogger() {
+        return logger;
+    }
+}
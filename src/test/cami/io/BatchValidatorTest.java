@@ -0,0 +1,153 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.concat.ConcatProfilingIter;
+import cami.io.synth.SyntheticData;
+import cami.io.validate.BatchValidator;
+import cami.io.validate.ValidationResult;
+import mzd.taxonomy.neo.NeoDao;
+
+public class BatchValidatorTest extends TestResources {
+    private static NeoDao neoDao = null;
+
+    @BeforeClass
+    public static void openDB() {
+        neoDao = new NeoDao(new File(DBPATH));
+    }
+
+    @AfterClass
+    public static void closeDB() {
+        if (neoDao != null) {
+            neoDao.shutdown();
+        }
+    }
+
+    @Test
+    public void testValidate() {
+        BatchValidator validator = new BatchValidator(neoDao, 2);
+        ValidationResult result = validator.validate(RESOURCE_PATH + "concat-profile-valid.txt");
+        assertEquals(ValidationResult.Status.VALID, result.getStatus());
+        assertEquals(CamiFormat.Task.PROFILING, result.getTask());
+        assertTrue(result.isMultiSample());
+        assertEquals(24, result.getRows());
+
+        result = validator.validate(RESOURCE_PATH + "concat-profile-invalid-wrong-rank.txt");
+        assertEquals(ValidationResult.Status.INVALID, result.getStatus());
+        assertEquals("FieldException", result.getError());
+        assertTrue(result.getLine() > 0);
+
+        result = validator.validate(RESOURCE_PATH + "missing-delete.txt");
+        assertEquals(ValidationResult.Status.ERROR, result.getStatus());
+        assertTrue(result.toJson().contains("\"status\": \"error\""));
+    }
+
+    @Test
+    public void testValidateAll() throws IOException {
+        BatchValidator validator = new BatchValidator(neoDao, 3);
+        StringWriter report = new StringWriter();
+        List<String> files = Arrays.asList(RESOURCE_PATH + "binning-valid.txt", RESOURCE_PATH + "profile-valid.txt",
+                RESOURCE_PATH + "concat-profile-valid.txt");
+        assertEquals(BatchValidator.EXIT_VALID, validator.validateAll(files, report));
+        String[] lines = report.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[3].startsWith("{\"files\": 3, \"valid\": 3, \"invalid\": 0, \"errors\": 0"));
+
+        files = Arrays.asList(RESOURCE_PATH + "binning-valid.txt", RESOURCE_PATH + "profile-bad-row.txt");
+        assertEquals(BatchValidator.EXIT_INVALID, validator.validateAll(files, new StringWriter()));
+        files = Arrays.asList(RESOURCE_PATH + "profile-bad-row.txt", RESOURCE_PATH + "missing-delete.txt");
+        assertEquals(BatchValidator.EXIT_ERROR, validator.validateAll(files, new StringWriter()));
+    }
+
+    /**
+     * Drop the TAXPATHSN column of a profile, giving the four column layout.
+     */
+    private static void dropNames(String from, String to) throws IOException {
+        List<String> lines = new ArrayList<>();
+        boolean rows = false;
+        for (String line : Files.readAllLines(Paths.get(from), StandardCharsets.UTF_8)) {
+            if (line.startsWith("@@") || rows) {
+                String[] fields = line.split("\t");
+                line = fields[0] + "\t" + fields[1] + "\t" + fields[2] + "\t" + fields[4];
+                rows = true;
+            }
+            lines.add(line);
+        }
+        Files.write(Paths.get(to), lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testMixedLayouts() throws ParseException, IOException {
+        // readers of different layouts at once must not see each other's column indexes
+        SyntheticData data = new SyntheticData(3);
+        data.writeBinning(RESOURCE_PATH + "binning-binid-delete.txt", 20000, Binning.COLUMNDEF_BINID);
+        data.writeBinning(RESOURCE_PATH + "binning-taxid-delete.txt", 20000, Binning.COLUMNDEF_TAXID);
+        data.writeProfile(RESOURCE_PATH + "profile-taxpathsn-delete.txt", 0);
+        dropNames(RESOURCE_PATH + "profile-taxpathsn-delete.txt", RESOURCE_PATH + "profile-taxpath-delete.txt");
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            files.add(RESOURCE_PATH + "binning-binid-delete.txt");
+            files.add(RESOURCE_PATH + "binning-taxid-delete.txt");
+            files.add(RESOURCE_PATH + "profile-taxpath-delete.txt");
+            files.add(RESOURCE_PATH + "profile-taxpathsn-delete.txt");
+        }
+        StringWriter report = new StringWriter();
+        int exitCode = new BatchValidator(neoDao, 4).validateAll(files, report);
+        assertEquals(report.toString(), BatchValidator.EXIT_VALID, exitCode);
+
+        // a bad TAXID is still found while BINID files are read
+        List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "binning-taxid-delete.txt"),
+                StandardCharsets.UTF_8);
+        lines.add("S0Cbad\t-5");
+        Files.write(Paths.get(RESOURCE_PATH + "binning-bad-delete.txt"), lines, StandardCharsets.UTF_8);
+        files.add(RESOURCE_PATH + "binning-bad-delete.txt");
+        report = new StringWriter();
+        exitCode = new BatchValidator(neoDao, 4).validateAll(files, report);
+        assertEquals(report.toString(), BatchValidator.EXIT_INVALID, exitCode);
+        assertTrue(report.toString().contains("\"invalid\": 1, \"errors\": 0"));
+    }
+
+    @Test
+    public void testLargeSamples() throws ParseException, IOException {
+        // each sample is larger than both windows probed, so no second header is seen
+        String fileName = RESOURCE_PATH + "concat-profile-delete.txt";
+        SyntheticData data = new SyntheticData(5);
+        data.setTaxa(2000);
+        data.writeConcatenatedProfile(fileName, 5);
+        assertTrue(Files.size(Paths.get(fileName)) > 10 * CamiFormat.PROBE_SIZE);
+        assertFalse(CamiFormat.probe(fileName).isMultiSample());
+
+        ValidationResult result = new BatchValidator(neoDao, 1).validate(fileName);
+        assertEquals(result.getMessage(), ValidationResult.Status.VALID, result.getStatus());
+        assertTrue(result.isMultiSample());
+        Base.Reader reader = CamiFormat.probe(fileName).openReader(neoDao, true);
+        assertTrue(reader instanceof ConcatProfilingIter);
+        reader.close();
+    }
+
+    @Test
+    public void testExpand() throws IOException {
+        List<String> files = BatchValidator.expand(RESOURCE_PATH + "concat-profile-valid*.txt");
+        assertEquals(5, files.size());
+        assertEquals(RESOURCE_PATH + "concat-profile-valid-long-version.txt", files.get(0));
+        assertTrue(BatchValidator.expand(RESOURCE_PATH).contains(RESOURCE_PATH + "binning-valid.txt"));
+        assertEquals(Arrays.asList("no-such-file"), BatchValidator.expand("no-such-file"));
+    }
+}
@@ -0,0 +1,150 @@
+package cami.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.binary.CamiBinary;
+import cami.io.binary.CamiBinaryReader;
+import cami.io.binary.CamiBinaryWriter;
+
+public class BinaryTest extends TestResources {
+
+    private static List<String[]> readAll(Base.Reader reader) throws ParseException, IOException {
+        List<String[]> rows = new ArrayList<>();
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            rows.add(row);
+        }
+        reader.close();
+        return rows;
+    }
+
+    @Test
+    public void testBinningRoundTrip() throws ParseException, IOException {
+        CamiBinary.binningToBinary(RESOURCE_PATH + "binning-valid.txt", RESOURCE_PATH + "binning-delete.bin", true);
+        CamiBinary.toTsv(RESOURCE_PATH + "binning-delete.bin", RESOURCE_PATH + "binning-delete.txt");
+
+        Binning.Reader original = new Binning.Reader(RESOURCE_PATH + "binning-valid.txt", true);
+        Binning.Reader copy = new Binning.Reader(RESOURCE_PATH + "binning-delete.txt", true);
+        assertEquals(original.getHeaderInfo(), copy.getHeaderInfo());
+        assertEquals(original.getColumnDefinition(), copy.getColumnDefinition());
+        List<String[]> expected = readAll(original);
+        List<String[]> actual = readAll(copy);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testProfileTypedColumns() throws ParseException, IOException {
+        CamiBinary.profileToBinary(RESOURCE_PATH + "profile-valid.txt", RESOURCE_PATH + "profile-delete.bin", true);
+        CamiBinaryReader reader = new CamiBinaryReader(RESOURCE_PATH + "profile-delete.bin");
+        assertEquals(12, reader.getRowCount());
+        assertEquals(CamiBinary.ColumnType.INT, reader.getColumnType(0));
+        assertEquals(CamiBinary.ColumnType.DICTIONARY, reader.getColumnType(1));
+        assertEquals(CamiBinary.ColumnType.LINEAGE, reader.getColumnType(2));
+        assertEquals(CamiBinary.ColumnType.DOUBLE, reader.getColumnType(4));
+        int[] lineage = new int[reader.getWidth(2)];
+        assertEquals(3, reader.getLineage(2, 5, lineage));
+        assertEquals(91061, lineage[2]);
+        assertEquals(59.75801, reader.getDouble(4, 5), 0);
+        assertEquals("2|1224|28211", reader.getString(2, 6));
+
+        Profile.Reader original = new Profile.Reader(RESOURCE_PATH + "profile-valid.txt", true);
+        List<String[]> expected = readAll(original);
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), reader.readRow(i, null));
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testDoubleSpellings() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "doubles-delete.bin";
+        String[][] rows = {
+                {"12.30000", "59.75801", "1", "0.5"},
+                {"0.00400", "12.30000", "2.5", "0.50"},
+                {"1.5", "1.00000", "3", "1e-3"},
+                {"100.00000", "0.00001", "-0.25", "0.125"}};
+        CamiBinaryWriter writer = new CamiBinaryWriter(fileName, CamiBinary.Kind.PROFILE,
+                Collections.<String, String>emptyMap(), new String[]{"FIXED", "SWITCHED", "CANONICAL", "MIXED"});
+        for (String[] row : rows) {
+            writer.writeRow(row);
+        }
+        writer.close();
+
+        CamiBinaryReader reader = new CamiBinaryReader(fileName);
+        for (int column = 0; column < 4; column++) {
+            assertEquals(CamiBinary.ColumnType.DOUBLE, reader.getColumnType(column));
+        }
+        // the number format of the column reproduces all but the odd spelling
+        assertEquals(6, reader.getWidth(0));
+        assertEquals(6, reader.getWidth(1));
+        assertEquals(0, reader.getWidth(2));
+        assertEquals(1.5, reader.getDouble(0, 2), 0);
+        assertEquals(0.001, reader.getDouble(3, 2), 0);
+        for (int i = 0; i < rows.length; i++) {
+            assertArrayEquals(rows[i], reader.readRow(i, null));
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testFailedConversion() throws IOException {
+        String fileName = RESOURCE_PATH + "profile-delete.bin";
+        Files.deleteIfExists(Paths.get(fileName));
+        try {
+            CamiBinary.profileToBinary(RESOURCE_PATH + "profile-bad-row.txt", fileName, true);
+            fail("row with a missing field");
+        } catch (ParseException expected) {
+            assertFalse(Files.exists(Paths.get(fileName)));
+        }
+    }
+
+    private static List<String> headerLines(String fileName) throws IOException {
+        List<String> header = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            header.add(line);
+            if (line.startsWith("@@")) {
+                break;
+            }
+        }
+        return header;
+    }
+
+    @Test
+    public void testHeaderRoundTrip() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "binning-delete.txt";
+        Binning.Writer writer = new Binning.Writer(fileName, Binning.COLUMNDEF_TAXID, true);
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("Version", "0.9.1");
+        header.put("SampleID", "Gut_S1");
+        header.put("_Task_f", "Binning");
+        writer.replaceHeaderInfo(header);
+        writer.writeHeader();
+        writer.writeBinningRow("contig_1", 562);
+        writer.close();
+
+        CamiBinary.binningToBinary(fileName, RESOURCE_PATH + "binning-delete.bin", true);
+        CamiBinary.toTsv(RESOURCE_PATH + "binning-delete.bin", RESOURCE_PATH + "binning-delete-copy.txt");
+        List<String> expected = headerLines(fileName);
+        assertEquals("@SampleID:Gut_S1", expected.get(2));
+        assertEquals(expected, headerLines(RESOURCE_PATH + "binning-delete-copy.txt"));
+    }
+}
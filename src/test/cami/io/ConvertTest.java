@@ -0,0 +1,85 @@
+package cami.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.convert.BinningToProfile;
+import cami.io.fasta.FastaIndex;
+
+public class ConvertTest extends TestResources {
+
+    private static LineageTable taxdump() throws IOException {
+        return LineageTable.fromTaxdump(RESOURCE_PATH + "taxdump-nodes.dmp", RESOURCE_PATH + "taxdump-names.dmp");
+    }
+
+    private static List<String[]> convert(BinningToProfile converter) throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "profile-delete.txt";
+        Binning.Reader binning = new Binning.Reader(RESOURCE_PATH + "binning-without-header-valid.txt", false);
+        converter.addAll(binning);
+        binning.close();
+
+        Profile.Writer writer = new Profile.Writer(fileName, Profile.COLUMNDEF_TAXPATH_SN, true);
+        Map<String, String> header = new HashMap<>();
+        header.put(Base.VERSION_KEY, "0.9");
+        header.put(Base.SAMPLEID_KEY, "converted");
+        header.put(Profile.RANKS_KEY, Profile.PRO_RANKS);
+        writer.replaceHeaderInfo(header);
+        converter.write(writer);
+        writer.close();
+
+        Profile.Reader reader = new Profile.Reader(fileName, true);
+        List<String[]> rows = new ArrayList<>();
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            rows.add(row);
+        }
+        reader.close();
+        return rows;
+    }
+
+    @Test
+    public void testLineageTable() throws IOException {
+        LineageTable table = taxdump();
+        int[] lineage = new int[Profile.RANK_NAMES.length];
+        assertEquals(6, table.getLineage(131564, lineage));
+        assertArrayEquals(new int[]{2, 1224, 1236, 91347, 543, 561, 562, 0}, lineage);
+        assertEquals(LineageTable.NO_RANK, table.getRank(131564));
+        assertEquals("Bacteria", table.getName(2));
+        assertNull(table.getName(131564));
+        assertEquals(LineageTable.NO_RANK, table.getLineage(7, lineage));
+    }
+
+    @Test
+    public void testSequenceCounts() throws ParseException, IOException {
+        BinningToProfile converter = new BinningToProfile(taxdump());
+        List<String[]> rows = convert(converter);
+        assertEquals(3, converter.getTaxonCount());
+        assertEquals(8, rows.size());
+        assertArrayEquals(new String[]{"2", "superkingdom", "2", "Bacteria", "100"}, rows.get(0));
+        assertArrayEquals(new String[]{"123", "genus", "2|||||123", "Bacteria|||||Pirellula", "40"}, rows.get(5));
+        assertArrayEquals(new String[]{"562", "species", "2|1224|1236|91347|543|561|562",
+                "Bacteria|Proteobacteria|Gammaproteobacteria|Enterobacterales|Enterobacteriaceae|Escherichia"
+                        + "|Escherichia coli", "60"}, rows.get(7));
+    }
+
+    @Test
+    public void testBasePairWeights() throws ParseException, IOException {
+        FastaIndex lengths = FastaIndex.build(RESOURCE_PATH + "contigs.fasta",
+                RESOURCE_PATH + "contigs-delete.fasta" + FastaIndex.SUFFIX);
+        BinningToProfile converter = new BinningToProfile(taxdump(), lengths);
+        List<String[]> rows = convert(converter);
+        assertEquals(46, converter.getTotalWeight());
+        assertEquals("41.30435", rows.get(5)[4]);
+        assertEquals("58.69565", rows.get(7)[4]);
+    }
+}
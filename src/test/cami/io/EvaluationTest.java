@@ -0,0 +1,140 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.eval.BinningEvaluator;
+import cami.io.eval.DistanceMatrix;
+import cami.io.eval.ProfileEvaluator;
+import cami.io.eval.ProfileVector;
+
+public class EvaluationTest extends TestResources {
+    private final static double DELTA = 1e-7;
+
+    @Test
+    public void testProfileAgainstItself() throws ParseException, IOException {
+        ProfileEvaluator evaluator = new ProfileEvaluator(RESOURCE_PATH + "profile-valid.txt", true);
+        ProfileEvaluator.Metrics metrics = evaluator.evaluate(RESOURCE_PATH + "profile-valid.txt", true);
+        for (int rank = 0; rank < 4; rank++) {
+            assertEquals(0.0, metrics.getL1(rank), DELTA);
+            assertEquals(1.0, metrics.getPrecision(rank), DELTA);
+            assertEquals(1.0, metrics.getRecall(rank), DELTA);
+        }
+        assertTrue(Double.isNaN(metrics.getRecall(5)));
+        assertEquals(0.0, metrics.getWeightedUnifrac(), DELTA);
+    }
+
+    private static String writeSubmission() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "profile-delete.txt";
+        Profile.Writer writer = new Profile.Writer(fileName, true);
+        Map<String, String> header = new HashMap<>();
+        header.put(Base.VERSION_KEY, "0.9");
+        header.put(Base.SAMPLEID_KEY, "submission");
+        header.put(Profile.RANKS_KEY, Profile.PRO_RANKS);
+        writer.replaceHeaderInfo(header);
+        writer.writeHeader();
+        writer.writeProfileRow(2, 0, new int[]{2}, 100);
+        writer.writeProfileRow(1239, 1, new int[]{2, 1239}, 60);
+        writer.writeProfileRow(1224, 1, new int[]{2, 1224}, 30);
+        writer.writeProfileRow(976, 1, new int[]{2, 976}, 10);
+        writer.close();
+        return fileName;
+    }
+
+    @Test
+    public void testProfileMetrics() throws ParseException, IOException {
+        String fileName = writeSubmission();
+        ProfileEvaluator evaluator = new ProfileEvaluator(ProfileVector.load(RESOURCE_PATH + "profile-valid.txt", true));
+        ProfileEvaluator.Metrics metrics = evaluator.evaluate(fileName, true);
+        assertEquals(0.0237578, metrics.getL1(0), DELTA);
+        assertEquals(0.0118789, metrics.getBrayCurtis(0), DELTA);
+        assertEquals(1.0, metrics.getPrecision(0), DELTA);
+        assertEquals(0.5, metrics.getRecall(0), DELTA);
+
+        assertEquals(0.2248314, metrics.getL1(1), DELTA);
+        assertEquals(0.1249809, metrics.getBrayCurtis(1), DELTA);
+        assertEquals(2.0 / 3, metrics.getPrecision(1), DELTA);
+        assertEquals(2.0 / 3, metrics.getRecall(1), DELTA);
+
+        assertTrue(Double.isNaN(metrics.getPrecision(2)));
+        assertEquals(0.0, metrics.getRecall(2), DELTA);
+        assertEquals(1.846432, metrics.getWeightedUnifrac(), DELTA);
+    }
+
+    @Test
+    public void testBinningMetrics() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "binning-delete.txt";
+        Binning.Writer writer = new Binning.Writer(fileName, Binning.COLUMNDEF_BINID, true);
+        Map<String, String> header = new HashMap<>();
+        header.put(Base.VERSION_KEY, "0.9");
+        header.put(Base.SAMPLEID_KEY, "submission");
+        writer.replaceHeaderInfo(header);
+        writer.writeHeader();
+        writer.writeBinningRow("read1201", "A");
+        writer.writeBinningRow("read1202", "A");
+        writer.writeBinningRow("read1203", "A");
+        writer.writeBinningRow("read1204", "B");
+        writer.writeBinningRow("read1205", "B");
+        writer.writeBinningRow("read9999", "B");
+        writer.close();
+
+        Binning.Reader gold = new Binning.Reader(RESOURCE_PATH + "binning-without-header-valid.txt", false);
+        BinningEvaluator evaluator = new BinningEvaluator(gold, null);
+        gold.close();
+        assertEquals(4, evaluator.getGenomeCount());
+
+        List<BinningEvaluator.Metrics> results = evaluator.evaluateAll(Arrays.asList(fileName, fileName), true, 2);
+        BinningEvaluator.Metrics metrics = results.get(1);
+        assertEquals(2, metrics.getBinCount());
+        assertEquals(1, metrics.getUnknownSequenceCount());
+        assertEquals((2.0 / 3 + 0.5) / 2, metrics.getAveragePurity(), DELTA);
+        assertEquals(1.0, metrics.getAverageCompleteness(), DELTA);
+        assertEquals(0.6, metrics.getPrecision(), DELTA);
+        assertEquals(1.0, metrics.getRecall(), DELTA);
+        assertEquals(0.6 / 2.1, metrics.getAdjustedRandIndex(), DELTA);
+    }
+
+    @Test
+    public void testDistanceMatrix() throws ParseException, IOException {
+        String gold = RESOURCE_PATH + "profile-valid.txt";
+        DistanceMatrix matrix = DistanceMatrix.compute(Arrays.asList(gold, writeSubmission(), gold), true,
+                DistanceMatrix.Metric.UNIFRAC, 0, 2);
+        assertEquals(1.846432, matrix.get(0, 1), DELTA);
+        assertEquals(1.846432, matrix.get(2, 1), DELTA);
+        assertEquals(0.0, matrix.get(0, 2), DELTA);
+
+        matrix.writeBinary(RESOURCE_PATH + "matrix-delete.bin");
+        DistanceMatrix read = DistanceMatrix.readBinary(RESOURCE_PATH + "matrix-delete.bin");
+        assertEquals(3, read.size());
+        assertEquals(matrix.get(1, 0), read.get(0, 1), 0.0);
+        matrix.writeTsv(RESOURCE_PATH + "matrix-delete.tsv");
+    }
+
+    @Test
+    public void testDistanceMatrixTiles() throws ParseException, IOException {
+        ProfileVector gold = ProfileVector.load(RESOURCE_PATH + "profile-valid.txt", true);
+        ProfileVector submission = ProfileVector.load(writeSubmission(), true);
+        List<String> names = new ArrayList<>();
+        List<ProfileVector> vectors = new ArrayList<>();
+        for (int i = 0; i < 3 * DistanceMatrix.TILE; i++) {
+            names.add(Integer.toString(i));
+            vectors.add(i % 2 == 0 ? gold : submission);
+        }
+        DistanceMatrix matrix = DistanceMatrix.compute(names, vectors, DistanceMatrix.Metric.BRAY_CURTIS, 1, 4);
+        for (int i = 0; i < vectors.size(); i++) {
+            for (int j = 0; j < vectors.size(); j++) {
+                assertEquals((i - j) % 2 == 0 ? 0.0 : 0.1249809, matrix.get(i, j), DELTA);
+            }
+        }
+    }
+}
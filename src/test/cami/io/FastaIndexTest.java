@@ -0,0 +1,71 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.fasta.FastaIndex;
+import cami.io.stats.BinBasePairs;
+
+public class FastaIndexTest extends TestResources {
+
+    @Test
+    public void testBuildAndRead() throws IOException {
+        String fasta = RESOURCE_PATH + "contigs-delete.fasta";
+        Files.copy(Paths.get(RESOURCE_PATH + "contigs.fasta"), Paths.get(fasta), StandardCopyOption.REPLACE_EXISTING);
+        new File(fasta + FastaIndex.SUFFIX).delete();
+
+        FastaIndex built = FastaIndex.load(fasta);
+        assertEquals(5, built.size());
+        assertEquals(15, built.getLength("read1201"));
+        assertEquals(FastaIndex.MISSING, built.getLength("read1"));
+        assertEquals("read1201\t15\t23\t10\t11",
+                Files.readAllLines(Paths.get(fasta + FastaIndex.SUFFIX)).get(0));
+
+        FastaIndex read = FastaIndex.readIndex(fasta + FastaIndex.SUFFIX);
+        assertEquals(20, read.getLength("read1203"));
+        assertEquals(46, read.getTotalLength());
+    }
+
+    @Test
+    public void testNames() throws IOException {
+        String fasta = RESOURCE_PATH + "names-delete.fasta";
+        String name = "contig_\u00e9\u4e00";
+        Files.write(Paths.get(fasta), (">" + name + " description\nACGT\nAC\n").getBytes(StandardCharsets.UTF_8));
+        FastaIndex.build(fasta, fasta + FastaIndex.SUFFIX);
+        // replaces the index in place, leaving no temporary file
+        FastaIndex index = FastaIndex.build(fasta, fasta + FastaIndex.SUFFIX);
+        assertEquals(6, index.getLength(name));
+        assertEquals(6, FastaIndex.readIndex(fasta + FastaIndex.SUFFIX).getLength(name));
+        File[] left = new File(RESOURCE_PATH).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String fileName) {
+                return fileName.startsWith("names-delete.fasta" + FastaIndex.SUFFIX) && fileName.endsWith(".tmp");
+            }
+        });
+        assertEquals(0, left.length);
+    }
+
+    @Test
+    public void testBinBasePairs() throws ParseException, IOException {
+        BinBasePairs sizes = new BinBasePairs(FastaIndex.build(RESOURCE_PATH + "contigs.fasta",
+                RESOURCE_PATH + "contigs-delete.fasta" + FastaIndex.SUFFIX));
+        Binning.Reader reader = new Binning.Reader(RESOURCE_PATH + "binning-without-header-valid.txt", false);
+        sizes.addAll(reader);
+        reader.close();
+        assertEquals(4, sizes.getBinCount());
+        assertEquals("123", sizes.getBinId(0));
+        assertEquals(19, sizes.getBasePairs(0));
+        assertEquals(2, sizes.getSequenceCount(0));
+        assertEquals(46, sizes.getTotalBasePairs());
+    }
+}
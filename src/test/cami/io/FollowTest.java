@@ -0,0 +1,173 @@
+package cami.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.concat.ConcatProfilingIter;
+import cami.io.validate.FollowValidator;
+import cami.io.validate.ValidationResult;
+import mzd.taxonomy.neo.NeoDao;
+
+public class FollowTest extends TestResources {
+    private static NeoDao neoDao = null;
+
+    @BeforeClass
+    public static void openDB() {
+        neoDao = new NeoDao(new File(DBPATH));
+    }
+
+    @AfterClass
+    public static void closeDB() {
+        if (neoDao != null) {
+            neoDao.shutdown();
+        }
+    }
+
+    private static void append(String fileName, String text) throws IOException {
+        Files.write(Paths.get(fileName), text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void testFollow() throws IOException {
+        String fileName = RESOURCE_PATH + "follow-delete.txt";
+        Files.deleteIfExists(Paths.get(fileName));
+        append(fileName, "a\nb");
+        LineReader input = LineReader.follow(fileName, 50);
+        assertEquals("a", input.readLine());
+        // the unterminated line is held back
+        assertNull(input.readLine());
+        assertEquals(2, input.getPosition());
+        append(fileName, "c\r");
+        assertEquals("bc", input.readLine());
+        append(fileName, "\nd\n");
+        assertEquals("d", input.readLine());
+        input.stop();
+        assertNull(input.readLine());
+        input.close();
+
+        input = LineReader.open(fileName);
+        input.skip(5);
+        assertEquals("d", input.readLine());
+        assertEquals(8, input.getPosition());
+        input.close();
+    }
+
+    @Test
+    public void testResume() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "concat-profile-valid.txt";
+        String checkpointFile = RESOURCE_PATH + "checkpoint-delete.txt";
+        List<String[]> rows = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        ConcatProfilingIter reader = new ConcatProfilingIter(fileName, neoDao, true);
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            rows.add(row);
+            lines.add(reader.getLineNumber());
+            if (rows.size() == 15) {
+                reader.getCheckpoint().save(checkpointFile);
+            }
+        }
+        reader.close();
+
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+        assertTrue(checkpoint.getHeaderOffset() > 0);
+        reader = new ConcatProfilingIter(fileName, neoDao, true);
+        assertTrue(reader.resume(checkpoint));
+        assertEquals(15, reader.getRowCount());
+        for (int i = 15; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), reader.readRow());
+            assertEquals((int) lines.get(i), reader.getLineNumber());
+        }
+        assertNull(reader.readRow());
+        assertEquals(rows.size(), reader.getRowCount());
+        reader.close();
+        assertNull(Checkpoint.load(RESOURCE_PATH + "missing-delete.txt"));
+
+        // taken on another file, so read from the start
+        reader = new ConcatProfilingIter(RESOURCE_PATH + "concat-profile-valid-long-version.txt", neoDao, true);
+        assertFalse(reader.resume(checkpoint));
+        assertEquals(0, reader.getRowCount());
+        assertArrayEquals(rows.get(0), reader.readRow());
+        assertEquals(lines.get(0), Integer.valueOf(reader.getLineNumber()));
+        reader.close();
+    }
+
+    @Test
+    public void testReplaced() throws IOException {
+        String fileName = RESOURCE_PATH + "follow-delete.txt";
+        String checkpointFile = RESOURCE_PATH + "checkpoint-delete.txt";
+        Files.deleteIfExists(Paths.get(checkpointFile));
+        Files.copy(Paths.get(RESOURCE_PATH + "binning-valid.txt"), Paths.get(fileName),
+                StandardCopyOption.REPLACE_EXISTING);
+        FollowValidator validator = new FollowValidator(neoDao);
+        ValidationResult result = validator.follow(fileName, CamiFormat.Task.BINNING, checkpointFile, 10);
+        assertEquals(5, result.getRows());
+
+        // a new file in place of the old one is validated again from its first row
+        List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "binning-valid.txt"),
+                StandardCharsets.UTF_8);
+        lines.set(0, "# replaced");
+        lines.add("seq\t1\tb");
+        Files.write(Paths.get(fileName), lines, StandardCharsets.UTF_8);
+        result = validator.follow(fileName, CamiFormat.Task.BINNING, checkpointFile, 10);
+        assertEquals(ValidationResult.Status.VALID, result.getStatus());
+        assertEquals(6, result.getRows());
+    }
+
+    @Test
+    public void testValidator() throws IOException, InterruptedException {
+        final String fileName = RESOURCE_PATH + "follow-delete.txt";
+        String checkpointFile = RESOURCE_PATH + "checkpoint-delete.txt";
+        Files.deleteIfExists(Paths.get(fileName));
+        Files.deleteIfExists(Paths.get(checkpointFile));
+        final List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "binning-valid.txt"),
+                StandardCharsets.UTF_8);
+        append(fileName, lines.get(0) + "\n");
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (String line : lines.subList(1, lines.size())) {
+                        append(fileName, line + "\n");
+                        Thread.sleep(5);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        producer.start();
+        FollowValidator validator = new FollowValidator(neoDao);
+        ValidationResult result = validator.follow(fileName, CamiFormat.Task.BINNING, checkpointFile, 300);
+        producer.join();
+        assertEquals(ValidationResult.Status.VALID, result.getStatus());
+        assertEquals(5, result.getRows());
+        assertEquals(new File(fileName).length(), Checkpoint.load(checkpointFile).getOffset());
+
+        // a restart resumes at the end, then reports the bad row appended
+        append(fileName, "seq\t-1\n");
+        result = validator.follow(fileName, CamiFormat.Task.BINNING, checkpointFile, 100);
+        assertEquals(ValidationResult.Status.INVALID, result.getStatus());
+        assertEquals(5, result.getRows());
+        assertEquals(lines.size() + 1, result.getLine());
+    }
+}
@@ -0,0 +1,95 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.synth.SyntheticData;
+
+public class FormatTest extends TestResources {
+
+    @Test
+    public void testBinning() throws ParseException, IOException {
+        CamiFormat format = CamiFormat.probe(RESOURCE_PATH + "binning-valid.txt");
+        assertEquals(CamiFormat.Task.BINNING, format.getTask());
+        assertEquals("0.9", format.getVersion());
+        assertEquals("SAMPLEID", format.getSampleId());
+        assertEquals("Binning", format.getHeaderInfo().get("_task_f"));
+        assertEquals(Arrays.asList("SEQUENCEID", "TAXID"), format.getColumnDefinition().subList(0, 2));
+        assertFalse(format.isMultiSample());
+
+        Base.Reader reader = format.openReader(true);
+        assertTrue(reader instanceof Binning.Reader);
+        reader.close();
+    }
+
+    @Test
+    public void testProfile() throws ParseException, IOException {
+        CamiFormat format = CamiFormat.probe(RESOURCE_PATH + "profile-valid.txt");
+        assertEquals(CamiFormat.Task.PROFILING, format.getTask());
+        assertEquals(Profile.PRO_RANKS, format.getHeaderInfo().get(Profile.RANKS_KEY));
+        assertFalse(format.isMultiSample());
+        Base.Reader reader = CamiFormat.open(RESOURCE_PATH + "profile-valid.txt", true);
+        assertTrue(reader instanceof Profile.Reader);
+        reader.close();
+
+        format = CamiFormat.probe(RESOURCE_PATH + "concat-profile-min-valid.txt");
+        assertEquals(CamiFormat.Task.PROFILING, format.getTask());
+        assertTrue(format.isMultiSample());
+    }
+
+    @Test
+    public void testTail() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "profile-delete.txt";
+        SyntheticData data = new SyntheticData(5);
+        data.setTaxa(2000);
+        data.writeProfile(fileName, 0);
+        assertTrue(Files.size(Paths.get(fileName)) > 2 * CamiFormat.PROBE_SIZE);
+        assertFalse(CamiFormat.probe(fileName).isMultiSample());
+
+        byte[] last = Files.readAllBytes(Paths.get(RESOURCE_PATH + "concat-profile-min-valid.txt"));
+        Files.write(Paths.get(fileName), last, StandardOpenOption.APPEND);
+        CamiFormat format = CamiFormat.probe(fileName);
+        assertTrue(format.isMultiSample());
+        assertEquals("sample0", format.getSampleId());
+    }
+
+    @Test
+    public void testSchema() {
+        String[] names = {"_MY_TEST", "__F", "_a_b1", "_test_test", "_MY_", "MY_TEST", "_MY_1", "_M1_T", "__", "_",
+                "_MY_TEST_", "TAXID", ""};
+        for (String name : names) {
+            assertEquals(name, Base.CUSTOM_FIELD.matcher(name).matches(), FormatSchema.isCustomField(name));
+        }
+        assertTrue(Profile.SCHEMA.supportsVersion("0.9.1"));
+        assertFalse(Profile.SCHEMA.supportsVersion("1.0"));
+        assertTrue(Binning.SCHEMA.isKnownField("sampleid"));
+        assertTrue(Binning.SCHEMA.isKnownField("_task_f"));
+        assertFalse(Binning.SCHEMA.isKnownField("task"));
+
+        assertEquals(5, Profile.SCHEMA.matchLayout(Arrays.asList(Profile.COLUMNDEF_TAXPATH_SN)));
+        assertEquals(4, Profile.SCHEMA.matchLayout(Arrays.asList(Profile.COLUMNDEF)));
+        assertEquals(-1, Profile.SCHEMA.findInvalidColumn(Arrays.asList("TAXID", "RANK", "TAXPATH", "TAXPATHSN",
+                "PERCENTAGE", "_MY_TEST")));
+        assertEquals(5, Profile.SCHEMA.findInvalidColumn(Arrays.asList("TAXID", "RANK", "TAXPATH", "TAXPATHSN",
+                "PERCENTAGE", "TEST")));
+        assertEquals(0, Profile.SCHEMA.findInvalidColumn(Arrays.asList("TAXID", "RANK")));
+        assertEquals(-1, Binning.SCHEMA.findInvalidColumn(Arrays.asList(Binning.COLUMNDEF_TAXID_AND_BINID)));
+        assertEquals(2, Binning.SCHEMA.findInvalidColumn(Arrays.asList("SEQUENCEID", "BINID", "SCORE")));
+        assertEquals(0, Binning.SCHEMA.findInvalidColumn(Arrays.asList("SEQUENCEID", "TAID", "BINID")));
+    }
+
+    @Test(expected = Base.HeaderException.class)
+    public void testUnknown() throws ParseException, IOException {
+        CamiFormat.open(RESOURCE_PATH + "binning-empty.txt", false);
+    }
+}
@@ -0,0 +1,80 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.index.BinningIndex;
+
+public class IndexTest extends TestResources {
+
+    @Test
+    public void testLookup() throws ParseException, IOException {
+        String file = RESOURCE_PATH + "binning-delete.txt";
+        Files.copy(Paths.get(RESOURCE_PATH + "binning-without-header-valid.txt"), Paths.get(file),
+                StandardCopyOption.REPLACE_EXISTING);
+        new File(file + BinningIndex.SUFFIX).delete();
+
+        BinningIndex index = BinningIndex.open(file, false);
+        assertEquals(5, index.size());
+        int slot = index.find("read1205");
+        assertEquals(562, index.getTaxId(slot));
+        assertEquals("562.2", index.getBinId(slot));
+        assertEquals(-1, index.find("read12"));
+        index.close();
+        assertTrue(BinningIndex.isCurrent(new File(file), new File(file + BinningIndex.SUFFIX)));
+
+        // a changed binning file invalidates the index
+        Files.copy(Paths.get(RESOURCE_PATH + "binning-valid.txt"), Paths.get(file), StandardCopyOption.REPLACE_EXISTING);
+        assertFalse(BinningIndex.isCurrent(new File(file), new File(file + BinningIndex.SUFFIX)));
+        index = BinningIndex.open(file, true);
+        slot = index.find("read1203");
+        assertEquals(131564, index.getTaxId(slot));
+        assertNull(index.getBinId(slot));
+        index.close();
+    }
+
+    @Test
+    public void testSameSizeAndTime() throws ParseException, IOException {
+        File file = new File(RESOURCE_PATH + "binning-delete.txt");
+        final File indexFile = new File(file.getPath() + BinningIndex.SUFFIX);
+        Files.copy(Paths.get(RESOURCE_PATH + "binning-without-header-valid.txt"), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        BinningIndex.build(file.getPath(), false);
+        BinningIndex.build(file.getPath(), false);
+        assertTrue(BinningIndex.isCurrent(file, indexFile));
+
+        // an edit keeping size and modification time is noticed by the checksum
+        long modified = file.lastModified();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String text = new String(bytes, StandardCharsets.UTF_8).replace("read1205", "read1206");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(modified));
+        assertEquals(bytes.length, file.length());
+        assertFalse(BinningIndex.isCurrent(file, indexFile));
+        BinningIndex index = BinningIndex.open(file.getPath(), false);
+        assertEquals(-1, index.find("read1205"));
+        assertTrue(index.find("read1206") >= 0);
+        index.close();
+
+        File[] left = new File(RESOURCE_PATH).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(indexFile.getName()) && name.endsWith(".tmp");
+            }
+        });
+        assertEquals(0, left.length);
+    }
+}
@@ -0,0 +1,29 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.join.BinningJoin;
+
+public class JoinTest extends TestResources {
+
+    @Test
+    public void testJoinSubmissions() throws ParseException, IOException {
+        BinningJoin join = new BinningJoin();
+        assertEquals(0, join.add("tax", RESOURCE_PATH + "binning-valid.txt", true));
+        assertEquals(1, join.add("bin", RESOURCE_PATH + "binning-without-header-valid.txt", false));
+        assertEquals(5, join.getSequenceCount());
+
+        int seq = join.getSequenceCode("read1204");
+        assertEquals(562, join.getTaxId(0, seq));
+        assertEquals(BinningJoin.MISSING, join.getBinCode(0, seq));
+        assertEquals("562.1", join.getBinId(1, join.getBinCode(1, seq)));
+        assertEquals(562, join.getTaxId(1, seq));
+        assertEquals(4, join.getBinCount(1));
+        assertEquals(-1, join.getSequenceCode("read9999"));
+    }
+}
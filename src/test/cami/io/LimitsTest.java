@@ -0,0 +1,143 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.concat.ConcatProfilingIter;
+import mzd.taxonomy.neo.NeoDao;
+
+public class LimitsTest extends TestResources {
+
+    @After
+    public void tearDown() {
+        ReaderLimits.setDefault(null);
+    }
+
+    private static String header() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String fileName = RESOURCE_PATH + "binning-valid.txt";
+        for (String line : Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            sb.append(line).append('\n');
+            if (line.startsWith("@@")) {
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Binning.Reader open(String text) throws ParseException, IOException {
+        return new Binning.Reader(LineReader.of(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), "text"), true);
+    }
+
+    private static char[] fill(int length, char c) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return chars;
+    }
+
+    @Test
+    public void testLineLength() throws IOException {
+        byte[] bytes = ("abc\n" + new String(fill(10, 'x'))).getBytes(StandardCharsets.UTF_8);
+        LineReader input = new LineReader(new ByteArrayInputStream(bytes), "exact", bytes.length, 4);
+        input.setMaxLineLength(10);
+        assertEquals("abc", input.readLine());
+        assertEquals(10, input.readLine().length());
+        assertNull(input.readLine());
+
+        input = LineReader.of(ByteBuffer.wrap(bytes), "over");
+        input.setMaxLineLength(9);
+        assertEquals("abc", input.readLine());
+        try {
+            input.readLine();
+            fail("line longer than allowed");
+        } catch (LineReader.LineTooLongException expected) {
+            // the last line has no terminator
+        }
+    }
+
+    @Test(expected = Base.LimitException.class)
+    public void testNoLineBreaks() throws ParseException, IOException {
+        // binary content without line breaks
+        byte[] bytes = new byte[1 << 18];
+        new Random(1).nextBytes(bytes);
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n' || bytes[i] == '\r') {
+                bytes[i] = 0;
+            }
+        }
+        ReaderLimits.setDefault(new ReaderLimits(1 << 16, 100, 100, 100, 1));
+        new Binning.Reader(LineReader.of(new ByteArrayInputStream(bytes), "binary"), true);
+    }
+
+    @Test(expected = Base.LimitException.class)
+    public void testHeaderLines() throws ParseException, IOException {
+        ReaderLimits.setDefault(new ReaderLimits(1000, 20, 100, 100, 1));
+        open(new String(fill(100, '\n')) + header());
+    }
+
+    @Test(expected = Base.LimitException.class)
+    public void testFields() throws ParseException, IOException {
+        ReaderLimits.setDefault(new ReaderLimits(1000, 100, 2, 100, 1));
+        open(header());
+    }
+
+    @Test
+    public void testRows() throws ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(RESOURCE_PATH + "binning-valid.txt", true);
+        reader.setLimits(new ReaderLimits(1000, 100, 100, 3, 1));
+        for (int i = 0; i < 3; i++) {
+            reader.readRow();
+        }
+        try {
+            reader.readRow();
+            fail("more rows than allowed");
+        } catch (Base.LimitException expected) {
+            assertEquals(3, reader.getRowCount());
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testSamples() throws ParseException, IOException {
+        NeoDao neoDao = new NeoDao(new File(DBPATH));
+        ReaderLimits.setDefault(new ReaderLimits(1000, 100, 100, 1000, 1));
+        ConcatProfilingIter reader = new ConcatProfilingIter(RESOURCE_PATH + "concat-profile-valid.txt", neoDao, true);
+        try {
+            while (reader.readRow() != null) {
+                // read all
+            }
+            fail("more samples than allowed");
+        } catch (Base.LimitException expected) {
+            assertEquals(2, reader.getSampleCount());
+        } finally {
+            reader.close();
+            neoDao.shutdown();
+        }
+    }
+
+    @Test
+    public void testBlankRun() throws ParseException, IOException {
+        // skipped by a loop, a recursive reader would overflow its stack
+        String blanks = new String(fill(1 << 20, '\n'));
+        String comments = blanks.replace("\n", "#\n");
+        Binning.Reader reader = open(header() + blanks + "seq1\t1\t1\n" + comments);
+        assertEquals(3, reader.readRow().length);
+        assertNull(reader.readRow());
+        reader.close();
+    }
+}
@@ -0,0 +1,198 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.concat.ConcatProfilingIter;
+import cami.io.metrics.Histogram;
+import cami.io.metrics.Metrics;
+import cami.io.metrics.MetricsListener;
+import cami.io.metrics.MetricsRegistry;
+import cami.io.metrics.TraceListener;
+import cami.io.synth.SyntheticData;
+import mzd.taxonomy.neo.NeoDao;
+
+public class MetricsTest extends TestResources {
+
+    @After
+    public void tearDown() {
+        Metrics.setDefaultListener(null);
+        Metrics.setDefaultTracer(null);
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1001, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        long median = histogram.getValueAtPercentile(50.0);
+        assertTrue(median >= 501 && median <= 501 + 501 / Histogram.SUB_BUCKETS);
+        long p99 = histogram.getValueAtPercentile(99.0);
+        assertTrue(p99 >= 991 && p99 <= 991 + 991 / Histogram.SUB_BUCKETS);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100.0));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testDisabled() throws ParseException, IOException {
+        Binning.Reader reader = new Binning.Reader(RESOURCE_PATH + "binning-valid.txt", true);
+        assertNull(reader.getMetricsListener());
+        while (reader.readRow() != null) {
+            // read all
+        }
+        reader.close();
+        assertTrue(reader.getRowCount() > 0);
+        assertEquals(new File(RESOURCE_PATH + "binning-valid.txt").length(), reader.getBytesRead());
+    }
+
+    @Test
+    public void testRegistry() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "binning-delete.txt";
+        MetricsRegistry registry = new MetricsRegistry();
+        Metrics.setDefaultListener(registry);
+        int rows = Metrics.PROGRESS_INTERVAL + 100;
+        SyntheticData data = new SyntheticData(3);
+        data.setTaxa(20);
+        data.writeBinning(fileName, rows, Binning.COLUMNDEF_TAXID_AND_BINID);
+        assertEquals(rows, registry.getCount(MetricsListener.Stage.WRITE));
+
+        final List<long[]> reports = new ArrayList<>();
+        Binning.Reader reader = new Binning.Reader(fileName, true);
+        reader.setMetricsListener(new MetricsListener() {
+            @Override
+            public void record(Stage stage, long nanos) {
+            }
+
+            @Override
+            public void progress(String source, long bytesRead, long totalBytes, long rows, long etaNanos) {
+                reports.add(new long[]{bytesRead, totalBytes, rows, etaNanos});
+            }
+        });
+        while (reader.readRow() != null) {
+            // read all
+        }
+        reader.close();
+        assertEquals(2, reports.size());
+        assertEquals(Metrics.PROGRESS_INTERVAL, reports.get(0)[2]);
+        assertTrue(reports.get(0)[3] >= 0);
+        long length = new File(fileName).length();
+        assertEquals(length, reports.get(1)[0]);
+        assertEquals(length, reports.get(1)[1]);
+        assertEquals(rows, reports.get(1)[2]);
+        assertEquals(0, reports.get(1)[3]);
+
+        reader = new Binning.Reader(fileName, true);
+        while (reader.readRow() != null) {
+            // read all
+        }
+        reader.close();
+        assertEquals(rows + 1, registry.getCount(MetricsListener.Stage.READ));
+        assertEquals(rows, registry.getCount(MetricsListener.Stage.PARSE));
+        assertEquals(length, registry.getBytesRead(fileName));
+        assertEquals(rows, registry.getRows(fileName));
+
+        String json = registry.toJson();
+        assertTrue(json.contains("\"parse\": {\"count\": " + rows));
+        assertTrue(json.contains("\"p99Nanos\""));
+        assertTrue(json.contains("\"rows\": " + rows));
+    }
+
+    @Test
+    public void testLookups() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "concat-profile-valid.txt";
+        MetricsRegistry registry = new MetricsRegistry();
+        Metrics.setDefaultListener(registry);
+        NeoDao neoDao = new NeoDao(new File(DBPATH));
+        ConcatProfilingIter reader = new ConcatProfilingIter(fileName, neoDao, true);
+        try {
+            while (reader.readRow() != null) {
+                // read all
+            }
+        } finally {
+            reader.close();
+            neoDao.shutdown();
+        }
+        // a TAXID and the TAXPATH of every row
+        assertTrue(reader.getLookupCount() > reader.getRowCount());
+        assertEquals(reader.getLookupCount(), registry.getCount(MetricsListener.Stage.TAXONOMY));
+        assertEquals(reader.getLookupCount(), registry.getLookups(fileName));
+        assertEquals(reader.getSampleCount(), registry.getCount(MetricsListener.Stage.HEADER));
+        assertTrue(registry.toJson().contains("\"lookups\": " + reader.getLookupCount()));
+        assertTrue(registry.toJson().contains("\"taxonomy\": {\"count\": " + reader.getLookupCount()));
+    }
+
+    @Test
+    public void testTracer() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "binning-delete.txt";
+        final List<String> spans = new ArrayList<>();
+        Metrics.setDefaultTracer(new TraceListener() {
+            @Override
+            public Object begin(Span span) {
+                return span;
+            }
+
+            @Override
+            public void endHeader(Object span, String source, String sampleId, int firstLine, int lastLine) {
+                spans.add(span + " " + sampleId + " " + firstLine + "-" + lastLine);
+            }
+
+            @Override
+            public void endRows(Object span, String source, String sampleId, int firstLine, int lastLine,
+                                int rows) {
+                spans.add(span + " " + sampleId + " " + firstLine + "-" + lastLine + " " + rows);
+            }
+
+            @Override
+            public void endLookup(Object span, String source, int line, int ancestor, int taxId,
+                                  boolean cacheHit, boolean exists) {
+                spans.add(span + " " + taxId);
+            }
+
+            @Override
+            public void endFlush(Object span, String target, String sampleId, int bytes) {
+                spans.add(span + " " + sampleId + " " + bytes);
+            }
+
+            @Override
+            public void validationFailure(String source, String sampleId, int line, String reason) {
+                spans.add("FAILURE " + line);
+            }
+        });
+        int rows = Metrics.TRACE_BATCH + 10;
+        SyntheticData data = new SyntheticData(3);
+        data.setTaxa(20);
+        data.writeBinning(fileName, rows, Binning.COLUMNDEF_TAXID_AND_BINID);
+        assertEquals(1, spans.size());
+        assertEquals("FLUSH synthetic " + new File(fileName).length(), spans.get(0));
+
+        spans.clear();
+        Binning.Reader reader = new Binning.Reader(fileName, true);
+        while (reader.readRow() != null) {
+            // read all
+        }
+        reader.close();
+        int firstRow = 5;
+        assertEquals(3, spans.size());
+        assertEquals("HEADER synthetic 1-" + (firstRow - 1), spans.get(0));
+        assertEquals("ROWS synthetic " + firstRow + "-" + (firstRow + Metrics.TRACE_BATCH - 1) + " "
+                + Metrics.TRACE_BATCH, spans.get(1));
+        assertEquals("ROWS synthetic " + (firstRow + Metrics.TRACE_BATCH) + "-" + (firstRow + rows - 1) + " 10",
+                spans.get(2));
+    }
+}
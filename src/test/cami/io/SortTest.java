@@ -0,0 +1,53 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.sort.BinningSorter;
+
+public class SortTest extends TestResources {
+
+    @Test
+    public void testSortBySequenceId() throws ParseException, IOException {
+        Binning.Writer writer = new Binning.Writer(RESOURCE_PATH + "binning-delete.txt", Binning.COLUMNDEF_TAXID, true);
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("version", "0.9");
+        header.put("SampleID", "S1");
+        header.put("_Task_f", "Binning");
+        writer.replaceHeaderInfo(header);
+        writer.writeHeader();
+        int rows = 5000;
+        for (int i = 0; i < rows; i++) {
+            writer.writeBinningRow("contig_" + ((i * 7919) % rows), i);
+        }
+        writer.close();
+
+        // a tiny budget forces many runs and several merge passes
+        new BinningSorter(Binning.SEQUENCEID, 2048, 2, null)
+                .sort(RESOURCE_PATH + "binning-delete.txt", RESOURCE_PATH + "binning-delete-sorted.txt", true);
+
+        Binning.Reader reader = new Binning.Reader(RESOURCE_PATH + "binning-delete-sorted.txt", true);
+        assertEquals("0.9", reader.getInfo("version"));
+        // the header is copied as written, not as normalized for validation
+        assertEquals("S1", reader.getOriginalHeaderInfo().get("SampleID"));
+        assertEquals(new ArrayList<>(header.entrySet()), new ArrayList<>(reader.getOriginalHeaderInfo().entrySet()));
+        String previous = null;
+        int count = 0;
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            assertTrue(previous == null || previous.compareTo(row[0]) <= 0);
+            previous = row[0];
+            count++;
+        }
+        reader.close();
+        assertEquals(rows, count);
+    }
+}
@@ -0,0 +1,47 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.stats.BinStatistics;
+
+public class StatisticsTest extends TestResources {
+
+    @Test
+    public void testSinglePass() throws ParseException, IOException {
+        BinStatistics.Summary summary = BinStatistics.of(RESOURCE_PATH + "binning-without-header-valid.txt", false)
+                .summarize();
+        assertEquals(5, summary.getRowCount());
+        assertEquals(4, summary.getBinCount());
+        assertEquals("123", summary.getBinId(0));
+        assertEquals(2, summary.getSequenceCount(0));
+        assertEquals(1, summary.getTaxonCount(0));
+        assertEquals(3, summary.getTaxIds().length);
+    }
+
+    @Test
+    public void testMerge() {
+        BinStatistics a = new BinStatistics();
+        a.add("bin1", 1);
+        a.add("bin1", 2);
+        a.add("bin2", 1);
+        BinStatistics b = new BinStatistics();
+        b.add("bin1", 2);
+        b.add("bin1", 3);
+        b.add("bin3", 3);
+        b.add(null, -1);
+        a.merge(b);
+
+        BinStatistics.Summary summary = a.summarize();
+        assertEquals(7, summary.getRowCount());
+        assertEquals(1, summary.getUnassignedCount());
+        assertEquals(3, summary.getBinCount());
+        assertEquals(4, summary.getSequenceCount(0));
+        assertEquals(3, summary.getTaxonCount(0));
+        assertEquals(1, summary.getTaxonCount(2));
+    }
+}
@@ -0,0 +1,85 @@
+package cami.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+
+public class StreamTest extends TestResources {
+
+    private static List<String[]> readAll(Base.Reader reader) throws ParseException, IOException {
+        List<String[]> rows = new ArrayList<>();
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            rows.add(row);
+        }
+        reader.close();
+        return rows;
+    }
+
+    private static void assertRows(List<String[]> expected, List<String[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testSources() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "binning-valid.txt";
+        List<String[]> expected = readAll(new Binning.Reader(fileName, true));
+        byte[] bytes = Files.readAllBytes(Paths.get(fileName));
+
+        Binning.Reader reader = new Binning.Reader(LineReader.of(new FileInputStream(fileName), "stdin"), true);
+        assertRows(expected, readAll(reader));
+        assertEquals(bytes.length, reader.getBytesRead());
+
+        FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        LineReader input = LineReader.of(channel, fileName);
+        assertEquals(bytes.length, input.getSize());
+        assertRows(expected, readAll(new Binning.Reader(input, true)));
+
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        assertRows(expected, readAll(new Binning.Reader(LineReader.of(heap, "heap"), true)));
+        assertEquals(0, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertRows(expected, readAll(new Binning.Reader(LineReader.of(direct, "direct"), true)));
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        String text = "a\r\nb\rc\n\nd\u00e9\r\n" + new String(new char[40]).replace('\0', 'x') + "\r";
+        byte[] bytes = (text + "last").getBytes(StandardCharsets.UTF_8);
+        // a small buffer splits the CRLF and forces the long line to grow it
+        LineReader input = new LineReader(new ByteArrayInputStream(bytes), "lines", bytes.length, 4);
+        String[] lines = {"a", "b", "c", "", "d\u00e9", new String(new char[40]).replace('\0', 'x'), "last"};
+        for (String line : lines) {
+            assertEquals(line, input.readLine());
+        }
+        assertNull(input.readLine());
+        assertEquals(bytes.length, input.getPosition());
+
+        input = LineReader.of(ByteBuffer.wrap(bytes, 2, bytes.length - 2), "slice");
+        assertEquals("", input.readLine());
+        assertEquals("b", input.readLine());
+        assertEquals(3, input.getPosition());
+    }
+}
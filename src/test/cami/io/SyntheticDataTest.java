@@ -0,0 +1,88 @@
+package cami.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Test;
+
+import cami.io.Base.ParseException;
+import cami.io.synth.SyntheticData;
+
+public class SyntheticDataTest extends TestResources {
+
+    @Test
+    public void testBinning() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "binning-delete.txt";
+        SyntheticData data = new SyntheticData(42);
+        data.setTaxa(50);
+        data.setCustomColumns(2);
+        data.writeBinning(fileName, 1000, Binning.COLUMNDEF_TAXID_AND_BINID);
+        byte[] first = Files.readAllBytes(Paths.get(fileName));
+
+        Binning.Reader reader = new Binning.Reader(fileName, true);
+        assertEquals(5, reader.getColumnDefinition().size());
+        int rows = 0;
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            assertTrue(data.getTaxonomy().contains(Base.toInt(row[1])));
+            rows++;
+        }
+        reader.close();
+        assertEquals(1000, rows);
+
+        SyntheticData again = new SyntheticData(42);
+        again.setTaxa(50);
+        again.setCustomColumns(2);
+        again.writeBinning(fileName, 1000, Binning.COLUMNDEF_TAXID_AND_BINID);
+        assertArrayEquals(first, Files.readAllBytes(Paths.get(fileName)));
+    }
+
+    @Test
+    public void testProfile() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "profile-delete.txt";
+        SyntheticData data = new SyntheticData(7);
+        data.setTaxa(200);
+        data.setLineageDepth(7);
+        data.writeProfile(fileName, 0);
+
+        double[] sums = new double[Profile.RANK_NAMES.length];
+        int[] lineage = new int[Profile.RANK_NAMES.length];
+        Profile.Reader reader = new Profile.Reader(fileName, true);
+        String[] row;
+        while ((row = reader.readRow()) != null) {
+            int rank = data.getTaxonomy().getRank(Base.toInt(row[0]));
+            assertEquals(Profile.RANK_NAMES[rank], row[1]);
+            data.getTaxonomy().getLineage(Base.toInt(row[0]), lineage);
+            assertEquals(lineage[0] + "", row[2].split("\\|")[0]);
+            sums[rank] += Double.parseDouble(row[4]);
+        }
+        reader.close();
+        for (int rank = 0; rank < 7; rank++) {
+            assertEquals(100.0, sums[rank], 0.01);
+        }
+        assertEquals(0.0, sums[7], 0.0);
+    }
+
+    @Test
+    public void testConcatenatedProfile() throws ParseException, IOException {
+        String fileName = RESOURCE_PATH + "profile-delete.txt";
+        SyntheticData data = new SyntheticData(7);
+        data.setTaxa(20);
+        data.setCustomColumns(1);
+        data.writeConcatenatedProfile(fileName, 3);
+        List<String> lines = Files.readAllLines(Paths.get(fileName));
+        int samples = 0;
+        for (String line : lines) {
+            if (line.startsWith("@sampleid:")) {
+                assertEquals("@sampleid:sample" + samples++, line);
+            }
+        }
+        assertEquals(3, samples);
+    }
+}
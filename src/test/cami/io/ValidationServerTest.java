@@ -0,0 +1,149 @@
+package cami.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cami.io.synth.SyntheticData;
+import cami.io.validate.BatchValidator;
+import cami.io.validate.ValidationServer;
+import mzd.taxonomy.neo.NeoDao;
+
+public class ValidationServerTest extends TestResources {
+    private NeoDao neoDao;
+    private ValidationServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        this.neoDao = new NeoDao(new File(DBPATH));
+        this.server = new ValidationServer(new BatchValidator(this.neoDao, 2), 0, 4, Paths.get(RESOURCE_PATH));
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+        this.neoDao.shutdown();
+    }
+
+    private String post(String query, byte[] body, int status) throws IOException {
+        URL url = new URL("http://localhost:" + this.server.getPort() + "/validate" + query);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        assertEquals(status, connection.getResponseCode());
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                response.write(buffer, 0, n);
+            }
+        }
+        return new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testPath() throws IOException {
+        String path = new File(RESOURCE_PATH + "concat-profile-valid.txt").getAbsolutePath();
+        path = URLEncoder.encode(path, "UTF-8");
+        String json = post("?path=" + path, new byte[0], 200);
+        assertTrue(json.contains("\"status\": \"valid\""));
+        assertTrue(json.contains("\"rows\": 24"));
+
+        json = post("?path=missing-delete.txt", new byte[0], 500);
+        assertTrue(json.contains("\"status\": \"error\""));
+
+        // the same verdict as for the body
+        json = post("?path=concat-profile-invalid-wrong-rank.txt", new byte[0], 422);
+        assertTrue(json.contains("\"error\": \"FieldException\""));
+    }
+
+    @Test
+    public void testRoot() throws IOException {
+        String outside = new File("pom.xml").getAbsolutePath();
+        assertTrue(post("?path=" + URLEncoder.encode(outside, "UTF-8"), new byte[0], 403).contains("\"error\""));
+        post("?path=" + URLEncoder.encode("../resources/../../binning-valid.txt", "UTF-8"), new byte[0], 403);
+        post("?path=binning-valid.txt", new byte[0], 200);
+
+        this.server.stop(0);
+        this.server = new ValidationServer(new BatchValidator(this.neoDao, 1), 0, 4, null);
+        this.server.start();
+        post("?path=binning-valid.txt", new byte[0], 403);
+    }
+
+    @Test
+    public void testContent() throws IOException {
+        byte[] valid = Files.readAllBytes(Paths.get(RESOURCE_PATH + "concat-profile-valid.txt"));
+        String json = post("?name=upload", valid, 200);
+        assertTrue(json.startsWith("{\"file\": \"upload\""));
+        assertTrue(json.contains("\"rows\": 24"));
+
+        byte[] binning = Files.readAllBytes(Paths.get(RESOURCE_PATH + "binning-valid.txt"));
+        assertTrue(post("", binning, 200).contains("\"task\": \"binning\""));
+
+        byte[] invalid = Files.readAllBytes(Paths.get(RESOURCE_PATH + "concat-profile-invalid-wrong-rank.txt"));
+        json = post("", invalid, 422);
+        assertTrue(json.contains("\"error\": \"FieldException\""));
+    }
+
+    @Test
+    public void testConcurrentLayouts() throws Exception {
+        // each client submits its own layout, and must get its own column indexes
+        SyntheticData data = new SyntheticData(7);
+        data.writeBinning(RESOURCE_PATH + "binning-binid-delete.txt", 5000, Binning.COLUMNDEF_BINID);
+        data.writeBinning(RESOURCE_PATH + "binning-taxid-delete.txt", 5000, Binning.COLUMNDEF_TAXID);
+        final String[] names = {"binning-binid-delete.txt", "binning-taxid-delete.txt",
+                "concat-profile-valid-without-taxpathsn.txt", "concat-profile-valid.txt"};
+        this.server.stop(0);
+        this.server = new ValidationServer(new BatchValidator(this.neoDao, names.length), 0, 4 * names.length,
+                Paths.get(RESOURCE_PATH));
+        this.server.start();
+
+        final List<Throwable> errors = new ArrayList<>();
+        List<Thread> clients = new ArrayList<>();
+        for (final String name : names) {
+            final byte[] body = Files.readAllBytes(Paths.get(RESOURCE_PATH + name));
+            Thread client = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10; i++) {
+                            assertTrue(post("?name=" + name, body, 200).contains("\"status\": \"valid\""));
+                            post("?path=" + name, new byte[0], 200);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        assertEquals(errors.toString(), 0, errors.size());
+    }
+}
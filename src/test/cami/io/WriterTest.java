@@ -1,8 +1,14 @@
 package cami.io;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Before;
 import org.junit.FixMethodOrder;
@@ -12,8 +18,11 @@ import org.junit.runners.MethodSorters;
 import cami.io.Base.FieldException;
 import cami.io.Base.HeaderException;
 import cami.io.Base.ParseException;
+import mzd.taxonomy.neo.NeoDao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class WriterTest extends TestResources {
@@ -112,4 +121,275 @@ public class WriterTest extends TestResources {
         pr.writeHeader();
         pr.writeRow(new String[]{"1", "2", "3", "4", "5", "6", "7", "8", "9", "0"});
     }
+
+    @Test
+    public void testTypedRows() throws IOException, ParseException {
+        Binning.Writer bw = new Binning.Writer(RESOURCE_PATH + "binning-delete.txt", Binning.COLUMNDEF_TAXID_AND_BINID, true);
+        bw.writeHeader();
+        bw.writeBinningRow("contig_1", 1224, "bin.1");
+        bw.writeRow(new String[]{"contig_2", "-7", "bin.\u00e9"});
+        bw.close();
+        List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "binning-delete.txt"), StandardCharsets.UTF_8);
+        assertEquals("contig_1\t1224\tbin.1", lines.get(lines.size() - 2));
+        assertEquals("contig_2\t-7\tbin.\u00e9", lines.get(lines.size() - 1));
+
+        Profile.Writer pw = new Profile.Writer(RESOURCE_PATH + "profile-delete.txt", true);
+        pw.writeHeader();
+        pw.writeProfileRow(1224, 1, new int[]{2, 1224}, 18.94674);
+        pw.writeProfileRow(28211, 2, new int[]{2, 0, 28211}, 0.0012);
+        pw.writeProfileRow(2, 0, new int[]{2}, 100);
+        pw.close();
+        lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "profile-delete.txt"), StandardCharsets.UTF_8);
+        assertEquals("1224\tphylum\t2|1224\t18.94674", lines.get(lines.size() - 3));
+        assertEquals("28211\tclass\t2||28211\t0.0012", lines.get(lines.size() - 2));
+        assertEquals("2\tsuperkingdom\t2\t100", lines.get(lines.size() - 1));
+    }
+
+    @Test(expected = Base.FieldException.class)
+    public void testTypedRowBadField() throws IOException, ParseException {
+        Binning.Writer bw = new Binning.Writer(RESOURCE_PATH + "binning-delete.txt", Binning.COLUMNDEF_TAXID, true);
+        bw.writeHeader();
+        try {
+            bw.writeBinningRow("contig_1", 1224, "bin.1");
+        } finally {
+            bw.close();
+        }
+    }
+
+    @Test(expected = Base.FieldException.class)
+    public void testTypedRowLayout() throws IOException, ParseException {
+        // same number of columns, but a TAXID would end up in the BINID column
+        Binning.Writer bw = new Binning.Writer(RESOURCE_PATH + "binning-delete.txt", Binning.COLUMNDEF_BINID, true);
+        bw.writeHeader();
+        try {
+            bw.writeBinningRow("contig_1", 1224);
+        } finally {
+            bw.close();
+        }
+    }
+
+    @Test
+    public void testDoubles() throws IOException, ParseException {
+        Profile.Writer pw = new Profile.Writer(RESOURCE_PATH + "profile-delete.txt", true);
+        pw.writeHeader();
+        pw.writeProfileRow(2, 0, new int[]{2}, 0.000004);
+        pw.writeProfileRow(2, 0, new int[]{2}, 41.30434782608695);
+        pw.writeProfileRow(2, 0, new int[]{2}, -1e-12);
+        pw.setFractionDigits(5);
+        pw.writeProfileRow(2, 0, new int[]{2}, 41.30434782608695);
+        pw.writeProfileRow(2, 0, new int[]{2}, 0.000004);
+        pw.close();
+        List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "profile-delete.txt"), StandardCharsets.UTF_8);
+        List<String> values = new ArrayList<>();
+        for (String line : lines.subList(lines.size() - 5, lines.size())) {
+            values.add(line.substring(line.lastIndexOf('\t') + 1));
+        }
+        assertEquals(Arrays.asList("0.000004", "41.30434782608695", "-0.000000000001", "41.30435", "0"), values);
+    }
+
+    @Test
+    public void testConcurrentOrdered() throws Exception {
+        final int threads = 4;
+        final int rows = 10000;
+        Binning.Writer bw = new Binning.Writer(RESOURCE_PATH + "binning-delete.txt", Binning.COLUMNDEF_TAXID, true);
+        bw.writeHeader();
+        final ConcurrentWriter cw = new ConcurrentWriter(bw, 16, 4, true, 256);
+        List<Thread> workers = new ArrayList<>();
+        final List<Exception> errors = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = offset; i < rows; i += threads) {
+                            cw.writeRow(i, new String[]{"contig_" + i, Integer.toString(i)});
+                        }
+                        cw.flush();
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        cw.close();
+        assertEquals(0, errors.size());
+
+        List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "binning-delete.txt"), StandardCharsets.UTF_8);
+        List<String> data = lines.subList(lines.size() - rows, lines.size());
+        for (int i = 0; i < rows; i++) {
+            assertEquals("contig_" + i + "\t" + i, data.get(i));
+        }
+    }
+
+    @Test(expected = Base.FieldException.class)
+    public void testConcurrentDuplicate() throws Exception {
+        Binning.Writer bw = new Binning.Writer(RESOURCE_PATH + "binning-delete.txt", Binning.COLUMNDEF_TAXID, true);
+        bw.writeHeader();
+        final ConcurrentWriter cw = new ConcurrentWriter(bw, 16, 4, true, 4);
+        final CountDownLatch added = new CountDownLatch(1);
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread duplicate = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // accepted while sequence 0 is still unwritten, then handed over once it is
+                    cw.writeRow(0, new String[]{"duplicate", "1"});
+                    added.countDown();
+                    written.await();
+                    cw.flush();
+                } catch (Exception e) {
+                    // reported by close
+                }
+            }
+        });
+        duplicate.start();
+        added.await();
+        for (int i = 0; i < 4; i++) {
+            cw.writeRow(i, new String[]{"contig_" + i, Integer.toString(i + 1)});
+        }
+        cw.flush();
+        written.countDown();
+        duplicate.join();
+        // without the window check the duplicate would take the slot of sequence 4
+        cw.close();
+    }
+
+    @Test(expected = Base.HeaderException.class)
+    public void testValidatingWriterBadColumns() throws IOException, ParseException {
+        new Binning.ValidatingWriter(RESOURCE_PATH + "binning-delete.txt",
+                new String[]{Binning.SEQUENCEID, "BAD"}, true, new TaxonomyCache(null));
+    }
+
+    /**
+     * Taxonomy answered from a taxdump, so that validation can be tested without a populated store.
+     */
+    private static class TableNeoDao extends NeoDao {
+        private final LineageTable taxonomy;
+        private final int[] lineage = new int[Profile.RANK_NAMES.length];
+
+        TableNeoDao(LineageTable taxonomy) {
+            super(new File(DBPATH));
+            this.taxonomy = taxonomy;
+        }
+
+        @Override
+        public boolean taxonExists(Integer taxId) {
+            return taxId != null && this.taxonomy.contains(taxId);
+        }
+
+        @Override
+        public synchronized boolean sparsePathExists(Integer ancestor, Integer descendant) {
+            if (ancestor == null || descendant == null
+                    || this.taxonomy.getLineage(descendant, this.lineage) == LineageTable.NO_RANK) {
+                return false;
+            }
+            for (int taxId : this.lineage) {
+                if (taxId == ancestor && taxId != descendant) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static TaxonomyCache taxdump() throws IOException {
+        return new TaxonomyCache(new TableNeoDao(LineageTable.fromTaxdump(RESOURCE_PATH + "taxdump-nodes.dmp",
+                RESOURCE_PATH + "taxdump-names.dmp")));
+    }
+
+    @Test
+    public void testValidatingProfileWriter() throws IOException, ParseException {
+        TaxonomyCache taxonomy = taxdump();
+        Profile.ValidatingWriter pw = new Profile.ValidatingWriter(RESOURCE_PATH + "profile-delete.txt", true,
+                taxonomy);
+        int[] lineage = {2, 1224, 1236, 91347, 543, 561, 562};
+        try {
+            pw.writeHeader();
+            pw.writeProfileRow(562, 6, lineage, 60.0);
+            // the TAXID again within the lineage, then six ancestor/descendant pairs
+            assertEquals(13, taxonomy.getMisses());
+            assertEquals(1, taxonomy.getHits());
+            pw.writeRow(new String[]{"562", "species", "2|1224|1236|91347|543|561|562", "60"});
+            assertEquals(13, taxonomy.getMisses());
+            assertEquals(15, taxonomy.getHits());
+
+            try {
+                pw.writeProfileRow(999999, 6, new int[]{2, 999999}, 1.0);
+                fail("unknown TAXID");
+            } catch (FieldException expected) {
+                assertTrue(expected.getMessage().contains("999999"));
+            }
+            try {
+                // Pirellula is no proteobacterium
+                pw.writeRow(new String[]{"123", "genus", "2|1224|123", "1"});
+                fail("inconsistent TAXPATH");
+            } catch (FieldException expected) {
+                assertTrue(expected.getMessage().contains("2|1224|123"));
+            }
+        } finally {
+            pw.close();
+        }
+        List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "profile-delete.txt"),
+                StandardCharsets.UTF_8);
+        assertEquals("562\tspecies\t2|1224|1236|91347|543|561|562\t60", lines.get(lines.size() - 1));
+        assertEquals(lines.get(lines.size() - 1), lines.get(lines.size() - 2));
+    }
+
+    @Test
+    public void testValidatingBinningWriter() throws IOException, ParseException {
+        TaxonomyCache taxonomy = taxdump();
+        Binning.ValidatingWriter bw = new Binning.ValidatingWriter(RESOURCE_PATH + "binning-delete.txt",
+                Binning.COLUMNDEF_TAXID, true, taxonomy);
+        try {
+            bw.writeHeader();
+            bw.writeBinningRow("contig_1", 562);
+            bw.writeRow(new String[]{"contig_2", "562"});
+            assertEquals(1, taxonomy.getMisses());
+            assertEquals(1, taxonomy.getHits());
+            try {
+                bw.writeBinningRow("contig_3", 999999);
+                fail("unknown TAXID");
+            } catch (FieldException expected) {
+                assertEquals(2, taxonomy.getMisses());
+            }
+            try {
+                bw.writeRow(new String[]{"contig_4", "bin.1"});
+                fail("malformed TAXID");
+            } catch (FieldException expected) {
+                assertTrue(expected.getMessage().contains("bin.1"));
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    @Test
+    public void testProfileBuilderOrder() throws IOException, ParseException {
+        Profile.Writer pw = new Profile.Writer(RESOURCE_PATH + "profile-delete.txt", true);
+        ProfileBuilder builder = new ProfileBuilder(pw, 64, null);
+        builder.add(1385, "order", new int[]{2, 1239, 91061, 1385}, 59.75801);
+        builder.add(1239, "phylum", new int[]{2, 1239}, 59.75801);
+        builder.add(2, "superkingdom", new int[]{2}, 98.81211);
+        builder.add(91061, "class", new int[]{2, 1239, 91061}, 59.75801);
+        builder.add(1224, "phylum", new int[]{2, 1224}, 18.94674);
+        builder.add(2157, "superkingdom", new int[]{2157}, 1.18789);
+        builder.close();
+
+        List<String> lines = Files.readAllLines(Paths.get(RESOURCE_PATH + "profile-delete.txt"), StandardCharsets.UTF_8);
+        List<String> data = lines.subList(lines.size() - 6, lines.size());
+        assertEquals("2\tsuperkingdom\t2\t98.81211", data.get(0));
+        assertEquals("2157\tsuperkingdom\t2157\t1.18789", data.get(1));
+        assertEquals("1239\tphylum\t2|1239\t59.75801", data.get(2));
+        assertEquals("1224\tphylum\t2|1224\t18.94674", data.get(3));
+        assertEquals("91061\tclass\t2|1239|91061\t59.75801", data.get(4));
+        assertEquals("1385\torder\t2|1239|91061|1385\t59.75801", data.get(5));
+    }
 }